@@ -0,0 +1,117 @@
+package com.example.libreria.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.retry.RetryCallback;
+import org.springframework.retry.RetryContext;
+import org.springframework.retry.RetryListener;
+import org.springframework.retry.annotation.EnableRetry;
+import org.springframework.retry.interceptor.MethodInvocationRetryCallback;
+import org.springframework.retry.support.RetryTemplate;
+
+import java.util.function.Supplier;
+
+// @EnableRetry usa por defecto un orden anterior al de @Transactional: el reintento queda por fuera
+@Configuration
+@EnableRetry
+@Slf4j
+public class OptimisticLockConfig {
+
+    public static final String RETRY_LISTENER = "optimisticLockRetryListener";
+
+    @Bean(RETRY_LISTENER)
+    public RetryListener optimisticLockRetryListener(MeterRegistry meterRegistry) {
+        return new RetryListener() {
+
+            @Override
+            public <T, E extends Throwable> void onError(RetryContext context, RetryCallback<T, E> callback,
+                                                         Throwable throwable) {
+                String entity = "unknown";
+                Object id = "unknown";
+                if (throwable instanceof ObjectOptimisticLockingFailureException conflict) {
+                    entity = simpleName(conflict.getPersistentClassName());
+                    id = conflict.getIdentifier();
+                }
+                // Sin el ID como tag: cada reserva en conflicto crearía una serie nueva. El ID va al log
+                // (en un Book es su externalId)
+                Counter.builder("library.optimistic.conflicts")
+                        .description("Conflictos de versión detectados al escribir")
+                        .tag("operation", operation(callback))
+                        .tag("entity", entity)
+                        .register(meterRegistry)
+                        .increment();
+                log.debug("Optimistic lock conflict in {} on {}#{} (attempt {})",
+                        operation(callback), entity, id, context.getRetryCount());
+            }
+
+            @Override
+            public <T, E extends Throwable> void close(RetryContext context, RetryCallback<T, E> callback,
+                                                       Throwable throwable) {
+                if (context.getRetryCount() == 0) {
+                    return;
+                }
+                boolean exhausted = throwable instanceof OptimisticLockingFailureException;
+                Counter.builder("library.optimistic.retries")
+                        .description("Intentos fallidos por conflictos de versión, según cómo terminó la operación")
+                        .tag("operation", operation(callback))
+                        .tag("outcome", throwable == null ? "recovered" : exhausted ? "exhausted" : "failed")
+                        .register(meterRegistry)
+                        .increment(context.getRetryCount());
+                if (exhausted) {
+                    log.warn("Optimistic lock retries exhausted in {} after {} failed attempts",
+                            operation(callback), context.getRetryCount());
+                }
+            }
+        };
+    }
+
+    // Mismo criterio que @RetryOnConflict, para código que no pasa por un proxy (p. ej. una transacción
+    // programática con TransactionTemplate)
+    @Bean
+    public RetryTemplate optimisticLockRetryTemplate(
+            @Qualifier(RETRY_LISTENER) RetryListener retryListener,
+            @Value("${library.optimistic-lock.max-attempts:4}") int maxAttempts,
+            @Value("${library.optimistic-lock.backoff:10}") long backoff,
+            @Value("${library.optimistic-lock.max-backoff:200}") long maxBackoff) {
+        return RetryTemplate.builder()
+                .maxAttempts(maxAttempts)
+                .exponentialBackoff(backoff, 2, maxBackoff, true)
+                .retryOn(OptimisticLockingFailureException.class)
+                .withListener(retryListener)
+                .build();
+    }
+
+    // Callback con nombre, para que las métricas de conflictos identifiquen la operación
+    public static <T> RetryCallback<T, RuntimeException> named(String operation, Supplier<T> action) {
+        return new RetryCallback<>() {
+            @Override
+            public T doWithRetry(RetryContext context) {
+                return action.get();
+            }
+
+            @Override
+            public String getLabel() {
+                return operation;
+            }
+        };
+    }
+
+    private static String operation(RetryCallback<?, ?> callback) {
+        if (callback instanceof MethodInvocationRetryCallback<?, ?> invocation) {
+            return invocation.getInvocation().getMethod().getDeclaringClass().getSimpleName()
+                    + "." + invocation.getInvocation().getMethod().getName();
+        }
+        return callback.getLabel() != null ? callback.getLabel() : "unknown";
+    }
+
+    private static String simpleName(String className) {
+        return className == null ? "unknown" : className.substring(className.lastIndexOf('.') + 1);
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.libreria.config;
+
+import com.example.libreria.service.QueryStatementRecorder;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+import java.time.Duration;
+
+// Diagnóstico de consultas (perfil diagnostics): estadísticas de Hibernate, latencia por forma de sentencia,
+// sentencias lentas y sospechas de N+1 por pedido, publicadas en /actuator/queries
+@Configuration
+@ConditionalOnProperty(prefix = "library.diagnostics", name = "enabled", havingValue = "true")
+@Slf4j
+public class QueryDiagnosticsConfig {
+
+    @Value("${library.diagnostics.slow-query-threshold:PT0.1S}")
+    private Duration slowQueryThreshold = Duration.ofMillis(100);
+
+    @Value("${library.diagnostics.n-plus-one-threshold:5}")
+    private int nPlusOneThreshold = 5;
+
+    @Value("${library.diagnostics.max-shapes:1000}")
+    private int maxShapes = 1000;
+
+    @Value("${library.diagnostics.recent-findings:100}")
+    private int recentFindings = 100;
+
+    // Como QueryExecutionListener lo toma el proxy que datasource-micrometer pone delante del DataSource
+    @Bean
+    public QueryStatementRecorder queryStatementRecorder() {
+        log.info("Query diagnostics enabled (slow threshold {}, N+1 threshold {})",
+                slowQueryThreshold, nPlusOneThreshold);
+        return new QueryStatementRecorder(slowQueryThreshold, nPlusOneThreshold, maxShapes, recentFindings);
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer queryDiagnosticsHibernateProperties() {
+        return properties -> {
+            properties.put(AvailableSettings.GENERATE_STATISTICS, true);
+            // Sin el resumen que Hibernate escribe en el log al cerrar cada sesión cuando hay estadísticas
+            properties.put(AvailableSettings.LOG_SESSION_METRICS, false);
+        };
+    }
+
+    // Delimita cada pedido para atribuirle sus sentencias; la etiqueta usa el patrón de la URL, no la URL concreta
+    @Bean
+    public FilterRegistrationBean<OncePerRequestFilter> queryDiagnosticsFilter(QueryStatementRecorder recorder) {
+        OncePerRequestFilter filter = new OncePerRequestFilter() {
+            @Override
+            protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                                            FilterChain filterChain) throws ServletException, IOException {
+                recorder.beginRequest();
+                try {
+                    filterChain.doFilter(request, response);
+                } finally {
+                    Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+                    recorder.endRequest(request.getMethod() + " "
+                            + (pattern != null ? pattern : request.getRequestURI()));
+                }
+            }
+        };
+        return new FilterRegistrationBean<>(filter);
+    }
+
+    @Bean
+    public QueryDiagnosticsEndpoint queryDiagnosticsEndpoint(QueryStatementRecorder recorder,
+                                                             EntityManagerFactory entityManagerFactory) {
+        return new QueryDiagnosticsEndpoint(recorder, entityManagerFactory);
+    }
+}
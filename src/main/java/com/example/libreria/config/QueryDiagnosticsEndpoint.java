@@ -0,0 +1,78 @@
+package com.example.libreria.config;
+
+import com.example.libreria.dto.QueryDiagnosticsDTO;
+import com.example.libreria.service.QueryStatementRecorder;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.RequiredArgsConstructor;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.QueryStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// GET /actuator/queries: reporte de consultas; DELETE /actuator/queries: reinicia los contadores
+@Endpoint(id = "queries")
+@RequiredArgsConstructor
+public class QueryDiagnosticsEndpoint {
+
+    private static final int REPORT_SIZE = 50;
+
+    private final QueryStatementRecorder recorder;
+    private final EntityManagerFactory entityManagerFactory;
+
+    @ReadOperation
+    public QueryDiagnosticsDTO report() {
+        Statistics statistics = statistics();
+        QueryDiagnosticsDTO report = new QueryDiagnosticsDTO();
+        report.setHibernate(summary(statistics));
+        report.setStatements(recorder.topStatements(REPORT_SIZE));
+        report.setQueries(topQueries(statistics));
+        report.setSlowStatements(recorder.slowStatements());
+        report.setSuspectedNPlusOne(recorder.nPlusOneSuspects());
+        report.setUntrackedExecutions(recorder.untrackedExecutions());
+        return report;
+    }
+
+    @DeleteOperation
+    public void reset() {
+        recorder.reset();
+        statistics().clear();
+    }
+
+    private Statistics statistics() {
+        return entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    private static Map<String, Long> summary(Statistics statistics) {
+        Map<String, Long> summary = new LinkedHashMap<>();
+        summary.put("sessionsOpened", statistics.getSessionOpenCount());
+        summary.put("transactions", statistics.getTransactionCount());
+        summary.put("statementsPrepared", statistics.getPrepareStatementCount());
+        summary.put("queriesExecuted", statistics.getQueryExecutionCount());
+        summary.put("entitiesLoaded", statistics.getEntityLoadCount());
+        summary.put("entitiesFetched", statistics.getEntityFetchCount());
+        summary.put("collectionsFetched", statistics.getCollectionFetchCount());
+        summary.put("flushes", statistics.getFlushCount());
+        summary.put("optimisticFailures", statistics.getOptimisticFailureCount());
+        return summary;
+    }
+
+    private static List<QueryDiagnosticsDTO.QueryStats> topQueries(Statistics statistics) {
+        List<QueryDiagnosticsDTO.QueryStats> queries = new ArrayList<>();
+        for (String query : statistics.getQueries()) {
+            QueryStatistics stats = statistics.getQueryStatistics(query);
+            queries.add(new QueryDiagnosticsDTO.QueryStats(query, stats.getExecutionCount(),
+                    stats.getExecutionRowCount(), stats.getExecutionAvgTimeAsDouble(), stats.getExecutionMaxTime(),
+                    stats.getExecutionTotalTime()));
+        }
+        queries.sort(Comparator.comparingLong(QueryDiagnosticsDTO.QueryStats::totalMillis).reversed());
+        return queries.size() > REPORT_SIZE ? new ArrayList<>(queries.subList(0, REPORT_SIZE)) : queries;
+    }
+}
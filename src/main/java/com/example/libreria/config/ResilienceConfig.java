@@ -0,0 +1,102 @@
+package com.example.libreria.config;
+
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadConfig;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.core.IntervalFunction;
+import io.github.resilience4j.micrometer.tagged.TaggedBulkheadMetrics;
+import io.github.resilience4j.micrometer.tagged.TaggedCircuitBreakerMetrics;
+import io.github.resilience4j.micrometer.tagged.TaggedRetryMetrics;
+import io.github.resilience4j.retry.Retry;
+import io.github.resilience4j.retry.RetryConfig;
+import io.github.resilience4j.retry.RetryRegistry;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestClientException;
+
+import java.time.Duration;
+
+// Protección de las llamadas a la API externa de libros: circuit breaker, reintentos y bulkhead
+@Configuration
+public class ResilienceConfig {
+
+    public static final String EXTERNAL_BOOKS = "externalBooks";
+
+    @Bean
+    public CircuitBreakerRegistry circuitBreakerRegistry(
+            MeterRegistry meterRegistry,
+            @Value("${external.api.resilience.circuit-breaker.failure-rate-threshold:50}") float failureRateThreshold,
+            @Value("${external.api.resilience.circuit-breaker.slow-call-duration:PT3S}") Duration slowCallDuration,
+            @Value("${external.api.resilience.circuit-breaker.slow-call-rate-threshold:80}") float slowCallRateThreshold,
+            @Value("${external.api.resilience.circuit-breaker.sliding-window-size:20}") int slidingWindowSize,
+            @Value("${external.api.resilience.circuit-breaker.minimum-calls:10}") int minimumCalls,
+            @Value("${external.api.resilience.circuit-breaker.open-duration:PT30S}") Duration openDuration) {
+        CircuitBreakerConfig config = CircuitBreakerConfig.custom()
+                .failureRateThreshold(failureRateThreshold)
+                .slowCallDurationThreshold(slowCallDuration)
+                .slowCallRateThreshold(slowCallRateThreshold)
+                .slidingWindowSize(slidingWindowSize)
+                .minimumNumberOfCalls(minimumCalls)
+                .waitDurationInOpenState(openDuration)
+                .automaticTransitionFromOpenToHalfOpenEnabled(true)
+                // Solo los errores de la llamada HTTP; un 4xx (p. ej. libro inexistente) no indica que la API esté caída
+                .recordExceptions(RestClientException.class)
+                .ignoreExceptions(HttpClientErrorException.class)
+                .build();
+        CircuitBreakerRegistry registry = CircuitBreakerRegistry.of(config);
+        TaggedCircuitBreakerMetrics.ofCircuitBreakerRegistry(registry).bindTo(meterRegistry);
+        return registry;
+    }
+
+    @Bean
+    public RetryRegistry retryRegistry(
+            MeterRegistry meterRegistry,
+            @Value("${external.api.resilience.retry.max-attempts:3}") int maxAttempts,
+            @Value("${external.api.resilience.retry.initial-backoff:PT0.2S}") Duration initialBackoff,
+            @Value("${external.api.resilience.retry.multiplier:2}") double multiplier,
+            @Value("${external.api.resilience.retry.randomization:0.5}") double randomization) {
+        RetryConfig config = RetryConfig.custom()
+                .maxAttempts(maxAttempts)
+                .intervalFunction(IntervalFunction.ofExponentialRandomBackoff(initialBackoff, multiplier, randomization))
+                .retryOnException(e -> e instanceof RestClientException && !(e instanceof HttpClientErrorException))
+                .build();
+        RetryRegistry registry = RetryRegistry.of(config);
+        TaggedRetryMetrics.ofRetryRegistry(registry).bindTo(meterRegistry);
+        return registry;
+    }
+
+    @Bean
+    public BulkheadRegistry bulkheadRegistry(
+            MeterRegistry meterRegistry,
+            @Value("${external.api.resilience.bulkhead.max-concurrent-calls:20}") int maxConcurrentCalls,
+            @Value("${external.api.resilience.bulkhead.max-wait:PT0S}") Duration maxWait) {
+        BulkheadConfig config = BulkheadConfig.custom()
+                .maxConcurrentCalls(maxConcurrentCalls)
+                .maxWaitDuration(maxWait)
+                .build();
+        BulkheadRegistry registry = BulkheadRegistry.of(config);
+        TaggedBulkheadMetrics.ofBulkheadRegistry(registry).bindTo(meterRegistry);
+        return registry;
+    }
+
+    @Bean
+    public CircuitBreaker externalBooksCircuitBreaker(CircuitBreakerRegistry registry) {
+        return registry.circuitBreaker(EXTERNAL_BOOKS);
+    }
+
+    @Bean
+    public Retry externalBooksRetry(RetryRegistry registry) {
+        return registry.retry(EXTERNAL_BOOKS);
+    }
+
+    @Bean
+    public Bulkhead externalBooksBulkhead(BulkheadRegistry registry) {
+        return registry.bulkhead(EXTERNAL_BOOKS);
+    }
+}
@@ -1,27 +1,154 @@
 package com.example.libreria.config;
 
+import lombok.extern.slf4j.Slf4j;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClientBuilder;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.client.RestTemplateBuilder;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
 import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.http.client.InterceptingClientHttpRequestFactory;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
 import org.springframework.http.client.SimpleClientHttpRequestFactory;
 import org.springframework.web.client.RestTemplate;
 
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.List;
+
 @Configuration
+@Slf4j
 public class RestTemplateConfig {
-    
+
+    // apache: pool HTTP/1.1 con keep-alive y gzip; jdk: HTTP/2 multiplexado y gzip; simple: HttpURLConnection
+    @Value("${external.api.http.client:apache}")
+    private String clientType = "apache";
+
+    @Value("${external.api.http.connect-timeout:PT5S}")
+    private Duration connectTimeout = Duration.ofSeconds(5);
+
+    @Value("${external.api.http.read-timeout:PT5S}")
+    private Duration readTimeout = Duration.ofSeconds(5);
+
+    @Value("${external.api.http.max-connections:50}")
+    private int maxConnections = 50;
+
+    @Value("${external.api.http.max-connections-per-route:20}")
+    private int maxConnectionsPerRoute = 20;
+
+    @Value("${external.api.http.keep-alive:PT30S}")
+    private Duration keepAlive = Duration.ofSeconds(30);
+
+    @Value("${external.api.http.compression:true}")
+    private boolean compression = true;
+
+    // Plazo de respuesta de cada pedido de la consulta masiva por ID
+    @Value("${external.api.books.bulk.request-timeout:PT10S}")
+    private Duration bulkRequestTimeout = Duration.ofSeconds(10);
+
+    // Con el RestTemplateBuilder de Spring Boot cada pedido se registra en http.client.requests
     @Bean
-    public RestTemplate restTemplate() {
-        RestTemplate restTemplate = new RestTemplate();
-        restTemplate.setRequestFactory(clientHttpRequestFactory());
-        return restTemplate;
+    @Primary
+    public RestTemplate restTemplate(RestTemplateBuilder restTemplateBuilder,
+                                     ClientHttpRequestFactory clientHttpRequestFactory) {
+        return restTemplateBuilder
+                .requestFactory(() -> clientHttpRequestFactory)
+                .build();
     }
-    
+
+    // Cliente propio para la consulta masiva: al vencer el plazo el propio cliente corta el pedido y
+    // libera el hilo, en lugar de abandonarlo bloqueado en la lectura
+    @Bean
+    public RestTemplate bulkRestTemplate(RestTemplateBuilder restTemplateBuilder,
+                                         @Qualifier("bulkClientHttpRequestFactory")
+                                         ClientHttpRequestFactory bulkClientHttpRequestFactory) {
+        return restTemplateBuilder
+                .requestFactory(() -> bulkClientHttpRequestFactory)
+                .build();
+    }
+
     @Bean
+    @Primary
     public ClientHttpRequestFactory clientHttpRequestFactory() {
+        log.info("Using '{}' HTTP client for the external books API", clientType);
+        return requestFactory(readTimeout);
+    }
+
+    @Bean
+    public ClientHttpRequestFactory bulkClientHttpRequestFactory() {
+        return requestFactory(bulkRequestTimeout);
+    }
+
+    private ClientHttpRequestFactory requestFactory(Duration readTimeout) {
+        switch (clientType) {
+            case "simple":
+                return simpleRequestFactory(readTimeout);
+            case "jdk":
+                return jdkRequestFactory(readTimeout);
+            case "apache":
+                return apacheRequestFactory(readTimeout);
+            default:
+                throw new IllegalStateException("Cliente HTTP desconocido: " + clientType);
+        }
+    }
+
+    private ClientHttpRequestFactory simpleRequestFactory(Duration readTimeout) {
         SimpleClientHttpRequestFactory factory = new SimpleClientHttpRequestFactory();
-        factory.setConnectTimeout(5000);
-        factory.setReadTimeout(5000);
+        factory.setConnectTimeout(connectTimeout);
+        factory.setReadTimeout(readTimeout);
         return factory;
     }
-}
 
+    private ClientHttpRequestFactory jdkRequestFactory(Duration readTimeout) {
+        HttpClient httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(connectTimeout)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .build();
+        JdkClientHttpRequestFactory factory = new JdkClientHttpRequestFactory(httpClient);
+        factory.setReadTimeout(readTimeout);
+        return compression
+                ? new InterceptingClientHttpRequestFactory(factory, List.of(new GzipDecompressingInterceptor()))
+                : factory;
+    }
+
+    private ClientHttpRequestFactory apacheRequestFactory(Duration readTimeout) {
+        PoolingHttpClientConnectionManager connectionManager = PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(maxConnections)
+                .setMaxConnPerRoute(maxConnectionsPerRoute)
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setConnectTimeout(Timeout.of(connectTimeout))
+                        .setSocketTimeout(Timeout.of(readTimeout))
+                        // Revalida conexiones ociosas antes de reutilizarlas por si el servidor las cerró
+                        .setValidateAfterInactivity(TimeValue.ofSeconds(2))
+                        .build())
+                .build();
+
+        HttpClientBuilder builder = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectionRequestTimeout(Timeout.of(connectTimeout))
+                        .setResponseTimeout(Timeout.of(readTimeout))
+                        .build())
+                .setKeepAliveStrategy((response, context) -> TimeValue.of(keepAlive))
+                .evictIdleConnections(TimeValue.of(keepAlive))
+                .evictExpiredConnections();
+        if (!compression) {
+            builder.disableContentCompression();
+        }
+
+        CloseableHttpClient httpClient = builder.build();
+        return new HttpComponentsClientHttpRequestFactory(httpClient);
+    }
+}
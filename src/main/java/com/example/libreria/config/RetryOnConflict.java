@@ -0,0 +1,28 @@
+package com.example.libreria.config;
+
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.retry.annotation.Backoff;
+import org.springframework.retry.annotation.Retryable;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+// Reintenta el método (y su transacción completa) si otra escritura cambió la versión de una entidad.
+// El reintento envuelve a @Transactional, así que cada intento vuelve a leer el estado actual.
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+@Retryable(
+        retryFor = OptimisticLockingFailureException.class,
+        maxAttemptsExpression = "${library.optimistic-lock.max-attempts:4}",
+        backoff = @Backoff(
+                delayExpression = "${library.optimistic-lock.backoff:10}",
+                maxDelayExpression = "${library.optimistic-lock.max-backoff:200}",
+                multiplier = 2,
+                random = true),
+        listeners = OptimisticLockConfig.RETRY_LISTENER)
+public @interface RetryOnConflict {
+}
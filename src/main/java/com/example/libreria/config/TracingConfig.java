@@ -0,0 +1,22 @@
+package com.example.libreria.config;
+
+import io.opentelemetry.exporter.logging.LoggingSpanExporter;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+// Exporta los spans terminados al log cuando no hay un colector OTLP (library.tracing.log-spans=true).
+// Boot agrega este exportador a los demás: con MANAGEMENT_OTLP_TRACING_ENDPOINT definido se usan ambos.
+@Configuration
+@ConditionalOnProperty(prefix = "library.tracing", name = "log-spans", havingValue = "true")
+@Slf4j
+public class TracingConfig {
+
+    @Bean
+    public SpanExporter loggingSpanExporter() {
+        log.info("Logging finished spans");
+        return LoggingSpanExporter.create();
+    }
+}
@@ -1,24 +1,38 @@
 package com.example.libreria.controller;
 
 import com.example.libreria.dto.BookResponseDTO;
+import com.example.libreria.dto.BookSyncJobDTO;
 import com.example.libreria.service.BookService;
+import com.example.libreria.service.BookSyncJobService;
+import io.micrometer.observation.annotation.Observed;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.net.URI;
 import java.util.List;
 
 @RestController
+@Observed(name = "library.controller")
 @RequestMapping("/api/books")
 @RequiredArgsConstructor
 public class BookController {
     
     private final BookService bookService;
+    private final BookSyncJobService bookSyncJobService;
     
     @PostMapping("/sync")
-    public ResponseEntity<String> syncBooks() {
-        bookService.syncBooksFromExternalApi();
-        return ResponseEntity.ok("Libros sincronizados exitosamente desde la API externa");
+    public ResponseEntity<BookSyncJobDTO> syncBooks(@RequestParam(defaultValue = "false") boolean force) {
+        BookSyncJobDTO job = bookSyncJobService.startSync(force);
+        return ResponseEntity.accepted()
+                .location(URI.create("/api/books/sync/" + job.getJobId()))
+                .body(job);
+    }
+    
+    @GetMapping("/sync/{jobId}")
+    public ResponseEntity<BookSyncJobDTO> getSyncJob(@PathVariable String jobId) {
+        BookSyncJobDTO job = bookSyncJobService.getJob(jobId);
+        return ResponseEntity.ok(job);
     }
     
     @GetMapping
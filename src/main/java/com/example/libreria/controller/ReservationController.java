@@ -1,23 +1,38 @@
 package com.example.libreria.controller;
 
+import com.example.libreria.dto.ReservationBatchRequestDTO;
+import com.example.libreria.dto.ReservationBatchResultDTO;
+import com.example.libreria.dto.ReservationFilterDTO;
+import com.example.libreria.dto.ReservationPageDTO;
 import com.example.libreria.dto.ReservationRequestDTO;
 import com.example.libreria.dto.ReservationResponseDTO;
+import com.example.libreria.dto.ReturnBatchRequestDTO;
 import com.example.libreria.dto.ReturnBookRequestDTO;
+import com.example.libreria.service.ReservationExportService;
 import com.example.libreria.service.ReservationService;
+import io.micrometer.observation.annotation.Observed;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.time.LocalDate;
 import java.util.List;
 
 @RestController
+@Observed(name = "library.controller")
 @RequestMapping("/api/reservations")
 @RequiredArgsConstructor
 public class ReservationController {
     
     private final ReservationService reservationService;
+    private final ReservationExportService reservationExportService;
     
     @PostMapping
     public ResponseEntity<ReservationResponseDTO> createReservation(
@@ -26,16 +41,47 @@ public class ReservationController {
         return ResponseEntity.status(HttpStatus.CREATED).body(reservation);
     }
     
+    // 201 si se crearon todas, 207 si solo algunas (BEST_EFFORT) y 409 si ninguna
+    @PostMapping("/bulk")
+    public ResponseEntity<ReservationBatchResultDTO> createReservations(
+            @Valid @RequestBody ReservationBatchRequestDTO batchRequest) {
+        ReservationBatchResultDTO result = reservationService.createReservations(batchRequest);
+        HttpStatus status = result.getFailed() == 0 ? HttpStatus.CREATED
+                : result.getSucceeded() > 0 ? HttpStatus.MULTI_STATUS
+                : HttpStatus.CONFLICT;
+        return ResponseEntity.status(status).body(result);
+    }
+    
     @GetMapping("/{id}")
     public ResponseEntity<ReservationResponseDTO> getReservationById(@PathVariable Long id) {
         ReservationResponseDTO reservation = reservationService.getReservationById(id);
         return ResponseEntity.ok(reservation);
     }
     
+    // Paginado por cursor; filtros opcionales: status, userId, bookExternalId, from y to (fecha de inicio)
     @GetMapping
-    public ResponseEntity<List<ReservationResponseDTO>> getAllReservations() {
-        List<ReservationResponseDTO> reservations = reservationService.getAllReservations();
-        return ResponseEntity.ok(reservations);
+    public ResponseEntity<ReservationPageDTO> getReservations(
+            ReservationFilterDTO filter,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") int size) {
+        ReservationPageDTO page = reservationService.getReservations(filter, cursor, size);
+        return ResponseEntity.ok(page);
+    }
+    
+    // Historial completo (o un rango de fechas de inicio) en NDJSON o CSV, escrito a medida que se lee
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportReservations(
+            @RequestParam(defaultValue = "ndjson") String format,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        ReservationExportService.Format exportFormat = ReservationExportService.Format.parse(format);
+        reservationExportService.validateRange(from, to);
+        StreamingResponseBody body = out -> reservationExportService.export(exportFormat, from, to, out);
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(exportFormat.getContentType() + ";charset=UTF-8"))
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                        .filename("reservations." + exportFormat.getExtension()).build().toString())
+                .body(body);
     }
     
     @GetMapping("/user/{userId}")
@@ -50,10 +96,13 @@ public class ReservationController {
         return ResponseEntity.ok(reservations);
     }
     
+    // Paginado por cursor, de la devolución esperada más antigua a la más reciente
     @GetMapping("/overdue")
-    public ResponseEntity<List<ReservationResponseDTO>> getOverdueReservations() {
-        List<ReservationResponseDTO> reservations = reservationService.getOverdueReservations();
-        return ResponseEntity.ok(reservations);
+    public ResponseEntity<ReservationPageDTO> getOverdueReservations(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") int size) {
+        ReservationPageDTO page = reservationService.getOverdueReservations(cursor, size);
+        return ResponseEntity.ok(page);
     }
     
     @PostMapping("/{id}/return")
@@ -63,5 +112,15 @@ public class ReservationController {
         ReservationResponseDTO reservation = reservationService.returnBook(id, returnRequest);
         return ResponseEntity.ok(reservation);
     }
+    
+    // 200 si se procesaron todas, 207 si solo algunas y 409 si ninguna
+    @PostMapping("/bulk/return")
+    public ResponseEntity<ReservationBatchResultDTO> returnBooks(
+            @Valid @RequestBody ReturnBatchRequestDTO batchRequest) {
+        ReservationBatchResultDTO result = reservationService.returnBooks(batchRequest);
+        HttpStatus status = result.getFailed() == 0 ? HttpStatus.OK
+                : result.getSucceeded() > 0 ? HttpStatus.MULTI_STATUS
+                : HttpStatus.CONFLICT;
+        return ResponseEntity.status(status).body(result);
+    }
 }
-
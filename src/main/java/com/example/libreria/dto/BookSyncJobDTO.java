@@ -0,0 +1,31 @@
+package com.example.libreria.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookSyncJobDTO {
+
+    private String jobId;
+    private JobStatus status;
+    private boolean force;
+    private long fetched;
+    private long inserted;
+    private long updated;
+    private long skipped;
+    private boolean notModified;
+    private long elapsedMillis;
+    private double booksPerSecond;
+    private Instant startedAt;
+    private Instant finishedAt;
+    private String error;
+
+    public enum JobStatus {
+        QUEUED, RUNNING, COMPLETED, FAILED, SKIPPED
+    }
+}
@@ -0,0 +1,19 @@
+package com.example.libreria.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookSyncResultDTO {
+
+    private long fetched;
+    private long inserted;
+    private long updated;
+    private long skipped;
+    private boolean notModified;
+    private long chunks;
+    private long elapsedMillis;
+}
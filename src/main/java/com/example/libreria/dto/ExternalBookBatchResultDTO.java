@@ -0,0 +1,22 @@
+package com.example.libreria.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ExternalBookBatchResultDTO {
+    
+    private int requested;
+    private List<ExternalBookDTO> books = new ArrayList<>();
+    // ID del libro -> motivo del error
+    private Map<Long, String> failures = new LinkedHashMap<>();
+    private long elapsedMillis;
+}
@@ -0,0 +1,43 @@
+package com.example.libreria.dto;
+
+import lombok.Data;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+@Data
+public class QueryDiagnosticsDTO {
+
+    // Contadores globales de Hibernate Statistics
+    private Map<String, Long> hibernate;
+
+    // Sentencias SQL agrupadas por forma, de mayor a menor tiempo total
+    private List<StatementStats> statements;
+
+    // Consultas JPQL según Hibernate Statistics, de mayor a menor tiempo total
+    private List<QueryStats> queries;
+
+    // Ejecuciones que superaron library.diagnostics.slow-query-threshold, con el endpoint que las originó
+    private List<SlowStatement> slowStatements;
+
+    // Mismo SELECT repetido muchas veces dentro de un pedido
+    private List<RepeatedStatement> suspectedNPlusOne;
+
+    // Ejecuciones de formas nuevas que ya no entraron en el registro (library.diagnostics.max-shapes)
+    private long untrackedExecutions;
+
+    public record StatementStats(String sql, long executions, double totalMillis, double avgMillis,
+                                 double maxMillis, boolean slow) {
+    }
+
+    public record QueryStats(String query, long executions, long rows, double avgMillis, long maxMillis,
+                             long totalMillis) {
+    }
+
+    public record SlowStatement(String request, String sql, double millis, Instant at) {
+    }
+
+    public record RepeatedStatement(String request, String sql, int executions, Instant at) {
+    }
+}
@@ -0,0 +1,17 @@
+package com.example.libreria.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReservationBatchItemDTO {
+    
+    // Posición del pedido dentro del lote
+    private int index;
+    private boolean success;
+    private ReservationResponseDTO reservation;
+    private String error;
+}
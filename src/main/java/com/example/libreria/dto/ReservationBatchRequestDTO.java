@@ -0,0 +1,31 @@
+package com.example.libreria.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReservationBatchRequestDTO {
+    
+    @NotEmpty(message = "El lote debe tener al menos una reserva")
+    @Size(max = 500, message = "El lote no puede tener más de 500 reservas")
+    private List<@Valid @NotNull ReservationRequestDTO> reservations;
+    
+    @NotNull(message = "El modo del lote es obligatorio")
+    private Mode mode = Mode.ALL_OR_NOTHING;
+    
+    public enum Mode {
+        // Si una reserva falla no se crea ninguna
+        ALL_OR_NOTHING,
+        // Se crean las reservas posibles y se informa el motivo de las demás
+        BEST_EFFORT
+    }
+}
@@ -0,0 +1,21 @@
+package com.example.libreria.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReservationBatchResultDTO {
+    
+    private ReservationBatchRequestDTO.Mode mode;
+    private int requested;
+    private int succeeded;
+    private int failed;
+    // En el mismo orden que el lote recibido
+    private List<ReservationBatchItemDTO> items = new ArrayList<>();
+}
@@ -0,0 +1,27 @@
+package com.example.libreria.dto;
+
+import com.example.libreria.model.Reservation;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+
+import java.time.LocalDate;
+
+// Filtros opcionales del listado paginado; los nulos no se aplican
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReservationFilterDTO {
+    
+    private Reservation.ReservationStatus status;
+    private Long userId;
+    private Long bookExternalId;
+    
+    // Rango sobre la fecha de inicio, ambos extremos inclusive
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+    private LocalDate from;
+    
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+    private LocalDate to;
+}
@@ -0,0 +1,20 @@
+package com.example.libreria.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReservationPageDTO {
+    
+    // En el orden propio de cada listado
+    private List<ReservationResponseDTO> items = new ArrayList<>();
+    private int size;
+    // Se pasa como ?cursor= para pedir la página siguiente; null si no hay más
+    private String nextCursor;
+}
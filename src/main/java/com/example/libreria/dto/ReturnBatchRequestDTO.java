@@ -0,0 +1,21 @@
+package com.example.libreria.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReturnBatchRequestDTO {
+    
+    @NotEmpty(message = "El lote debe tener al menos una devolución")
+    @Size(max = 5000, message = "El lote no puede tener más de 5000 devoluciones")
+    private List<@Valid @NotNull BookReturnDTO> returns;
+}
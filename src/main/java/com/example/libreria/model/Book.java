@@ -4,6 +4,8 @@ import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.ColumnDefault;
+import org.springframework.data.domain.Persistable;
 
 import java.math.BigDecimal;
 import java.util.List;
@@ -13,7 +15,7 @@ import java.util.List;
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
-public class Book {
+public class Book implements Persistable<Long> {
     
     @Id
     @Column(name = "external_id", unique = true)
@@ -39,11 +41,42 @@ public class Book {
     @Column(nullable = false, precision = 10, scale = 2)
     private BigDecimal price;
     
+    // Huella del contenido del catálogo para omitir filas sin cambios al sincronizar
+    @Column(name = "content_hash", length = 64)
+    private String contentHash;
+    
     // Campos adicionales para inventario
     @Column(name = "stock_quantity", nullable = false)
     private Integer stockQuantity = 0;
     
     @Column(name = "available_quantity", nullable = false)
     private Integer availableQuantity = 0;
+    
+    // Control de concurrencia optimista; el default permite agregar la columna a tablas con datos
+    @Version
+    @ColumnDefault("0")
+    @Column(name = "version", nullable = false)
+    private Long version;
+    
+    // El ID es asignado (externalId), así que marcamos explícitamente los libros nuevos
+    // para que save() haga persist en lugar de un merge con SELECT previo
+    @Transient
+    private transient boolean isNew = true;
+    
+    @Override
+    public Long getId() {
+        return externalId;
+    }
+    
+    @Override
+    public boolean isNew() {
+        return isNew;
+    }
+    
+    @PostLoad
+    @PostPersist
+    void markNotNew() {
+        this.isNew = false;
+    }
 }
 
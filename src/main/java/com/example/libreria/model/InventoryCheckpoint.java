@@ -0,0 +1,28 @@
+package com.example.libreria.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+// Última entrada del journal de inventario ya aplicada a la tabla books.
+// Se escribe en la misma transacción que los deltas, así un replay nunca aplica dos veces.
+@Entity
+@Table(name = "inventory_checkpoints")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class InventoryCheckpoint {
+    
+    @Id
+    @Column(length = 100)
+    private String name;
+    
+    @Column(nullable = false)
+    private Long sequence;
+    
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+}
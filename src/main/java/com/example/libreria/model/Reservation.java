@@ -4,20 +4,33 @@ import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.ColumnDefault;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "reservations")
+// Cada índice termina en (created_at, id), el orden del listado paginado: con o sin filtro, una página
+// es un recorrido corto del índice a partir del cursor
+@Table(name = "reservations", indexes = {
+        @Index(name = "idx_reservations_created", columnList = "created_at, id"),
+        @Index(name = "idx_reservations_status_created", columnList = "status, created_at, id"),
+        @Index(name = "idx_reservations_user_created", columnList = "user_id, created_at, id"),
+        @Index(name = "idx_reservations_book_created", columnList = "book_external_id, created_at, id"),
+        // Vencidas sin devolver (status + actual_return_date IS NULL), ya ordenadas por fecha de devolución esperada;
+        // lo usan tanto el barrido de vencidas como el listado
+        @Index(name = "idx_reservations_status_expected", columnList = "status, actual_return_date, expected_return_date, id")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 public class Reservation {
     
+    // Secuencia con bloques de 50 IDs: con IDENTITY Hibernate no puede agrupar los INSERT en batches
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "reservations_seq")
+    @SequenceGenerator(name = "reservations_seq", sequenceName = "reservations_seq", allocationSize = 50)
     private Long id;
     
     @ManyToOne(fetch = FetchType.LAZY)
@@ -49,6 +62,10 @@ public class Reservation {
     @Column(name = "late_fee", precision = 10, scale = 2)
     private BigDecimal lateFee = BigDecimal.ZERO;
     
+    // Día hasta el que se calculó lateFee; el barrido de vencidas solo recalcula las que quedaron atrás
+    @Column(name = "late_fee_accrued_on")
+    private LocalDate lateFeeAccruedOn;
+    
     @Enumerated(EnumType.STRING)
     @Column(nullable = false)
     private ReservationStatus status = ReservationStatus.ACTIVE;
@@ -56,6 +73,12 @@ public class Reservation {
     @Column(name = "created_at", nullable = false, updatable = false)
     private LocalDateTime createdAt;
     
+    // Evita que dos devoluciones simultáneas de la misma reserva se pisen
+    @Version
+    @ColumnDefault("0")
+    @Column(name = "version", nullable = false)
+    private Long version;
+    
     @PrePersist
     protected void onCreate() {
         createdAt = LocalDateTime.now();
@@ -64,6 +87,7 @@ public class Reservation {
         }
     }
     
+    // OVERDUE con actualReturnDate nulo: vencida y todavía sin devolver; con fecha: devuelta con demora
     public enum ReservationStatus {
         ACTIVE, RETURNED, OVERDUE
     }
@@ -0,0 +1,26 @@
+package com.example.libreria.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "sync_leases")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SyncLease {
+    
+    @Id
+    @Column(length = 100)
+    private String name;
+    
+    @Column(length = 200)
+    private String owner;
+    
+    @Column(name = "locked_until", nullable = false)
+    private LocalDateTime lockedUntil;
+}
@@ -1,9 +1,15 @@
 package com.example.libreria.repository;
 
 import com.example.libreria.model.Book;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -12,5 +18,31 @@ public interface BookRepository extends JpaRepository<Book, Long> {
     Optional<Book> findByExternalId(Long externalId);
     
     boolean existsByExternalId(Long externalId);
+    
+    Optional<BookStockView> findStockByExternalId(Long externalId);
+    
+    List<Book> findByExternalIdIn(Collection<Long> externalIds);
+    
+    // Descuento atómico: la condición y la escritura ocurren en la misma sentencia, sin lecturas previas.
+    // Devuelve 0 si el libro no existe o no quedan ejemplares disponibles.
+    @Modifying(flushAutomatically = true)
+    // También incrementa la versión, para que una escritura optimista concurrente detecte el cambio
+    @Query("UPDATE Book b SET b.availableQuantity = b.availableQuantity - 1, b.version = b.version + 1 " +
+            "WHERE b.externalId = :externalId AND b.availableQuantity > 0")
+    int decrementAvailableQuantity(@Param("externalId") Long externalId);
+    
+    // Devuelve un ejemplar sin superar el stock total
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE Book b SET b.availableQuantity = b.availableQuantity + 1, b.version = b.version + 1 " +
+            "WHERE b.externalId = :externalId AND b.availableQuantity < b.stockQuantity")
+    int incrementAvailableQuantity(@Param("externalId") Long externalId);
+    
+    // Paginación por clave (keyset): cada página arranca después del último ID leído
+    List<Book> findByExternalIdGreaterThanOrderByExternalIdAsc(Long externalId, Pageable pageable);
+    
+    // Ejemplares totales y disponibles de todo el catálogo, para los gauges de inventario
+    @Query("SELECT COALESCE(SUM(b.stockQuantity), 0) AS stockQuantity, " +
+            "COALESCE(SUM(b.availableQuantity), 0) AS availableQuantity FROM Book b")
+    InventoryTotalsView sumInventory();
 }
 
@@ -0,0 +1,9 @@
+package com.example.libreria.repository;
+
+// Proyección con los campos mutables de inventario, que nunca se cachean
+public interface BookStockView {
+    
+    Integer getStockQuantity();
+    
+    Integer getAvailableQuantity();
+}
@@ -0,0 +1,9 @@
+package com.example.libreria.repository;
+
+import com.example.libreria.model.InventoryCheckpoint;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface InventoryCheckpointRepository extends JpaRepository<InventoryCheckpoint, String> {
+}
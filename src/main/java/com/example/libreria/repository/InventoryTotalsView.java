@@ -0,0 +1,9 @@
+package com.example.libreria.repository;
+
+// Sumas de stock y disponibilidad sobre todos los libros
+public interface InventoryTotalsView {
+    
+    Long getStockQuantity();
+    
+    Long getAvailableQuantity();
+}
@@ -0,0 +1,16 @@
+package com.example.libreria.repository;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+// Lo mínimo para recalcular la multa de una reserva vencida, sin cargar la entidad ni el libro
+public interface OverdueCandidateView {
+    
+    Long getId();
+    
+    Long getVersion();
+    
+    LocalDate getExpectedReturnDate();
+    
+    BigDecimal getBookPrice();
+}
@@ -0,0 +1,21 @@
+package com.example.libreria.repository;
+
+import com.example.libreria.dto.ReservationFilterDTO;
+import com.example.libreria.dto.ReservationResponseDTO;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+// Consultas con filtros dinámicos que no se pueden expresar como método derivado
+public interface ReservationQueryRepository {
+    
+    // Hasta limit reservas que cumplen el filtro, ordenadas por (createdAt, id) descendente y posteriores
+    // en ese orden a la clave (afterCreatedAt, afterId); sin clave, desde la más reciente
+    List<ReservationResponseDTO> findPage(ReservationFilterDTO filter, LocalDateTime afterCreatedAt, Long afterId,
+                                          int limit);
+    
+    // Reservas vencidas sin devolver, de la más atrasada a la menos atrasada,
+    // posteriores a la clave (afterExpectedReturnDate, afterId) en ese orden
+    List<ReservationResponseDTO> findOverduePage(LocalDate afterExpectedReturnDate, Long afterId, int limit);
+}
@@ -0,0 +1,90 @@
+package com.example.libreria.repository;
+
+import com.example.libreria.dto.ReservationFilterDTO;
+import com.example.libreria.dto.ReservationResponseDTO;
+import com.example.libreria.model.Reservation;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Paginación por clave (keyset): la página N se resuelve recorriendo el índice desde el último elemento de
+// la anterior, en lugar de saltear N * size filas con OFFSET
+class ReservationQueryRepositoryImpl implements ReservationQueryRepository {
+    
+    @PersistenceContext
+    private EntityManager entityManager;
+    
+    @Override
+    public List<ReservationResponseDTO> findPage(ReservationFilterDTO filter, LocalDateTime afterCreatedAt,
+                                                 Long afterId, int limit) {
+        List<String> conditions = new ArrayList<>();
+        Map<String, Object> parameters = new HashMap<>();
+        if (filter.getStatus() != null) {
+            conditions.add("r.status = :status");
+            parameters.put("status", filter.getStatus());
+        }
+        if (filter.getUserId() != null) {
+            conditions.add("u.id = :userId");
+            parameters.put("userId", filter.getUserId());
+        }
+        if (filter.getBookExternalId() != null) {
+            conditions.add("b.externalId = :bookExternalId");
+            parameters.put("bookExternalId", filter.getBookExternalId());
+        }
+        if (filter.getFrom() != null) {
+            conditions.add("r.startDate >= :from");
+            parameters.put("from", filter.getFrom());
+        }
+        if (filter.getTo() != null) {
+            conditions.add("r.startDate <= :to");
+            parameters.put("to", filter.getTo());
+        }
+        if (afterCreatedAt != null && afterId != null) {
+            // El primer término acota el rango del índice; el segundo desempata reservas del mismo instante
+            conditions.add("r.createdAt <= :afterCreatedAt");
+            conditions.add("(r.createdAt < :afterCreatedAt OR r.id < :afterId)");
+            parameters.put("afterCreatedAt", afterCreatedAt);
+            parameters.put("afterId", afterId);
+        }
+        
+        StringBuilder jpql = new StringBuilder(ReservationRepository.RESPONSE_SELECT);
+        if (!conditions.isEmpty()) {
+            jpql.append("WHERE ").append(String.join(" AND ", conditions)).append(' ');
+        }
+        jpql.append("ORDER BY r.createdAt DESC, r.id DESC");
+        
+        TypedQuery<ReservationResponseDTO> query = entityManager.createQuery(jpql.toString(), ReservationResponseDTO.class);
+        parameters.forEach(query::setParameter);
+        return query.setMaxResults(limit).getResultList();
+    }
+    
+    // Igualdad sobre status y actual_return_date IS NULL: un recorrido del índice idx_reservations_status_expected
+    // que ya sale en el orden pedido, sin ordenar en memoria
+    @Override
+    public List<ReservationResponseDTO> findOverduePage(LocalDate afterExpectedReturnDate, Long afterId, int limit) {
+        StringBuilder jpql = new StringBuilder(ReservationRepository.RESPONSE_SELECT)
+                .append("WHERE r.status = :status AND r.actualReturnDate IS NULL ");
+        boolean resume = afterExpectedReturnDate != null && afterId != null;
+        if (resume) {
+            jpql.append("AND r.expectedReturnDate >= :afterDate ")
+                    .append("AND (r.expectedReturnDate > :afterDate OR r.id > :afterId) ");
+        }
+        // status y actualReturnDate son constantes en el resultado, pero encabezar el ORDER BY con ellos hace que el
+        // orden coincida con el índice completo: H2 lo lee ya ordenado y se detiene en limit filas
+        jpql.append("ORDER BY r.status, r.actualReturnDate, r.expectedReturnDate, r.id");
+        
+        TypedQuery<ReservationResponseDTO> query = entityManager.createQuery(jpql.toString(), ReservationResponseDTO.class)
+                .setParameter("status", Reservation.ReservationStatus.OVERDUE);
+        if (resume) {
+            query.setParameter("afterDate", afterExpectedReturnDate).setParameter("afterId", afterId);
+        }
+        return query.setMaxResults(limit).getResultList();
+    }
+}
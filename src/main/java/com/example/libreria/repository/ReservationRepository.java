@@ -1,23 +1,78 @@
 package com.example.libreria.repository;
 
+import com.example.libreria.dto.ReservationResponseDTO;
 import com.example.libreria.model.Reservation;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
-public interface ReservationRepository extends JpaRepository<Reservation, Long> {
+public interface ReservationRepository extends JpaRepository<Reservation, Long>, ReservationQueryRepository {
+    
+    // Proyección directa al DTO de respuesta: usuario y libro salen del mismo SELECT, sin cargar entidades
+    String RESPONSE_SELECT = "SELECT new com.example.libreria.dto.ReservationResponseDTO(" +
+            "r.id, u.id, u.name, b.externalId, b.title, r.rentalDays, r.startDate, r.expectedReturnDate, " +
+            "r.actualReturnDate, r.dailyRate, r.totalFee, r.lateFee, r.status, r.createdAt) " +
+            "FROM Reservation r JOIN r.user u JOIN r.book b ";
     
     // TO DO: Implementar los métodos de la reserva
     List<Reservation> findByUserId(Long userId);
     List<Reservation> findByStatus(Reservation.ReservationStatus status);
 
-    @Query("SELECT r FROM Reservation r " +
-            "WHERE r.status = 'ACTIVE' AND r.expectedReturnDate < CURRENT_DATE")
-    List<Reservation> findOverdueReservations();
+    // Reservas con su libro y usuario en un solo SELECT, para procesar devoluciones en lote
+    @Query("SELECT r FROM Reservation r JOIN FETCH r.book JOIN FETCH r.user WHERE r.id IN :ids")
+    List<Reservation> findWithBookAndUserByIdIn(@Param("ids") Collection<Long> ids);
+
+    // Reservas todavía sin devolver en el estado dado; resuelto sobre idx_reservations_status_expected
+    long countByStatusAndActualReturnDateIsNull(Reservation.ReservationStatus status);
+    
+    @Query(RESPONSE_SELECT + "WHERE r.id = :id")
+    Optional<ReservationResponseDTO> findResponseById(@Param("id") Long id);
+    
+    @Query(RESPONSE_SELECT + "WHERE u.id = :userId ORDER BY r.id")
+    List<ReservationResponseDTO> findResponsesByUserId(@Param("userId") Long userId);
+    
+    // Todo lo que sigue en préstamo: el barrido pasa a OVERDUE las reservas vencidas que no se devolvieron
+    @Query(RESPONSE_SELECT + "WHERE r.status IN ('ACTIVE', 'OVERDUE') AND r.actualReturnDate IS NULL ORDER BY r.id")
+    List<ReservationResponseDTO> findOpenResponses();
+    
+    // El estado de vencida lo materializa el barrido (OverdueSweeperService): acá solo se lee
+    @Query(RESPONSE_SELECT + "WHERE r.status = 'OVERDUE' AND r.actualReturnDate IS NULL ORDER BY r.id")
+    List<ReservationResponseDTO> findOverdueResponses();
+    
+    // Reservas sin devolver con el estado dado, vencidas antes de today y cuya multa no se calculó para today,
+    // posteriores a (afterDate, afterId) en el orden del índice idx_reservations_status_expected
+    @Query("SELECT r.id AS id, r.version AS version, r.expectedReturnDate AS expectedReturnDate, b.price AS bookPrice " +
+            "FROM Reservation r JOIN r.book b " +
+            "WHERE r.status = :status AND r.actualReturnDate IS NULL AND r.expectedReturnDate < :today " +
+            "AND (r.lateFeeAccruedOn IS NULL OR r.lateFeeAccruedOn < :today) " +
+            "AND r.expectedReturnDate >= :afterDate AND (r.expectedReturnDate > :afterDate OR r.id > :afterId) " +
+            "ORDER BY r.status, r.actualReturnDate, r.expectedReturnDate, r.id")
+    List<OverdueCandidateView> findOverdueCandidates(@Param("status") Reservation.ReservationStatus status,
+                                                     @Param("today") LocalDate today,
+                                                     @Param("afterDate") LocalDate afterDate,
+                                                     @Param("afterId") Long afterId,
+                                                     Limit limit);
+    
+    // Para exportar el historial: se recorre con un cursor y se pide al driver de a bloques de filas.
+    // Debe consumirse dentro de una transacción y cerrarse al terminar.
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query(RESPONSE_SELECT + "WHERE (:from IS NULL OR r.startDate >= :from) AND (:to IS NULL OR r.startDate <= :to) " +
+            "ORDER BY r.id")
+    Stream<ReservationResponseDTO> streamResponses(@Param("from") LocalDate from, @Param("to") LocalDate to);
 }
 
@@ -0,0 +1,34 @@
+package com.example.libreria.repository;
+
+import com.example.libreria.model.SyncLease;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+
+@Repository
+public interface SyncLeaseRepository extends JpaRepository<SyncLease, String> {
+    
+    @Modifying
+    @Query(value = "INSERT INTO sync_leases (name, owner, locked_until) VALUES (:name, NULL, :lockedUntil)",
+            nativeQuery = true)
+    int insertLease(@Param("name") String name, @Param("lockedUntil") LocalDateTime lockedUntil);
+    
+    // Toma el lease solo si está vencido o ya nos pertenece
+    @Modifying
+    @Query("UPDATE SyncLease l SET l.owner = :owner, l.lockedUntil = :lockedUntil " +
+            "WHERE l.name = :name AND (l.lockedUntil <= :now OR l.owner = :owner)")
+    int acquire(@Param("name") String name,
+                @Param("owner") String owner,
+                @Param("now") LocalDateTime now,
+                @Param("lockedUntil") LocalDateTime lockedUntil);
+    
+    @Modifying
+    @Query("UPDATE SyncLease l SET l.lockedUntil = :lockedUntil WHERE l.name = :name AND l.owner = :owner")
+    int extend(@Param("name") String name,
+               @Param("owner") String owner,
+               @Param("lockedUntil") LocalDateTime lockedUntil);
+}
@@ -0,0 +1,74 @@
+package com.example.libreria.service;
+
+import com.example.libreria.model.Book;
+import com.example.libreria.repository.BookRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+// Cache de lectura (read-through) de la parte inmutable del catálogo, indexada por externalId.
+// Caffeine usa W-TinyLFU, así que los títulos consultados a menudo sobreviven a recorridos masivos.
+@Service
+@Slf4j
+public class BookCatalogCache {
+
+    private final BookRepository bookRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final Cache<Long, CatalogEntry> cache;
+
+    public BookCatalogCache(BookRepository bookRepository,
+                            TransactionTemplate transactionTemplate,
+                            MeterRegistry meterRegistry,
+                            @Value("${external.api.books.cache.maximum-size:10000}") long maximumSize,
+                            @Value("${external.api.books.cache.expire-after-write:PT6H}") Duration expireAfterWrite) {
+        this.bookRepository = bookRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                // Red de seguridad por si un cambio llega a la base sin pasar por la sincronización
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "books.catalog");
+    }
+
+    public Optional<CatalogEntry> get(Long externalId) {
+        // Los IDs inexistentes no se cachean: el loader devuelve null
+        return Optional.ofNullable(cache.get(externalId, this::load));
+    }
+
+    public void invalidate(Long externalId) {
+        cache.invalidate(externalId);
+    }
+
+    public void invalidateAll(Collection<Long> externalIds) {
+        cache.invalidateAll(externalIds);
+    }
+
+    private CatalogEntry load(Long externalId) {
+        return transactionTemplate.execute(status -> bookRepository.findByExternalId(externalId)
+                .map(CatalogEntry::of)
+                .orElse(null));
+    }
+
+    public record CatalogEntry(Long externalId, String title, List<String> authorName, Integer firstPublishYear,
+                               Integer editionCount, Boolean hasFulltext, BigDecimal price) {
+
+        static CatalogEntry of(Book book) {
+            return new CatalogEntry(book.getExternalId(), book.getTitle(),
+                    book.getAuthorName() != null ? List.copyOf(book.getAuthorName()) : null,
+                    book.getFirstPublishYear(), book.getEditionCount(), book.getHasFulltext(), book.getPrice());
+        }
+    }
+}
@@ -1,66 +1,181 @@
 package com.example.libreria.service;
 
+import com.example.libreria.config.OptimisticLockConfig;
+import com.example.libreria.config.RetryOnConflict;
 import com.example.libreria.dto.BookResponseDTO;
+import com.example.libreria.dto.BookSyncResultDTO;
 import com.example.libreria.dto.ExternalBookDTO;
 import com.example.libreria.model.Book;
 import com.example.libreria.repository.BookRepository;
+import com.example.libreria.repository.BookStockView;
+import io.micrometer.observation.annotation.Observed;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.retry.support.RetryTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
+@Observed(name = "library.service")
 @RequiredArgsConstructor
 @Slf4j
 public class BookService {
     
     private final BookRepository bookRepository;
     private final ExternalBookService externalBookService;
+    private final TransactionTemplate transactionTemplate;
+    private final BookCatalogCache bookCatalogCache;
+    private final InventoryEngine inventoryEngine;
+    private final RetryTemplate optimisticLockRetryTemplate;
     
-    @Transactional
-    public void syncBooksFromExternalApi() {
-        log.info("Synchronizing books from external API");
-        List<ExternalBookDTO> externalBooks = externalBookService.fetchAllBooks();
+    @Value("${external.api.books.sync.chunk-size:500}")
+    private int syncChunkSize = 500;
+    
+    public BookSyncResultDTO syncBooksFromExternalApi() {
+        return syncBooksFromExternalApi(false);
+    }
+    
+    public BookSyncResultDTO syncBooksFromExternalApi(boolean force) {
+        return syncBooksFromExternalApi(force, progress -> { });
+    }
+    
+    // El listener recibe una copia de los contadores después de cada bloque confirmado
+    public BookSyncResultDTO syncBooksFromExternalApi(boolean force, Consumer<BookSyncResultDTO> progressListener) {
+        log.info("Synchronizing books from external API (force={})", force);
+        long start = System.nanoTime();
+        BookSyncResultDTO result = new BookSyncResultDTO();
+        
+        // El feed se procesa a medida que llega; cada bloque se confirma en su propia transacción
+        boolean modified = externalBookService.streamAllBooks(getSyncChunkSize(), !force, chunk -> {
+            importChunk(chunk, result);
+            result.setElapsedMillis(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            progressListener.accept(copyOf(result));
+        });
+        result.setNotModified(!modified);
+        
+        result.setElapsedMillis(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        log.info("Synchronization completed: fetched={}, inserted={}, updated={}, skipped={}, chunks={}, notModified={}, elapsed={}ms",
+                result.getFetched(), result.getInserted(), result.getUpdated(), result.getSkipped(),
+                result.getChunks(), result.isNotModified(), result.getElapsedMillis());
+        return result;
+    }
+    
+    public int getSyncChunkSize() {
+        return Math.max(1, syncChunkSize);
+    }
+    
+    // Aplica un bloque del catálogo (feed externo o snapshot local) en su propia transacción
+    public void importChunk(List<ExternalBookDTO> chunk, BookSyncResultDTO result) {
+        // Una reserva o devolución sobre un libro del bloque entre la lectura y la escritura cambia su versión:
+        // el bloque se reintenta en una transacción nueva, que vuelve a leer las filas
+        ChunkCounts counts = optimisticLockRetryTemplate.execute(OptimisticLockConfig.named("BookService.importChunk",
+                () -> transactionTemplate.execute(status -> syncChunk(chunk))));
+        // Solo se suman los contadores del intento confirmado
+        result.setInserted(result.getInserted() + counts.inserted());
+        result.setUpdated(result.getUpdated() + counts.updated());
+        result.setSkipped(result.getSkipped() + counts.skipped());
+        // Después del commit, para que una lectura concurrente no vuelva a cachear la versión anterior
+        bookCatalogCache.invalidateAll(chunk.stream()
+                .map(ExternalBookDTO::getId)
+                .filter(Objects::nonNull)
+                .toList());
+        result.setFetched(result.getFetched() + chunk.size());
+        result.setChunks(result.getChunks() + 1);
+    }
+    
+    private ChunkCounts syncChunk(List<ExternalBookDTO> chunk) {
+        // Si el feed repite un ID dentro del bloque, prevalece la última aparición
+        Map<Long, ExternalBookDTO> incoming = new LinkedHashMap<>();
+        for (ExternalBookDTO externalBook : chunk) {
+            if (externalBook.getId() != null) {
+                incoming.put(externalBook.getId(), externalBook);
+            }
+        }
+        if (incoming.isEmpty()) {
+            return new ChunkCounts(0, 0, 0);
+        }
         
-        for (ExternalBookDTO externalBook : externalBooks) {
-            Book existingBook = bookRepository.findByExternalId(externalBook.getId())
-                    .orElse(null);
-            
+        Map<Long, Book> existingBooks = bookRepository.findByExternalIdIn(incoming.keySet()).stream()
+                .collect(Collectors.toMap(Book::getExternalId, Function.identity()));
+        
+        List<Book> toInsert = new ArrayList<>();
+        List<Book> toUpdate = new ArrayList<>();
+        int skipped = 0;
+        for (ExternalBookDTO externalBook : incoming.values()) {
+            Book existingBook = existingBooks.get(externalBook.getId());
+            String contentHash = fingerprint(externalBook);
             if (existingBook == null) {
                 Book newBook = convertToBook(externalBook);
+                newBook.setContentHash(contentHash);
                 newBook.setStockQuantity(10); // Stock inicial por defecto
                 newBook.setAvailableQuantity(10);
-                bookRepository.save(newBook);
-                log.info("Created new book: {}", newBook.getTitle());
+                toInsert.add(newBook);
+            } else if (contentHash.equals(existingBook.getContentHash())) {
+                // Sin cambios: no se toca la fila
+                skipped++;
             } else {
                 // Actualizar información del libro
                 updateBookFromExternal(existingBook, externalBook);
-                bookRepository.save(existingBook);
-                log.info("Updated book: {}", existingBook.getTitle());
+                existingBook.setContentHash(contentHash);
+                toUpdate.add(existingBook);
             }
         }
-        log.info("Synchronization completed");
+        
+        bookRepository.saveAll(toInsert);
+        bookRepository.saveAll(toUpdate);
+        log.debug("Synchronized chunk: inserted={}, updated={}, skipped={}", toInsert.size(), toUpdate.size(), skipped);
+        return new ChunkCounts(toInsert.size(), toUpdate.size(), skipped);
+    }
+    
+    private record ChunkCounts(int inserted, int updated, int skipped) {
     }
     
     @Transactional(readOnly = true)
     public List<BookResponseDTO> getAllBooks() {
+        // La fila puede ir detrás del motor de inventario (volcado diferido): prevalece lo que él conoce
         return bookRepository.findAll().stream()
-                .map(this::convertToDTO)
+                .map(book -> {
+                    BookResponseDTO dto = convertToDTO(book);
+                    inventoryEngine.peekStock(book.getExternalId()).ifPresent(stock -> {
+                        dto.setStockQuantity(stock.getStockQuantity());
+                        dto.setAvailableQuantity(stock.getAvailableQuantity());
+                    });
+                    return dto;
+                })
                 .collect(Collectors.toList());
     }
     
     @Transactional(readOnly = true)
     public BookResponseDTO getBookByExternalId(Long externalId) {
-        Book book = bookRepository.findByExternalId(externalId)
+        // Catálogo desde la cache; el stock lo resuelve el motor de inventario (base o memoria)
+        BookCatalogCache.CatalogEntry catalog = bookCatalogCache.get(externalId)
                 .orElseThrow(() -> new RuntimeException("Libro no encontrado con ID externo: " + externalId));
-        return convertToDTO(book);
+        BookStockView stock = inventoryEngine.getStock(externalId)
+                .orElseThrow(() -> new RuntimeException("Libro no encontrado con ID externo: " + externalId));
+        return convertToDTO(catalog, stock.getStockQuantity(), stock.getAvailableQuantity());
     }
     
+    @RetryOnConflict
     @Transactional
     public BookResponseDTO updateStock(Long externalId, Integer stockQuantity) {
+        // Con inventario en memoria, los movimientos pendientes deben llegar a la fila antes de leerla
+        inventoryEngine.stockChanged(externalId);
         Book book = bookRepository.findByExternalId(externalId)
                 .orElseThrow(() -> new RuntimeException("Libro no encontrado con ID externo: " + externalId));
         
@@ -72,34 +187,45 @@ public class BookService {
         book.setStockQuantity(stockQuantity);
         book.setAvailableQuantity(stockQuantity - reserved);
         bookRepository.save(book);
+        bookCatalogCache.invalidate(externalId);
         
         return convertToDTO(book);
     }
     
     @Transactional
     public void decreaseAvailableQuantity(Long externalId) {
-        Book book = bookRepository.findByExternalId(externalId)
-                .orElseThrow(() -> new RuntimeException("Libro no encontrado con ID externo: " + externalId));
-        
-        if (book.getAvailableQuantity() <= 0) {
+        if (!inventoryEngine.tryReserve(externalId)) {
             throw new RuntimeException("No hay libros disponibles para reservar");
         }
-        
-        book.setAvailableQuantity(book.getAvailableQuantity() - 1);
-        bookRepository.save(book);
     }
     
     @Transactional
     public void increaseAvailableQuantity(Long externalId) {
-        Book book = bookRepository.findByExternalId(externalId)
-                .orElseThrow(() -> new RuntimeException("Libro no encontrado con ID externo: " + externalId));
-        
-        if (book.getAvailableQuantity() >= book.getStockQuantity()) {
+        if (!inventoryEngine.tryRelease(externalId)) {
             throw new RuntimeException("La cantidad disponible no puede exceder el stock");
         }
-        
-        book.setAvailableQuantity(book.getAvailableQuantity() + 1);
-        bookRepository.save(book);
+    }
+    
+    private static BookSyncResultDTO copyOf(BookSyncResultDTO result) {
+        return new BookSyncResultDTO(result.getFetched(), result.getInserted(), result.getUpdated(),
+                result.getSkipped(), result.isNotModified(), result.getChunks(), result.getElapsedMillis());
+    }
+    
+    // SHA-256 sobre los campos de catálogo; el precio se normaliza para que 15.9 y 15.90 coincidan
+    static String fingerprint(ExternalBookDTO dto) {
+        StringBuilder content = new StringBuilder()
+                .append(dto.getTitle()).append('\u001F')
+                .append(dto.getAuthorName() != null ? String.join("\u001E", dto.getAuthorName()) : null).append('\u001F')
+                .append(dto.getFirstPublishYear()).append('\u001F')
+                .append(dto.getEditionCount()).append('\u001F')
+                .append(dto.getHasFulltext()).append('\u001F')
+                .append(dto.getPrice() != null ? dto.getPrice().stripTrailingZeros().toPlainString() : null);
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(content.toString().getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 no disponible", e);
+        }
     }
     
     private Book convertToBook(ExternalBookDTO dto) {
@@ -123,6 +249,21 @@ public class BookService {
         book.setPrice(dto.getPrice());
     }
     
+    private BookResponseDTO convertToDTO(BookCatalogCache.CatalogEntry catalog, Integer stockQuantity,
+                                         Integer availableQuantity) {
+        BookResponseDTO dto = new BookResponseDTO();
+        dto.setExternalId(catalog.externalId());
+        dto.setTitle(catalog.title());
+        dto.setAuthorName(catalog.authorName());
+        dto.setFirstPublishYear(catalog.firstPublishYear());
+        dto.setEditionCount(catalog.editionCount());
+        dto.setHasFulltext(catalog.hasFulltext());
+        dto.setPrice(catalog.price());
+        dto.setStockQuantity(stockQuantity);
+        dto.setAvailableQuantity(availableQuantity);
+        return dto;
+    }
+    
     private BookResponseDTO convertToDTO(Book book) {
         BookResponseDTO dto = new BookResponseDTO();
         dto.setExternalId(book.getExternalId());
@@ -0,0 +1,245 @@
+package com.example.libreria.service;
+
+import com.example.libreria.dto.BookSyncResultDTO;
+import com.example.libreria.dto.ExternalBookDTO;
+import com.example.libreria.model.Book;
+import com.example.libreria.repository.BookRepository;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+// Copia local del catálogo en el mismo formato que el feed externo, para arrancar sin red
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class BookSnapshotService {
+
+    private static final int PAGE_SIZE = 500;
+
+    private final BookRepository bookRepository;
+    private final BookService bookService;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+
+    @Value("${external.api.books.snapshot.enabled:true}")
+    private boolean enabled = true;
+
+    @Value("${external.api.books.snapshot.path:./data/books-snapshot.json}")
+    private Path snapshotPath = Path.of("./data/books-snapshot.json");
+
+    @Value("${external.api.books.snapshot.seed-path:}")
+    private String seedPath = "";
+
+    @Value("${external.api.books.snapshot.load-on-startup:true}")
+    private boolean loadOnStartup = true;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadOnStartup() {
+        if (!enabled || !loadOnStartup) {
+            return;
+        }
+        if (bookRepository.count() > 0) {
+            log.info("Books table already populated, skipping snapshot load");
+            return;
+        }
+        Path source = Files.isRegularFile(snapshotPath) ? snapshotPath
+                : !seedPath.isBlank() && Files.isRegularFile(Path.of(seedPath)) ? Path.of(seedPath)
+                : null;
+        if (source == null) {
+            log.info("No catalog snapshot found at {}, books table stays empty until the first sync", snapshotPath);
+            return;
+        }
+        try {
+            loadSnapshot(source);
+        } catch (IOException | RuntimeException e) {
+            // Un snapshot dañado no debe impedir el arranque: la próxima sincronización lo reemplaza
+            log.warn("Could not load catalog snapshot {}: {}", source, e.getMessage(), e);
+        }
+    }
+
+    // Después de una sincronización exitosa; si el feed no cambió solo se escribe si aún no existe
+    public void onSyncCompleted(BookSyncResultDTO result) {
+        if (!enabled || (result.isNotModified() && Files.isRegularFile(snapshotPath))) {
+            return;
+        }
+        try {
+            writeSnapshot();
+        } catch (IOException | RuntimeException e) {
+            log.warn("Could not write catalog snapshot {}: {}", snapshotPath, e.getMessage(), e);
+        }
+    }
+
+    public BookSyncResultDTO loadSnapshot(Path source) throws IOException {
+        log.info("Loading catalog snapshot from {}", source);
+        long start = System.nanoTime();
+        BookSyncResultDTO result = new BookSyncResultDTO();
+        try (InputStream in = openForRead(source);
+             JsonParser parser = objectMapper.getFactory().createParser(in)) {
+            readInChunks(parser, bookService.getSyncChunkSize(), chunk -> bookService.importChunk(chunk, result));
+        }
+        result.setElapsedMillis(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        log.info("Catalog snapshot loaded: books={}, inserted={}, updated={}, chunks={}, elapsed={}ms",
+                result.getFetched(), result.getInserted(), result.getUpdated(), result.getChunks(),
+                result.getElapsedMillis());
+        return result;
+    }
+
+    public long writeSnapshot() throws IOException {
+        long start = System.nanoTime();
+        Path target = snapshotPath.toAbsolutePath();
+        Files.createDirectories(target.getParent());
+        // Se escribe a un temporal en el mismo directorio y se renombra: nunca queda un snapshot a medias
+        Path temp = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+        long written = 0;
+        try {
+            try (OutputStream out = openForWrite(temp, isCompressed(target));
+                 JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+                // Sin flush por libro: el buffer y el compresor trabajan por bloques grandes
+                ObjectWriter writer = objectMapper.writerFor(ExternalBookDTO.class)
+                        .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+                generator.writeStartArray();
+                Long lastId = Long.MIN_VALUE;
+                List<ExternalBookDTO> page;
+                do {
+                    Long after = lastId;
+                    page = transactionTemplate.execute(status -> bookRepository
+                            .findByExternalIdGreaterThanOrderByExternalIdAsc(after, PageRequest.ofSize(PAGE_SIZE))
+                            .stream()
+                            .map(BookSnapshotService::toExternal)
+                            .toList());
+                    for (ExternalBookDTO book : page) {
+                        writer.writeValue(generator, book);
+                        lastId = book.getId();
+                    }
+                    written += page.size();
+                } while (page.size() == PAGE_SIZE);
+                generator.writeEndArray();
+            }
+            moveIntoPlace(temp, target);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        log.info("Catalog snapshot written to {}: books={}, size={} bytes, elapsed={}ms", target, written,
+                Files.size(target), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        return written;
+    }
+
+    private void readInChunks(JsonParser parser, int chunkSize, Consumer<List<ExternalBookDTO>> chunkConsumer)
+            throws IOException {
+        JsonToken first = parser.nextToken();
+        if (first == null) {
+            return;
+        }
+        if (first != JsonToken.START_ARRAY) {
+            throw new RuntimeException("Snapshot de catálogo inválido: se esperaba un arreglo JSON");
+        }
+        List<ExternalBookDTO> chunk = new ArrayList<>(chunkSize);
+        while (parser.nextToken() == JsonToken.START_OBJECT) {
+            chunk.add(objectMapper.readValue(parser, ExternalBookDTO.class));
+            if (chunk.size() == chunkSize) {
+                chunkConsumer.accept(chunk);
+                chunk = new ArrayList<>(chunkSize);
+            }
+        }
+        if (!chunk.isEmpty()) {
+            chunkConsumer.accept(chunk);
+        }
+    }
+
+    private static InputStream openForRead(Path source) throws IOException {
+        if (isCompressed(source)) {
+            return new GZIPInputStream(new BufferedInputStream(Files.newInputStream(source)), 64 * 1024);
+        }
+        try (FileChannel channel = FileChannel.open(source, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                return new BufferedInputStream(Files.newInputStream(source), 64 * 1024);
+            }
+            // El mapeo sigue siendo válido después de cerrar el canal
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new ByteBufferInputStream(buffer);
+        }
+    }
+
+    private static OutputStream openForWrite(Path temp, boolean compressed) throws IOException {
+        OutputStream out = new BufferedOutputStream(Files.newOutputStream(temp), 64 * 1024);
+        return compressed ? new GZIPOutputStream(out, 64 * 1024) : out;
+    }
+
+    private static boolean isCompressed(Path path) {
+        return path.getFileName().toString().endsWith(".gz");
+    }
+
+    private static void moveIntoPlace(Path temp, Path target) throws IOException {
+        try {
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static ExternalBookDTO toExternal(Book book) {
+        return new ExternalBookDTO(book.getExternalId(), book.getHasFulltext(), book.getEditionCount(),
+                book.getTitle(), book.getAuthorName() != null ? new ArrayList<>(book.getAuthorName()) : null,
+                book.getFirstPublishYear(), book.getPrice());
+    }
+
+    private static class ByteBufferInputStream extends InputStream {
+
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int count = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, count);
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package com.example.libreria.service;
+
+import com.example.libreria.dto.BookSyncJobDTO;
+import com.example.libreria.dto.BookSyncResultDTO;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class BookSyncJobService {
+
+    private static final int MAX_RETAINED_JOBS = 20;
+    private static final String LEASE_NAME = "book-catalog-sync";
+
+    private final BookService bookService;
+    private final SyncLeaseService syncLeaseService;
+    private final BookSnapshotService bookSnapshotService;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${external.api.books.lease.ttl:PT30M}")
+    private Duration leaseTtl = Duration.ofMinutes(30);
+
+    // Un único hilo: nunca corren dos sincronizaciones a la vez en este nodo
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "book-sync");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Historial acotado de trabajos, del más antiguo al más reciente
+    private final Map<String, SyncJob> jobs = new LinkedHashMap<>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, SyncJob> eldest) {
+            return size() > MAX_RETAINED_JOBS;
+        }
+    };
+
+    private SyncJob currentJob;
+
+    private volatile Instant lastSuccessAt;
+    private volatile Duration lastDuration;
+
+    @PostConstruct
+    void registerMetrics() {
+        Gauge.builder("library.books.sync.staleness", this, service -> service.lastSuccessAt == null
+                        ? Double.NaN
+                        : Duration.between(service.lastSuccessAt, Instant.now()).toMillis() / 1000.0)
+                .description("Segundos desde la última sincronización exitosa del catálogo")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+        Gauge.builder("library.books.sync.last.duration", this, service -> service.lastDuration == null
+                        ? Double.NaN
+                        : service.lastDuration.toMillis() / 1000.0)
+                .description("Duración de la última sincronización del catálogo")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+    }
+
+    public synchronized BookSyncJobDTO startSync(boolean force) {
+        // Si ya hay una sincronización pendiente que cubre el pedido, el pedido se une a ella. Un pedido forzado
+        // no se une a una sin forzar: queda en cola detrás de ella y los pedidos siguientes se unen al forzado
+        if (currentJob != null && !currentJob.isFinished() && (currentJob.force || !force)) {
+            log.info("Sync job {} already in progress, coalescing request", currentJob.id);
+            return currentJob.toDTO();
+        }
+
+        SyncJob job = new SyncJob(UUID.randomUUID().toString(), force);
+        jobs.put(job.id, job);
+        currentJob = job;
+        executor.execute(() -> run(job));
+        log.info("Queued sync job {} (force={})", job.id, force);
+        return job.toDTO();
+    }
+
+    public synchronized BookSyncJobDTO getJob(String jobId) {
+        SyncJob job = jobs.get(jobId);
+        if (job == null) {
+            throw new RuntimeException("Trabajo de sincronización no encontrado con ID: " + jobId);
+        }
+        return job.toDTO();
+    }
+
+    private void run(SyncJob job) {
+        job.startedAt = Instant.now();
+        boolean leased = false;
+        try {
+            leased = syncLeaseService.tryAcquire(LEASE_NAME, leaseTtl);
+            if (!leased) {
+                job.error = "Otra instancia ya está sincronizando el catálogo";
+                job.status = BookSyncJobDTO.JobStatus.SKIPPED;
+                return;
+            }
+            job.status = BookSyncJobDTO.JobStatus.RUNNING;
+            job.progress = bookService.syncBooksFromExternalApi(job.force, progress -> {
+                job.progress = progress;
+                renewLease(job);
+            });
+            // Todavía con el lease tomado, para que ningún otro nodo modifique el catálogo mientras se copia
+            renewLease(job);
+            bookSnapshotService.onSyncCompleted(job.progress);
+            job.status = BookSyncJobDTO.JobStatus.COMPLETED;
+        } catch (RuntimeException e) {
+            log.error("Sync job {} failed: {}", job.id, e.getMessage(), e);
+            job.error = e.getMessage();
+            job.status = BookSyncJobDTO.JobStatus.FAILED;
+        } finally {
+            job.finishedAt = Instant.now();
+            if (leased) {
+                syncLeaseService.release(LEASE_NAME);
+            }
+            record(job);
+        }
+    }
+
+    // Si el lease venció y otra instancia lo tomó, este nodo deja de escribir el catálogo y el snapshot
+    private void renewLease(SyncJob job) {
+        if (!syncLeaseService.renew(LEASE_NAME, leaseTtl)) {
+            log.warn("Sync job {} lost lease {}, aborting", job.id, LEASE_NAME);
+            throw new RuntimeException("Se perdió el lease de sincronización: otra instancia está sincronizando el catálogo");
+        }
+    }
+
+    private void record(SyncJob job) {
+        Duration duration = Duration.between(job.startedAt, job.finishedAt);
+        if (job.status == BookSyncJobDTO.JobStatus.COMPLETED) {
+            lastSuccessAt = job.finishedAt;
+            lastDuration = duration;
+        }
+        Timer.builder("library.books.sync")
+                .description("Duración de las sincronizaciones del catálogo")
+                .tag("outcome", job.status.name().toLowerCase())
+                .register(meterRegistry)
+                .record(duration);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private static class SyncJob {
+
+        private final String id;
+        private final boolean force;
+        private volatile BookSyncJobDTO.JobStatus status = BookSyncJobDTO.JobStatus.QUEUED;
+        private volatile BookSyncResultDTO progress = new BookSyncResultDTO();
+        private volatile Instant startedAt;
+        private volatile Instant finishedAt;
+        private volatile String error;
+
+        SyncJob(String id, boolean force) {
+            this.id = id;
+            this.force = force;
+        }
+
+        boolean isFinished() {
+            return status == BookSyncJobDTO.JobStatus.COMPLETED
+                    || status == BookSyncJobDTO.JobStatus.FAILED
+                    || status == BookSyncJobDTO.JobStatus.SKIPPED;
+        }
+
+        BookSyncJobDTO toDTO() {
+            BookSyncResultDTO snapshot = progress;
+            Instant started = startedAt;
+            Instant finished = finishedAt;
+            long elapsedMillis = started == null ? 0
+                    : Duration.between(started, finished != null ? finished : Instant.now()).toMillis();
+            double booksPerSecond = elapsedMillis > 0 ? snapshot.getFetched() * 1000.0 / elapsedMillis : 0;
+
+            BookSyncJobDTO dto = new BookSyncJobDTO();
+            dto.setJobId(id);
+            dto.setStatus(status);
+            dto.setForce(force);
+            dto.setFetched(snapshot.getFetched());
+            dto.setInserted(snapshot.getInserted());
+            dto.setUpdated(snapshot.getUpdated());
+            dto.setSkipped(snapshot.getSkipped());
+            dto.setNotModified(snapshot.isNotModified());
+            dto.setElapsedMillis(elapsedMillis);
+            dto.setBooksPerSecond(booksPerSecond);
+            dto.setStartedAt(started);
+            dto.setFinishedAt(finished);
+            dto.setError(error);
+            return dto;
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.libreria.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.Trigger;
+import org.springframework.scheduling.annotation.SchedulingConfigurer;
+import org.springframework.scheduling.config.ScheduledTaskRegistrar;
+import org.springframework.scheduling.support.CronTrigger;
+import org.springframework.scheduling.support.PeriodicTrigger;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.ThreadLocalRandom;
+
+@Component
+@ConditionalOnProperty(prefix = "external.api.books.refresh", name = "enabled", havingValue = "true")
+@RequiredArgsConstructor
+@Slf4j
+public class BookSyncScheduler implements SchedulingConfigurer {
+
+    private final BookSyncJobService bookSyncJobService;
+
+    // Si se define una expresión cron, tiene prioridad sobre fixed-delay
+    @Value("${external.api.books.refresh.cron:}")
+    private String cron = "";
+
+    @Value("${external.api.books.refresh.fixed-delay:PT6H}")
+    private Duration fixedDelay = Duration.ofHours(6);
+
+    @Value("${external.api.books.refresh.initial-delay:PT1M}")
+    private Duration initialDelay = Duration.ofMinutes(1);
+
+    @Value("${external.api.books.refresh.jitter:PT5M}")
+    private Duration jitter = Duration.ofMinutes(5);
+
+    @Override
+    public void configureTasks(ScheduledTaskRegistrar taskRegistrar) {
+        Trigger baseTrigger;
+        if (StringUtils.hasText(cron)) {
+            baseTrigger = new CronTrigger(cron);
+            log.info("Scheduled catalog refresh with cron '{}' and jitter {}", cron, jitter);
+        } else {
+            PeriodicTrigger periodicTrigger = new PeriodicTrigger(fixedDelay);
+            periodicTrigger.setInitialDelay(initialDelay);
+            baseTrigger = periodicTrigger;
+            log.info("Scheduled catalog refresh every {} (initial delay {}) with jitter {}",
+                    fixedDelay, initialDelay, jitter);
+        }
+        taskRegistrar.addTriggerTask(this::refresh, withJitter(baseTrigger));
+    }
+
+    // Desplaza cada ejecución un tiempo aleatorio para que los nodos no disparen todos a la vez
+    Trigger withJitter(Trigger baseTrigger) {
+        return triggerContext -> {
+            Instant next = baseTrigger.nextExecution(triggerContext);
+            long maxJitterMillis = jitter.toMillis();
+            if (next == null || maxJitterMillis <= 0) {
+                return next;
+            }
+            return next.plusMillis(ThreadLocalRandom.current().nextLong(maxJitterMillis + 1));
+        };
+    }
+
+    private void refresh() {
+        log.info("Triggering scheduled catalog refresh");
+        bookSyncJobService.startSync(false);
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.libreria.service;
+
+import com.example.libreria.repository.BookRepository;
+import com.example.libreria.repository.BookStockView;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+// Motor por defecto: cada operación es un UPDATE condicional sobre la fila del libro
+@Service
+@ConditionalOnProperty(name = "library.inventory.engine", havingValue = "database", matchIfMissing = true)
+@RequiredArgsConstructor
+public class DatabaseInventoryEngine implements InventoryEngine {
+    
+    // Las filas se bloquean en orden de ID para que dos lotes con libros en común no se bloqueen entre sí
+    private static final String LOCK_SQL =
+            "SELECT external_id, available_quantity FROM books WHERE external_id IN (:ids) ORDER BY external_id FOR UPDATE";
+    
+    private static final String TAKE_SQL =
+            "UPDATE books SET available_quantity = available_quantity - ?, version = version + 1 WHERE external_id = ?";
+    
+    private static final String GIVE_BACK_SQL =
+            "UPDATE books SET available_quantity = LEAST(available_quantity + ?, stock_quantity), version = version + 1 " +
+            "WHERE external_id = ?";
+    
+    private final BookRepository bookRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+    
+    @Override
+    @Transactional
+    public boolean tryReserve(Long externalId) {
+        return bookRepository.decrementAvailableQuantity(externalId) > 0;
+    }
+    
+    @Override
+    @Transactional
+    public Map<Long, Integer> reserve(Map<Long, Integer> quantities, boolean partial) {
+        if (quantities.isEmpty()) {
+            return Map.of();
+        }
+        Map<Long, Integer> available = new HashMap<>();
+        namedParameterJdbcTemplate.query(LOCK_SQL, Map.of("ids", quantities.keySet()),
+                row -> { available.put(row.getLong(1), row.getInt(2)); });
+        
+        Map<Long, Integer> granted = new LinkedHashMap<>();
+        for (Map.Entry<Long, Integer> entry : quantities.entrySet()) {
+            int quantity = Math.min(entry.getValue(), available.getOrDefault(entry.getKey(), 0));
+            if (quantity < entry.getValue() && !partial) {
+                return Map.of();
+            }
+            if (quantity > 0) {
+                granted.put(entry.getKey(), quantity);
+            }
+        }
+        // Las filas siguen bloqueadas: un UPDATE por libro, enviados juntos en un batch
+        List<Object[]> updates = new ArrayList<>(granted.size());
+        granted.forEach((externalId, quantity) -> updates.add(new Object[]{quantity, externalId}));
+        if (!updates.isEmpty()) {
+            jdbcTemplate.batchUpdate(TAKE_SQL, updates);
+        }
+        return granted;
+    }
+    
+    @Override
+    @Transactional
+    public boolean tryRelease(Long externalId) {
+        return bookRepository.incrementAvailableQuantity(externalId) > 0;
+    }
+    
+    @Override
+    @Transactional
+    public void releaseAll(Map<Long, Integer> quantities) {
+        // Orden por ID, igual que en reserve(), para que los lotes concurrentes bloqueen las filas en el mismo orden
+        List<Object[]> updates = quantities.entrySet().stream()
+                .sorted(Map.Entry.comparingByKey())
+                .map(entry -> new Object[]{entry.getValue(), entry.getKey()})
+                .toList();
+        if (!updates.isEmpty()) {
+            jdbcTemplate.batchUpdate(GIVE_BACK_SQL, updates);
+        }
+    }
+    
+    @Override
+    @Transactional(readOnly = true)
+    public Optional<BookStockView> getStock(Long externalId) {
+        return bookRepository.findStockByExternalId(externalId);
+    }
+    
+    @Override
+    public Optional<BookStockView> peekStock(Long externalId) {
+        // La fila es la fuente de verdad
+        return Optional.empty();
+    }
+    
+    @Override
+    public void stockChanged(Long externalId) {
+        // Nada que hacer: la base ya es la fuente de verdad
+    }
+}
@@ -1,42 +1,117 @@
 package com.example.libreria.service;
 
+import com.example.libreria.dto.ExternalBookBatchResultDTO;
 import com.example.libreria.dto.ExternalBookDTO;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.retry.Retry;
+import io.micrometer.context.ContextExecutorService;
+import io.micrometer.context.ContextSnapshotFactory;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.observation.annotation.Observed;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestClientException;
 import org.springframework.web.client.RestTemplate;
 
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.net.http.HttpTimeoutException;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 @Service
+@Observed(name = "library.service")
 @Slf4j
 public class ExternalBookService {
     // TO DO: completar llamada a la API externa (ver bientodo el proyecto...)
     
     private final RestTemplate restTemplate;
+    private final RestTemplate bulkRestTemplate;
+    private final ObjectMapper objectMapper;
+    private final ExecutorService bulkExecutor;
+    private final CircuitBreaker circuitBreaker;
+    private final Retry retry;
+    private final Bulkhead bulkhead;
+    private final MeterRegistry meterRegistry;
     
     @Value("${external.api.books.url}")
     private String externalApiUrl;
+    
+    // Validadores HTTP de la última descarga completa del feed
+    private volatile String lastEtag;
+    private volatile String lastModifiedHeader;
 
     
-    public ExternalBookService(RestTemplate restTemplate) {
+    public ExternalBookService(RestTemplate restTemplate,
+                               @Qualifier("bulkRestTemplate") RestTemplate bulkRestTemplate,
+                               ObjectMapper objectMapper,
+                               CircuitBreaker circuitBreaker,
+                               Retry retry,
+                               Bulkhead bulkhead,
+                               MeterRegistry meterRegistry,
+                               @Value("${external.api.books.bulk.concurrency:16}") int bulkConcurrency) {
         this.restTemplate = restTemplate;
+        this.bulkRestTemplate = bulkRestTemplate;
+        this.objectMapper = objectMapper;
+        this.circuitBreaker = circuitBreaker;
+        this.retry = retry;
+        this.bulkhead = bulkhead;
+        this.meterRegistry = meterRegistry;
+        AtomicInteger threadCount = new AtomicInteger();
+        // Los pedidos en paralelo heredan la observación del llamador: sus spans quedan en la misma traza
+        this.bulkExecutor = ContextExecutorService.wrap(
+                Executors.newFixedThreadPool(Math.max(1, bulkConcurrency), runnable -> {
+                    Thread thread = new Thread(runnable, "external-books-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }),
+                ContextSnapshotFactory.builder().build());
+    }
+    
+    @PreDestroy
+    void shutdown() {
+        bulkExecutor.shutdownNow();
     }
     
     public List<ExternalBookDTO> fetchAllBooks() {
         try {
             log.info("Fetching books from external API: {}", externalApiUrl);
-            ResponseEntity<List<ExternalBookDTO>> response = restTemplate.exchange(
+            ResponseEntity<List<ExternalBookDTO>> response = callExternal("fetch_all", () -> restTemplate.exchange(
                     externalApiUrl,
                     HttpMethod.GET,
                     null,
                     new ParameterizedTypeReference<List<ExternalBookDTO>>() {}
-            );
+            ));
             
             List<ExternalBookDTO> books = response.getBody();
             log.info("Successfully fetched {} books from external API", books != null ? books.size() : 0);
@@ -47,11 +122,159 @@ public class ExternalBookService {
         }
     }
     
+    public boolean streamAllBooks(int chunkSize, Consumer<List<ExternalBookDTO>> chunkConsumer) {
+        return streamAllBooks(chunkSize, true, chunkConsumer);
+    }
+    
+    // Devuelve false si la API respondió 304 (feed sin cambios desde la última descarga completa)
+    public boolean streamAllBooks(int chunkSize, boolean conditional, Consumer<List<ExternalBookDTO>> chunkConsumer) {
+        try {
+            log.info("Streaming books from external API: {}", externalApiUrl);
+            String etag = conditional ? lastEtag : null;
+            String lastModified = conditional ? lastModifiedHeader : null;
+            // Solo la conexión se reintenta: una vez recibidos el estado y los encabezados, los bloques ya
+            // entregados al consumidor no se vuelven a leer
+            Boolean modified = callExternalStream("stream", connected -> restTemplate.execute(
+                    externalApiUrl,
+                    HttpMethod.GET,
+                    request -> {
+                        request.getHeaders().setAccept(List.of(MediaType.APPLICATION_JSON));
+                        if (etag != null) {
+                            request.getHeaders().setIfNoneMatch(etag);
+                        }
+                        if (lastModified != null) {
+                            request.getHeaders().set(HttpHeaders.IF_MODIFIED_SINCE, lastModified);
+                        }
+                    },
+                    response -> {
+                        // Los errores HTTP ya los resolvió el RestTemplate antes de llegar acá
+                        connected.run();
+                        if (response.getStatusCode() == HttpStatus.NOT_MODIFIED) {
+                            return false;
+                        }
+                        long total;
+                        try (JsonParser parser = objectMapper.getFactory().createParser(response.getBody())) {
+                            total = readInChunks(parser, Math.max(1, chunkSize), chunkConsumer);
+                        }
+                        // Los validadores solo se recuerdan si el feed se procesó completo
+                        lastEtag = response.getHeaders().getETag();
+                        lastModifiedHeader = response.getHeaders().getFirst(HttpHeaders.LAST_MODIFIED);
+                        log.info("Successfully streamed {} books from external API", total);
+                        return true;
+                    }
+            ));
+            if (!Boolean.TRUE.equals(modified)) {
+                log.info("External books feed not modified since last fetch");
+                return false;
+            }
+            return true;
+        } catch (RestClientException e) {
+            log.error("Error streaming books from external API: {}", e.getMessage(), e);
+            throw new RuntimeException("Error al obtener libros de la API externa: " + e.getMessage(), e);
+        }
+    }
+    
+    private long readInChunks(JsonParser parser, int chunkSize, Consumer<List<ExternalBookDTO>> chunkConsumer)
+            throws IOException {
+        JsonToken first = parser.nextToken();
+        if (first == null) {
+            return 0;
+        }
+        if (first != JsonToken.START_ARRAY) {
+            throw new RuntimeException("Respuesta inesperada de la API externa: se esperaba un arreglo JSON");
+        }
+        
+        // Solo se mantiene en memoria el bloque en curso
+        long total = 0;
+        List<ExternalBookDTO> chunk = new ArrayList<>(chunkSize);
+        while (parser.nextToken() == JsonToken.START_OBJECT) {
+            chunk.add(objectMapper.readValue(parser, ExternalBookDTO.class));
+            total++;
+            if (chunk.size() == chunkSize) {
+                chunkConsumer.accept(chunk);
+                chunk = new ArrayList<>(chunkSize);
+            }
+        }
+        if (!chunk.isEmpty()) {
+            chunkConsumer.accept(chunk);
+        }
+        return total;
+    }
+    
+    public ExternalBookBatchResultDTO fetchBooksByIds(Collection<Long> ids) {
+        return fetchBooksByIds(ids, book -> { });
+    }
+    
+    // Consulta en paralelo (acotado por external.api.books.bulk.concurrency); onBook se invoca en el hilo
+    // llamador a medida que cada libro llega, y los errores se informan por ID sin cortar el lote.
+    // Cada pedido usa bulkRestTemplate, cuyo cliente corta la respuesta que supera bulk.request-timeout
+    public ExternalBookBatchResultDTO fetchBooksByIds(Collection<Long> ids, Consumer<ExternalBookDTO> onBook) {
+        long start = System.nanoTime();
+        Set<Long> distinctIds = new LinkedHashSet<>(ids);
+        distinctIds.remove(null);
+        log.info("Fetching {} books by id from external API", distinctIds.size());
+        
+        BlockingQueue<BookFetchOutcome> completed = new LinkedBlockingQueue<>();
+        for (Long id : distinctIds) {
+            CompletableFuture<ExternalBookDTO> future = new CompletableFuture<>();
+            future.whenComplete((book, error) -> completed.add(new BookFetchOutcome(id, book, error)));
+            bulkExecutor.execute(() -> {
+                try {
+                    future.complete(fetchBookById(bulkRestTemplate, id));
+                } catch (RuntimeException e) {
+                    future.completeExceptionally(e);
+                }
+            });
+        }
+        
+        ExternalBookBatchResultDTO result = new ExternalBookBatchResultDTO();
+        result.setRequested(distinctIds.size());
+        try {
+            for (int i = 0; i < distinctIds.size(); i++) {
+                BookFetchOutcome outcome = completed.take();
+                if (outcome.error == null && outcome.book != null) {
+                    result.getBooks().add(outcome.book);
+                    onBook.accept(outcome.book);
+                } else {
+                    result.getFailures().put(outcome.id, describe(outcome.error));
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Consulta masiva de libros interrumpida", e);
+        }
+        
+        result.setElapsedMillis(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        log.info("Fetched {} of {} books by id in {}ms ({} failures)", result.getBooks().size(),
+                result.getRequested(), result.getElapsedMillis(), result.getFailures().size());
+        return result;
+    }
+    
+    private static String describe(Throwable error) {
+        if (error == null) {
+            return "Libro no encontrado en la API externa";
+        }
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SocketTimeoutException || cause instanceof HttpTimeoutException) {
+                return "Tiempo de espera agotado al consultar la API externa";
+            }
+        }
+        return error.getMessage();
+    }
+    
+    private record BookFetchOutcome(Long id, ExternalBookDTO book, Throwable error) {
+    }
+    
     public ExternalBookDTO fetchBookById(Long id) {
+        return fetchBookById(restTemplate, id);
+    }
+    
+    private ExternalBookDTO fetchBookById(RestTemplate template, Long id) {
         try {
             log.info("Fetching book with id {} from external API", id);
-            String url = externalApiUrl + "/" + id;
-            ExternalBookDTO book = restTemplate.getForObject(url, ExternalBookDTO.class);
+            // Con plantilla de URI, para que http.client.requests agrupe todos los IDs bajo un mismo tag uri
+            ExternalBookDTO book = callExternal("fetch_by_id",
+                    () -> template.getForObject(externalApiUrl + "/{id}", ExternalBookDTO.class, id));
             log.info("Successfully fetched book: {}", book != null ? book.getTitle() : "null");
             return book;
         } catch (RestClientException e) {
@@ -59,5 +282,110 @@ public class ExternalBookService {
             throw new RuntimeException("Error al obtener el libro de la API externa: " + e.getMessage(), e);
         }
     }
+    
+    // Reintento -> circuit breaker -> bulkhead: cada intento pasa por el circuito y ocupa un lugar del bulkhead
+    private <T> T callExternal(String operation, Supplier<T> call) {
+        Supplier<T> decorated = Retry.decorateSupplier(retry,
+                CircuitBreaker.decorateSupplier(circuitBreaker,
+                        Bulkhead.decorateSupplier(bulkhead, call)));
+        try {
+            return decorated.get();
+        } catch (RuntimeException e) {
+            throw translate(operation, e);
+        }
+    }
+    
+    // Como callExternal, pero reintento, circuito y bulkhead cubren solo la conexión hasta que la llamada
+    // invoca connected (estado y encabezados recibidos). El cuerpo se procesa fuera de ellos: un error al
+    // leerlo no se reintenta, los errores del consumidor (p. ej. de la base) no cuentan como fallas de la
+    // API, y el bulkhead no queda ocupado durante toda la importación.
+    private <T> T callExternalStream(String operation, Function<Runnable, T> call) {
+        Retry.Context<T> retryContext = retry.context();
+        while (true) {
+            ConnectionAttempt attempt = new ConnectionAttempt();
+            try {
+                attempt.acquire();
+                T result = call.apply(attempt::connected);
+                attempt.connected();
+                retryContext.onComplete();
+                return result;
+            } catch (RuntimeException e) {
+                if (attempt.connected) {
+                    if (e instanceof RestClientException) {
+                        countError(operation, "http");
+                    }
+                    throw e;
+                }
+                attempt.failed(e);
+                try {
+                    // Espera el backoff y vuelve a intentar, o relanza si no corresponde reintentar
+                    retryContext.onRuntimeError(e);
+                } catch (RuntimeException failed) {
+                    throw translate(operation, failed);
+                }
+            }
+        }
+    }
+    
+    private RuntimeException translate(String operation, RuntimeException e) {
+        if (e instanceof CallNotPermittedException) {
+            countError(operation, "circuit_open");
+            log.warn("External books API circuit is {}, failing fast", circuitBreaker.getState());
+            return new RuntimeException("La API externa de libros no está disponible temporalmente", e);
+        }
+        if (e instanceof BulkheadFullException) {
+            countError(operation, "bulkhead_full");
+            log.warn("Too many concurrent calls to the external books API, failing fast");
+            return new RuntimeException("Demasiadas llamadas concurrentes a la API externa de libros", e);
+        }
+        countError(operation, e instanceof RestClientException ? "http" : "other");
+        return e;
+    }
+    
+    // Permisos del circuito y del bulkhead de un intento de conexión, liberados al recibir los encabezados
+    private final class ConnectionAttempt {
+        
+        private long start;
+        private boolean permitted;
+        private boolean connected;
+        
+        void acquire() {
+            circuitBreaker.acquirePermission();
+            try {
+                bulkhead.acquirePermission();
+            } catch (BulkheadFullException e) {
+                circuitBreaker.releasePermission();
+                throw e;
+            }
+            permitted = true;
+            start = System.nanoTime();
+        }
+        
+        void connected() {
+            if (permitted && !connected) {
+                connected = true;
+                circuitBreaker.onSuccess(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                bulkhead.onComplete();
+            }
+        }
+        
+        void failed(Throwable error) {
+            if (permitted && !connected) {
+                permitted = false;
+                circuitBreaker.onError(System.nanoTime() - start, TimeUnit.NANOSECONDS, error);
+                bulkhead.onComplete();
+            }
+        }
+    }
+    
+    // Llamadas que fallaron después de agotar los reintentos, o que ni siquiera se intentaron
+    private void countError(String operation, String reason) {
+        Counter.builder("library.external.books.errors")
+                .description("Llamadas a la API externa de libros que terminaron en error")
+                .tag("operation", operation)
+                .tag("reason", reason)
+                .register(meterRegistry)
+                .increment();
+    }
 }
 
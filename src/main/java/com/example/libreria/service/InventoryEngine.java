@@ -0,0 +1,34 @@
+package com.example.libreria.service;
+
+import com.example.libreria.repository.BookStockView;
+
+import java.util.Map;
+import java.util.Optional;
+
+// Cantidades de inventario por externalId. Implementaciones: "database" (UPDATE condicional sobre
+// la fila del libro) y "memory" (contadores en memoria con journal y escritura diferida).
+// Se elige con library.inventory.engine.
+public interface InventoryEngine {
+    
+    // Descuenta un ejemplar disponible; false si no queda ninguno.
+    // Dentro de una transacción, el descuento se revierte si ésta hace rollback.
+    boolean tryReserve(Long externalId);
+    
+    // Descuenta varios ejemplares por libro en una sola pasada y devuelve lo concedido a cada uno.
+    // Con partial=false, si algún libro no alcanza no se descuenta nada y el resultado queda vacío.
+    Map<Long, Integer> reserve(Map<Long, Integer> quantities, boolean partial);
+    
+    // Devuelve un ejemplar; false si la cantidad disponible ya es igual al stock
+    boolean tryRelease(Long externalId);
+    
+    // Devuelve varios ejemplares por libro en una sola pasada, sin superar el stock de ninguno
+    void releaseAll(Map<Long, Integer> quantities);
+    
+    Optional<BookStockView> getStock(Long externalId);
+    
+    // Stock que el motor conoce mejor que la fila de books, sin consultar la base; vacío si la fila está al día
+    Optional<BookStockView> peekStock(Long externalId);
+    
+    // Aviso de que el stock total del libro cambió en la base por fuera del motor
+    void stockChanged(Long externalId);
+}
@@ -0,0 +1,198 @@
+package com.example.libreria.service;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+// Journal de movimientos de inventario en segmentos de solo-agregado.
+// Registro de 24 bytes: secuencia (8), externalId (8), delta (4), CRC32 de los 20 anteriores (4).
+@Slf4j
+class InventoryJournal implements AutoCloseable {
+
+    static final int RECORD_SIZE = 24;
+    private static final String PREFIX = "journal-";
+    private static final String SUFFIX = ".log";
+
+    private final Path directory;
+    private final boolean fsync;
+    private final ByteBuffer buffer = ByteBuffer.allocate(RECORD_SIZE);
+    private final CRC32 crc = new CRC32();
+
+    private FileChannel channel;
+    private Path currentSegment;
+    private long lastSequence;
+
+    // Commit en grupo: un solo force() cubre todos los registros escritos hasta ese momento
+    private final Object syncMonitor = new Object();
+    private long durableSequence;
+    private boolean syncing;
+
+    InventoryJournal(Path directory, boolean fsync) throws IOException {
+        this.directory = directory;
+        this.fsync = fsync;
+        Files.createDirectories(directory);
+    }
+
+    // Lee todos los segmentos existentes en orden; se detiene en el primer registro incompleto o dañado de cada uno
+    synchronized List<Record> readAll() throws IOException {
+        List<Record> records = new ArrayList<>();
+        for (Path segment : segments()) {
+            try (FileChannel in = FileChannel.open(segment, StandardOpenOption.READ)) {
+                ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE);
+                while (readFully(in, record)) {
+                    record.flip();
+                    long sequence = record.getLong();
+                    long externalId = record.getLong();
+                    int delta = record.getInt();
+                    int checksum = record.getInt();
+                    if (checksum != checksum(record.array())) {
+                        log.warn("Corrupt inventory journal record in {} after sequence {}, ignoring the rest of the segment",
+                                segment, lastSequence);
+                        break;
+                    }
+                    records.add(new Record(sequence, externalId, delta));
+                    lastSequence = Math.max(lastSequence, sequence);
+                    record.clear();
+                }
+            }
+        }
+        return records;
+    }
+
+    // Abre un segmento nuevo y devuelve los anteriores, que se pueden borrar una vez aplicados a la base
+    synchronized List<Path> rotate() throws IOException {
+        List<Path> previous = segments();
+        if (channel != null) {
+            channel.close();
+        }
+        currentSegment = directory.resolve(String.format("%s%020d%s", PREFIX, lastSequence + 1, SUFFIX));
+        channel = FileChannel.open(currentSegment, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+        previous.remove(currentSegment);
+        return previous;
+    }
+
+    // Devuelve la secuencia asignada; con fsync, el registro está en disco al retornar
+    long append(long externalId, int delta) throws IOException {
+        long sequence;
+        synchronized (this) {
+            sequence = lastSequence + 1;
+            buffer.clear();
+            buffer.putLong(sequence).putLong(externalId).putInt(delta);
+            buffer.putInt(checksum(buffer.array()));
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            lastSequence = sequence;
+        }
+        if (fsync) {
+            awaitDurable(sequence);
+        }
+        return sequence;
+    }
+
+    // Mientras un hilo hace force(), los demás esperan; al terminar, casi siempre su registro ya quedó cubierto
+    private void awaitDurable(long sequence) throws IOException {
+        synchronized (syncMonitor) {
+            while (durableSequence < sequence && syncing) {
+                try {
+                    syncMonitor.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrumpido esperando el journal de inventario");
+                }
+            }
+            if (durableSequence >= sequence) {
+                return;
+            }
+            syncing = true;
+        }
+        long target = 0;
+        try {
+            FileChannel current;
+            synchronized (this) {
+                target = lastSequence;
+                current = channel;
+            }
+            current.force(false);
+        } catch (IOException | RuntimeException e) {
+            target = 0;
+            throw e;
+        } finally {
+            synchronized (syncMonitor) {
+                durableSequence = Math.max(durableSequence, target);
+                syncing = false;
+                syncMonitor.notifyAll();
+            }
+        }
+    }
+
+    // Evita reutilizar secuencias ya confirmadas si el directorio del journal se vació
+    synchronized void advanceTo(long sequence) {
+        lastSequence = Math.max(lastSequence, sequence);
+    }
+
+    synchronized long lastSequence() {
+        return lastSequence;
+    }
+
+    void delete(List<Path> segments) {
+        for (Path segment : segments) {
+            try {
+                Files.deleteIfExists(segment);
+            } catch (IOException e) {
+                log.warn("Could not delete inventory journal segment {}: {}", segment, e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            // El nombre lleva la secuencia con ceros a la izquierda: el orden alfabético es el de escritura
+            return new ArrayList<>(files
+                    .filter(file -> {
+                        String name = file.getFileName().toString();
+                        return name.startsWith(PREFIX) && name.endsWith(SUFFIX);
+                    })
+                    .sorted()
+                    .toList());
+        }
+    }
+
+    private int checksum(byte[] bytes) {
+        crc.reset();
+        crc.update(bytes, 0, RECORD_SIZE - 4);
+        return (int) crc.getValue();
+    }
+
+    private static boolean readFully(FileChannel in, ByteBuffer record) throws IOException {
+        while (record.hasRemaining()) {
+            if (in.read(record) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    record Record(long sequence, long externalId, int delta) {
+    }
+}
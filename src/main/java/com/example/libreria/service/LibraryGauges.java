@@ -0,0 +1,69 @@
+package com.example.libreria.service;
+
+import com.example.libreria.model.Reservation;
+import com.example.libreria.repository.BookRepository;
+import com.example.libreria.repository.InventoryTotalsView;
+import com.example.libreria.repository.ReservationRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+// Gauges de inventario y reservas abiertas. Los valores se recalculan cada library.metrics.gauge-refresh
+// en lugar de en cada scrape, así un scrape frecuente no se traduce en consultas agregadas sobre toda la base.
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class LibraryGauges {
+
+    private final BookRepository bookRepository;
+    private final ReservationRepository reservationRepository;
+    private final MeterRegistry meterRegistry;
+
+    private final AtomicLong stockQuantity = new AtomicLong();
+    private final AtomicLong availableQuantity = new AtomicLong();
+    private final AtomicLong activeReservations = new AtomicLong();
+    private final AtomicLong overdueReservations = new AtomicLong();
+
+    @PostConstruct
+    void registerMetrics() {
+        Gauge.builder("library.inventory.copies", stockQuantity, AtomicLong::get)
+                .description("Ejemplares del catálogo: stock total o disponibles para reservar")
+                .tag("state", "stock")
+                .register(meterRegistry);
+        Gauge.builder("library.inventory.copies", availableQuantity, AtomicLong::get)
+                .description("Ejemplares del catálogo: stock total o disponibles para reservar")
+                .tag("state", "available")
+                .register(meterRegistry);
+        Gauge.builder("library.reservations.open", activeReservations, AtomicLong::get)
+                .description("Reservas sin devolver, en término o vencidas")
+                .tag("status", "active")
+                .register(meterRegistry);
+        Gauge.builder("library.reservations.open", overdueReservations, AtomicLong::get)
+                .description("Reservas sin devolver, en término o vencidas")
+                .tag("status", "overdue")
+                .register(meterRegistry);
+    }
+
+    // Se ejecuta también al arrancar, para no publicar ceros hasta el primer intervalo
+    @Scheduled(fixedDelayString = "${library.metrics.gauge-refresh:PT15S}")
+    public void refresh() {
+        try {
+            InventoryTotalsView totals = bookRepository.sumInventory();
+            stockQuantity.set(totals.getStockQuantity());
+            availableQuantity.set(totals.getAvailableQuantity());
+            activeReservations.set(reservationRepository.countByStatusAndActualReturnDateIsNull(
+                    Reservation.ReservationStatus.ACTIVE));
+            overdueReservations.set(reservationRepository.countByStatusAndActualReturnDateIsNull(
+                    Reservation.ReservationStatus.OVERDUE));
+        } catch (RuntimeException e) {
+            // Se conservan los últimos valores; el próximo intervalo vuelve a intentar
+            log.warn("Could not refresh library gauges: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,428 @@
+package com.example.libreria.service;
+
+import com.example.libreria.model.InventoryCheckpoint;
+import com.example.libreria.repository.BookRepository;
+import com.example.libreria.repository.BookStockView;
+import com.example.libreria.repository.InventoryCheckpointRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Inventario en memoria con escritura diferida: cada libro tiene su propia celda con CAS, así las
+// reservas de títulos distintos nunca compiten y las del mismo título no bloquean la fila en la base.
+// Cada movimiento se escribe en el journal antes de confirmarse; un volcado periódico aplica los deltas
+// acumulados a la tabla books junto con la secuencia del journal ya aplicada, en una sola transacción.
+// Tras una caída se re-aplican los registros posteriores a esa secuencia. Si la caída ocurre entre el
+// journal y el commit de la reserva, queda un ejemplar descontado de más: se pierde disponibilidad, nunca
+// una reserva confirmada.
+@Service
+@ConditionalOnProperty(name = "library.inventory.engine", havingValue = "memory")
+@Slf4j
+public class MemoryInventoryEngine implements InventoryEngine {
+
+    static final String CHECKPOINT_NAME = "inventory-journal";
+
+    private static final String APPLY_DELTA_SQL =
+            "UPDATE books SET available_quantity = available_quantity + ?, version = version + 1 WHERE external_id = ?";
+
+    private final BookRepository bookRepository;
+    private final InventoryCheckpointRepository checkpointRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final InventoryJournal journal;
+    private final Duration flushInterval;
+
+    private final Map<Long, Cell> cells = new ConcurrentHashMap<>();
+    // Lectura: movimientos (concurrentes entre sí). Escritura: volcado, que necesita una foto consistente
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private long checkpointedSequence;
+
+    private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "inventory-flush");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public MemoryInventoryEngine(BookRepository bookRepository,
+                                 InventoryCheckpointRepository checkpointRepository,
+                                 JdbcTemplate jdbcTemplate,
+                                 PlatformTransactionManager transactionManager,
+                                 @Value("${library.inventory.journal-dir:./data/inventory-journal}") Path journalDir,
+                                 @Value("${library.inventory.journal-fsync:true}") boolean journalFsync,
+                                 @Value("${library.inventory.flush-interval:PT1S}") Duration flushInterval) {
+        this.bookRepository = bookRepository;
+        this.checkpointRepository = checkpointRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        // El volcado nunca se suma a la transacción de quien lo dispara
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.flushInterval = flushInterval;
+        try {
+            this.journal = new InventoryJournal(journalDir, journalFsync);
+        } catch (IOException e) {
+            throw new RuntimeException("No se pudo abrir el journal de inventario: " + journalDir, e);
+        }
+    }
+
+    @PostConstruct
+    void recover() throws IOException {
+        List<InventoryJournal.Record> records = journal.readAll();
+        long checkpoint = checkpointRepository.findById(CHECKPOINT_NAME)
+                .map(InventoryCheckpoint::getSequence)
+                .orElse(0L);
+        journal.advanceTo(checkpoint);
+
+        Map<Long, Integer> deltas = new HashMap<>();
+        records.stream()
+                .filter(record -> record.sequence() > checkpoint)
+                .forEach(record -> deltas.merge(record.externalId(), record.delta(), Integer::sum));
+        long sequence = journal.lastSequence();
+        List<Path> replayed = journal.rotate();
+        apply(deltas, sequence);
+        checkpointedSequence = sequence;
+        journal.delete(replayed);
+        log.info("Inventory journal recovered: records={}, replayed books={}, checkpoint={}",
+                records.size(), deltas.size(), sequence);
+
+        long intervalMillis = flushInterval.toMillis();
+        flusher.scheduleWithFixedDelay(this::flushQuietly, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void shutdown() throws IOException {
+        flusher.shutdown();
+        flushQuietly();
+        journal.close();
+    }
+
+    @Override
+    public boolean tryReserve(Long externalId) {
+        return move(externalId, -1);
+    }
+
+    @Override
+    public Map<Long, Integer> reserve(Map<Long, Integer> quantities, boolean partial) {
+        Map<Long, Integer> granted = new LinkedHashMap<>();
+        lock.readLock().lock();
+        try {
+            Map<Long, Cell> taken = new LinkedHashMap<>();
+            for (Map.Entry<Long, Integer> entry : quantities.entrySet()) {
+                Long externalId = entry.getKey();
+                Cell cell = cell(externalId)
+                        .orElseThrow(() -> new RuntimeException("Libro no encontrado con ID externo: " + externalId));
+                int quantity = cell.take(entry.getValue(), partial);
+                if (quantity < entry.getValue() && !partial) {
+                    // Todavía no hay nada en el journal: alcanza con devolver lo tomado a las celdas
+                    taken.forEach((id, takenCell) -> takenCell.available.addAndGet(granted.get(id)));
+                    return Map.of();
+                }
+                if (quantity > 0) {
+                    taken.put(externalId, cell);
+                    granted.put(externalId, quantity);
+                }
+            }
+            List<Long> ids = new ArrayList<>(taken.keySet());
+            int journaled = 0;
+            try {
+                for (; journaled < ids.size(); journaled++) {
+                    Long externalId = ids.get(journaled);
+                    append(externalId, taken.get(externalId), -granted.get(externalId));
+                    compensateOnRollback(externalId, granted.get(externalId));
+                }
+            } catch (RuntimeException e) {
+                // append ya deshizo el libro que falló; los siguientes todavía no llegaron al journal
+                for (int i = journaled + 1; i < ids.size(); i++) {
+                    taken.get(ids.get(i)).available.addAndGet(granted.get(ids.get(i)));
+                }
+                throw e;
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return granted;
+    }
+
+    @Override
+    public boolean tryRelease(Long externalId) {
+        return move(externalId, 1);
+    }
+
+    @Override
+    public void releaseAll(Map<Long, Integer> quantities) {
+        lock.readLock().lock();
+        try {
+            for (Map.Entry<Long, Integer> entry : quantities.entrySet()) {
+                Long externalId = entry.getKey();
+                Cell cell = cell(externalId)
+                        .orElseThrow(() -> new RuntimeException("Libro no encontrado con ID externo: " + externalId));
+                int quantity = cell.give(entry.getValue());
+                if (quantity > 0) {
+                    append(externalId, cell, quantity);
+                    compensateOnRollback(externalId, -quantity);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Optional<BookStockView> getStock(Long externalId) {
+        lock.readLock().lock();
+        try {
+            return cell(externalId).map(cell -> new StockSnapshot(cell.stock, cell.available.get()));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Solo las celdas ya cargadas: las demás no tienen movimientos pendientes y la fila está al día
+    @Override
+    public Optional<BookStockView> peekStock(Long externalId) {
+        lock.readLock().lock();
+        try {
+            return Optional.ofNullable(cells.get(externalId))
+                    .map(cell -> new StockSnapshot(cell.stock, cell.available.get()));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // El stock total cambió en la base: se vuelcan los deltas y se descarta la celda para releerla.
+    // Se repite al confirmar la transacción del cambio, por si alguien cargó la celda antes del commit.
+    @Override
+    public void stockChanged(Long externalId) {
+        evict(externalId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    evict(externalId);
+                }
+            });
+        }
+    }
+
+    public void flush() {
+        lock.writeLock().lock();
+        try {
+            flushLocked();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private boolean move(Long externalId, int delta) {
+        lock.readLock().lock();
+        try {
+            Cell cell = cell(externalId)
+                    .orElseThrow(() -> new RuntimeException("Libro no encontrado con ID externo: " + externalId));
+            if (!cell.tryAdd(delta)) {
+                return false;
+            }
+            append(externalId, cell, delta);
+        } finally {
+            lock.readLock().unlock();
+        }
+        compensateOnRollback(externalId, -delta);
+        return true;
+    }
+
+    // Si la transacción que pidió el movimiento hace rollback, se devuelve lo descontado
+    private void compensateOnRollback(Long externalId, int delta) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status == STATUS_ROLLED_BACK) {
+                        compensate(externalId, delta);
+                    }
+                }
+            });
+        }
+    }
+
+    private void compensate(Long externalId, int delta) {
+        lock.readLock().lock();
+        try {
+            cell(externalId).ifPresent(cell -> {
+                cell.available.addAndGet(delta);
+                append(externalId, cell, delta);
+            });
+        } catch (RuntimeException e) {
+            log.error("Could not compensate inventory movement of {} for book {}: {}", delta, externalId, e.getMessage(), e);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // El movimiento queda en el journal antes de devolver el control; si no se puede escribir, se deshace
+    private void append(Long externalId, Cell cell, int delta) {
+        try {
+            journal.append(externalId, delta);
+        } catch (IOException e) {
+            cell.available.addAndGet(-delta);
+            throw new RuntimeException("No se pudo registrar el movimiento de inventario", e);
+        }
+        cell.pending.add(delta);
+    }
+
+    private Optional<Cell> cell(Long externalId) {
+        Cell cell = cells.get(externalId);
+        if (cell != null) {
+            return Optional.of(cell);
+        }
+        return bookRepository.findStockByExternalId(externalId)
+                .map(stock -> cells.computeIfAbsent(externalId,
+                        id -> new Cell(stock.getStockQuantity(), stock.getAvailableQuantity())));
+    }
+
+    private void evict(Long externalId) {
+        lock.writeLock().lock();
+        try {
+            flushLocked();
+            cells.remove(externalId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            log.warn("Inventory flush failed, deltas kept in memory for the next attempt: {}", e.getMessage(), e);
+        }
+    }
+
+    // Con el lock de escritura tomado no hay movimientos en curso: deltas y secuencia son consistentes
+    private void flushLocked() {
+        Map<Long, Integer> deltas = new HashMap<>();
+        cells.forEach((externalId, cell) -> {
+            int delta = (int) cell.pending.sumThenReset();
+            if (delta != 0) {
+                deltas.put(externalId, delta);
+            }
+        });
+        long sequence = journal.lastSequence();
+        if (deltas.isEmpty() && sequence == checkpointedSequence) {
+            return;
+        }
+        try {
+            List<Path> flushed = journal.rotate();
+            apply(deltas, sequence);
+            checkpointedSequence = sequence;
+            journal.delete(flushed);
+            log.debug("Inventory flushed: books={}, checkpoint={}", deltas.size(), sequence);
+        } catch (IOException | RuntimeException e) {
+            deltas.forEach((externalId, delta) -> cells.get(externalId).pending.add(delta));
+            throw new RuntimeException("No se pudo volcar el inventario en memoria a la base", e);
+        }
+    }
+
+    private void apply(Map<Long, Integer> deltas, long sequence) {
+        List<Object[]> updates = new ArrayList<>(deltas.size());
+        deltas.forEach((externalId, delta) -> updates.add(new Object[]{delta, externalId}));
+        transactionTemplate.executeWithoutResult(status -> {
+            if (!updates.isEmpty()) {
+                jdbcTemplate.batchUpdate(APPLY_DELTA_SQL, updates);
+            }
+            checkpointRepository.save(new InventoryCheckpoint(CHECKPOINT_NAME, sequence, LocalDateTime.now()));
+        });
+    }
+
+    private static class Cell {
+
+        private final int stock;
+        private final AtomicInteger available;
+        // Deltas todavía no volcados; LongAdder evita que los hilos compitan por la misma palabra
+        private final LongAdder pending = new LongAdder();
+
+        Cell(int stock, int available) {
+            this.stock = stock;
+            this.available = new AtomicInteger(available);
+        }
+
+        // Toma hasta quantity ejemplares (o exactamente quantity si no se admite parcial); devuelve lo tomado
+        int take(int quantity, boolean partial) {
+            int current;
+            int taken;
+            do {
+                current = available.get();
+                taken = Math.min(quantity, Math.max(current, 0));
+                if (taken == 0 || (taken < quantity && !partial)) {
+                    return 0;
+                }
+            } while (!available.compareAndSet(current, current - taken));
+            return taken;
+        }
+
+        // Devuelve hasta quantity ejemplares sin superar el stock; devuelve lo efectivamente sumado
+        int give(int quantity) {
+            int current;
+            int given;
+            do {
+                current = available.get();
+                given = Math.min(quantity, stock - current);
+                if (given <= 0) {
+                    return 0;
+                }
+            } while (!available.compareAndSet(current, current + given));
+            return given;
+        }
+
+        boolean tryAdd(int delta) {
+            int current;
+            int next;
+            do {
+                current = available.get();
+                next = current + delta;
+                if (next < 0 || next > stock) {
+                    return false;
+                }
+            } while (!available.compareAndSet(current, next));
+            return true;
+        }
+    }
+
+    private record StockSnapshot(Integer stockQuantity, Integer availableQuantity) implements BookStockView {
+
+        @Override
+        public Integer getStockQuantity() {
+            return stockQuantity;
+        }
+
+        @Override
+        public Integer getAvailableQuantity() {
+            return availableQuantity;
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.libreria.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDate;
+
+// Un barrido al arrancar (por si el nodo estuvo caído al cambiar el día) y otro diario apenas empieza el día
+@Component
+@ConditionalOnProperty(prefix = "library.overdue-sweeper", name = "enabled", havingValue = "true", matchIfMissing = true)
+@RequiredArgsConstructor
+@Slf4j
+public class OverdueSweepScheduler {
+    
+    static final String LEASE_NAME = "overdue-sweeper";
+    
+    private final OverdueSweeperService overdueSweeperService;
+    private final SyncLeaseService syncLeaseService;
+    
+    @Value("${library.overdue-sweeper.lease-ttl:PT30M}")
+    private Duration leaseTtl = Duration.ofMinutes(30);
+    
+    @EventListener(ApplicationReadyEvent.class)
+    public void sweepOnStartup() {
+        sweep();
+    }
+    
+    @Scheduled(cron = "${library.overdue-sweeper.cron:0 5 0 * * *}")
+    public void sweepDaily() {
+        sweep();
+    }
+    
+    // El barrido es idempotente; el lease solo evita que varios nodos hagan el mismo trabajo a la vez
+    private void sweep() {
+        if (!syncLeaseService.tryAcquire(LEASE_NAME, leaseTtl)) {
+            return;
+        }
+        try {
+            overdueSweeperService.sweep(LocalDate.now());
+        } catch (RuntimeException e) {
+            // Lo que quedó sin procesar lo retoma el próximo barrido
+            log.warn("Overdue sweep failed: {}", e.getMessage(), e);
+        } finally {
+            syncLeaseService.release(LEASE_NAME);
+        }
+    }
+}
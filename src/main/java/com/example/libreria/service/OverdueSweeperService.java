@@ -0,0 +1,130 @@
+package com.example.libreria.service;
+
+import com.example.libreria.model.Reservation;
+import com.example.libreria.repository.OverdueCandidateView;
+import com.example.libreria.repository.ReservationRepository;
+import io.micrometer.observation.annotation.Observed;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Materializa el estado de vencida y la multa acumulada de las reservas que siguen en préstamo, para que los
+// listados sean lecturas por índice. Recalcula la multa desde cero con la cantidad de días, así que repetir
+// un barrido (o retomarlo tras una caída) no cambia el resultado; cada lote se confirma por separado.
+@Service
+@Observed(name = "library.service")
+@Slf4j
+public class OverdueSweeperService {
+    
+    // Cambia solo si nadie tocó la reserva desde que se leyó; si se devolvió en el medio, queda para el próximo barrido
+    private static final String UPDATE_SQL = "UPDATE reservations SET status = 'OVERDUE', late_fee = ?, " +
+            "late_fee_accrued_on = ?, version = version + 1 " +
+            "WHERE id = ? AND version = ? AND actual_return_date IS NULL";
+    
+    // Anterior a cualquier fecha de devolución: arranca el recorrido por clave desde el principio
+    private static final LocalDate FIRST_KEY = LocalDate.of(1, 1, 1);
+    
+    private final ReservationRepository reservationRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+    
+    @Value("${library.overdue-sweeper.enabled:true}")
+    private boolean sweeperEnabled = true;
+    
+    public OverdueSweeperService(ReservationRepository reservationRepository,
+                                 JdbcTemplate jdbcTemplate,
+                                 TransactionTemplate transactionTemplate,
+                                 @Value("${library.overdue-sweeper.batch-size:500}") int batchSize) {
+        this.reservationRepository = reservationRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.batchSize = batchSize;
+    }
+    
+    // Sin barrido nada pasa a OVERDUE: /overdue queda vacío y las multas no se acumulan hasta la devolución
+    @EventListener(ApplicationReadyEvent.class)
+    public void warnIfDisabled() {
+        if (!sweeperEnabled) {
+            log.warn("Overdue sweeper is disabled (library.overdue-sweeper.enabled=false): "
+                    + "overdue listings stay empty until reservations are returned");
+        }
+    }
+    
+    public record SweepResult(int markedOverdue, int feesAccrued, int skipped) {
+    }
+    
+    public SweepResult sweep(LocalDate today) {
+        long start = System.nanoTime();
+        // Primero las que vencieron desde el último barrido, después la multa del resto de las vencidas
+        PassCounts marked = sweepStatus(Reservation.ReservationStatus.ACTIVE, today);
+        PassCounts accrued = sweepStatus(Reservation.ReservationStatus.OVERDUE, today);
+        SweepResult result = new SweepResult(marked.updated(), accrued.updated(), marked.skipped() + accrued.skipped());
+        log.info("Overdue sweep for {} finished: markedOverdue={}, feesAccrued={}, skipped={}, elapsed={}ms",
+                today, result.markedOverdue(), result.feesAccrued(), result.skipped(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        return result;
+    }
+    
+    private PassCounts sweepStatus(Reservation.ReservationStatus status, LocalDate today) {
+        int updated = 0;
+        int skipped = 0;
+        LocalDate afterDate = FIRST_KEY;
+        Long afterId = 0L;
+        while (true) {
+            LocalDate fromDate = afterDate;
+            Long fromId = afterId;
+            List<OverdueCandidateView> batch = new ArrayList<>();
+            Integer applied = transactionTemplate.execute(tx -> {
+                batch.addAll(reservationRepository.findOverdueCandidates(status, today, fromDate, fromId,
+                        Limit.of(batchSize)));
+                return applyBatch(batch, today);
+            });
+            updated += applied;
+            skipped += batch.size() - applied;
+            if (batch.size() < batchSize) {
+                return new PassCounts(updated, skipped);
+            }
+            // Las salteadas por conflicto no vuelven a aparecer: el recorrido avanza por clave, no por el filtro
+            OverdueCandidateView last = batch.get(batch.size() - 1);
+            afterDate = last.getExpectedReturnDate();
+            afterId = last.getId();
+        }
+    }
+    
+    private int applyBatch(List<OverdueCandidateView> batch, LocalDate today) {
+        if (batch.isEmpty()) {
+            return 0;
+        }
+        List<Object[]> arguments = new ArrayList<>(batch.size());
+        for (OverdueCandidateView candidate : batch) {
+            long daysLate = ChronoUnit.DAYS.between(candidate.getExpectedReturnDate(), today);
+            BigDecimal lateFee = ReservationService.calculateLateFee(candidate.getBookPrice(), daysLate);
+            arguments.add(new Object[]{lateFee, today, candidate.getId(), candidate.getVersion()});
+        }
+        int applied = 0;
+        for (int rows : jdbcTemplate.batchUpdate(UPDATE_SQL, arguments)) {
+            // Algunos drivers no informan filas por sentencia en un batch
+            if (rows > 0 || rows == Statement.SUCCESS_NO_INFO) {
+                applied++;
+            }
+        }
+        return applied;
+    }
+    
+    private record PassCounts(int updated, int skipped) {
+    }
+}
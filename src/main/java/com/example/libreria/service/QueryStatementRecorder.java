@@ -0,0 +1,212 @@
+package com.example.libreria.service;
+
+import com.example.libreria.dto.QueryDiagnosticsDTO;
+import lombok.extern.slf4j.Slf4j;
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.listener.QueryExecutionListener;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+// Registro de las sentencias que llegan a la base, agrupadas por forma (SQL con parámetros y listas IN
+// colapsadas). Cuenta ejecuciones y latencias por forma, marca sentencias lentas y, dentro de cada pedido
+// HTTP, el mismo SELECT repetido muchas veces (patrón N+1). No registra cada sentencia en el log.
+// Escucha el proxy del DataSource (datasource-micrometer), así que ve tanto lo que ejecuta Hibernate como
+// lo que va por JdbcTemplate; con jdbc.datasource-proxy.enabled=false no registra nada.
+@Slf4j
+public class QueryStatementRecorder implements QueryExecutionListener {
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    private static final Pattern IN_LIST = Pattern.compile("\\(\\s*\\?(\\s*,\\s*\\?)+\\s*\\)");
+    private static final int MAX_SHAPE_LENGTH = 2000;
+
+    private final long slowThresholdNanos;
+    private final int nPlusOneThreshold;
+    private final int maxShapes;
+    private final int maxFindings;
+
+    private final Map<String, ShapeStats> shapes = new ConcurrentHashMap<>();
+    private final LongAdder untrackedExecutions = new LongAdder();
+    private final Deque<QueryDiagnosticsDTO.SlowStatement> slowStatements = new ArrayDeque<>();
+    private final Deque<QueryDiagnosticsDTO.RepeatedStatement> nPlusOneSuspects = new ArrayDeque<>();
+
+    private final ThreadLocal<Long> executionStart = new ThreadLocal<>();
+    private final ThreadLocal<RequestStatements> currentRequest = new ThreadLocal<>();
+
+    public QueryStatementRecorder(Duration slowThreshold, int nPlusOneThreshold, int maxShapes, int maxFindings) {
+        this.slowThresholdNanos = slowThreshold.toNanos();
+        this.nPlusOneThreshold = nPlusOneThreshold;
+        this.maxShapes = maxShapes;
+        this.maxFindings = maxFindings;
+    }
+
+    // El proxy invoca ambos métodos en el hilo que ejecuta la sentencia (o el lote)
+    @Override
+    public void beforeQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+        executionStart.set(System.nanoTime());
+    }
+
+    @Override
+    public void afterQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+        Long start = executionStart.get();
+        executionStart.remove();
+        if (start == null || queryInfoList.isEmpty()) {
+            return;
+        }
+        // Un lote de sentencias distintas reparte el tiempo entre ellas; un lote de la misma sentencia
+        // con varios juegos de parámetros cuenta como una ejecución
+        long nanos = (System.nanoTime() - start) / queryInfoList.size();
+        for (QueryInfo query : queryInfoList) {
+            record(query.getQuery(), nanos);
+        }
+    }
+
+    public void record(String sql, long nanos) {
+        String shape = shapeOf(sql);
+        RequestStatements request = currentRequest.get();
+        if (request != null) {
+            request.executions.merge(shape, 1, Integer::sum);
+        }
+        ShapeStats stats = shapes.get(shape);
+        if (stats == null && shapes.size() < maxShapes) {
+            stats = shapes.computeIfAbsent(shape, key -> new ShapeStats());
+        }
+        if (stats != null) {
+            stats.record(nanos);
+        } else {
+            untrackedExecutions.increment();
+        }
+
+        // Una sentencia lenta se informa aunque su forma ya no entre en el registro
+        if (nanos >= slowThresholdNanos) {
+            if (request != null) {
+                // Se etiqueta con el endpoint al cerrar el pedido, cuando ya se conoce el patrón de la URL
+                request.slow.add(new PendingSlowStatement(shape, nanos));
+            } else {
+                reportSlow("thread " + Thread.currentThread().getName(), shape, nanos);
+            }
+        }
+    }
+
+    public void beginRequest() {
+        currentRequest.set(new RequestStatements());
+    }
+
+    public void endRequest(String request) {
+        RequestStatements statements = currentRequest.get();
+        currentRequest.remove();
+        if (statements == null) {
+            return;
+        }
+        for (PendingSlowStatement slow : statements.slow) {
+            reportSlow(request, slow.shape, slow.nanos);
+        }
+        statements.executions.forEach((shape, executions) -> {
+            if (executions >= nPlusOneThreshold && shape.regionMatches(true, 0, "select", 0, 6)) {
+                log.warn("Possible N+1 in {}: {} executions of {}", request, executions, shape);
+                addFinding(nPlusOneSuspects,
+                        new QueryDiagnosticsDTO.RepeatedStatement(request, shape, executions, Instant.now()));
+            }
+        });
+    }
+
+    public List<QueryDiagnosticsDTO.StatementStats> topStatements(int limit) {
+        List<QueryDiagnosticsDTO.StatementStats> result = new ArrayList<>();
+        shapes.forEach((shape, stats) -> {
+            long executions = stats.executions.sum();
+            long totalNanos = stats.totalNanos.sum();
+            long maxNanos = stats.maxNanos.get();
+            result.add(new QueryDiagnosticsDTO.StatementStats(shape, executions, millis(totalNanos),
+                    executions == 0 ? 0.0 : millis(totalNanos / executions), millis(maxNanos),
+                    maxNanos >= slowThresholdNanos));
+        });
+        result.sort(Comparator.comparingDouble(QueryDiagnosticsDTO.StatementStats::totalMillis).reversed());
+        return result.size() > limit ? new ArrayList<>(result.subList(0, limit)) : result;
+    }
+
+    public List<QueryDiagnosticsDTO.SlowStatement> slowStatements() {
+        synchronized (slowStatements) {
+            return new ArrayList<>(slowStatements);
+        }
+    }
+
+    public List<QueryDiagnosticsDTO.RepeatedStatement> nPlusOneSuspects() {
+        synchronized (nPlusOneSuspects) {
+            return new ArrayList<>(nPlusOneSuspects);
+        }
+    }
+
+    public long untrackedExecutions() {
+        return untrackedExecutions.sum();
+    }
+
+    public void reset() {
+        shapes.clear();
+        untrackedExecutions.reset();
+        synchronized (slowStatements) {
+            slowStatements.clear();
+        }
+        synchronized (nPlusOneSuspects) {
+            nPlusOneSuspects.clear();
+        }
+    }
+
+    static String shapeOf(String sql) {
+        String shape = WHITESPACE.matcher(sql.trim()).replaceAll(" ");
+        shape = IN_LIST.matcher(shape).replaceAll("(?)");
+        return shape.length() > MAX_SHAPE_LENGTH ? shape.substring(0, MAX_SHAPE_LENGTH) : shape;
+    }
+
+    private void reportSlow(String request, String shape, long nanos) {
+        log.warn("Slow statement in {} ({} ms): {}", request, Math.round(millis(nanos)), shape);
+        addFinding(slowStatements, new QueryDiagnosticsDTO.SlowStatement(request, shape, millis(nanos), Instant.now()));
+    }
+
+    // Solo se conservan los hallazgos más recientes
+    private <T> void addFinding(Deque<T> findings, T finding) {
+        synchronized (findings) {
+            if (findings.size() >= maxFindings) {
+                findings.removeFirst();
+            }
+            findings.addLast(finding);
+        }
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+
+    private static final class ShapeStats {
+
+        private final LongAdder executions = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        void record(long nanos) {
+            executions.increment();
+            totalNanos.add(nanos);
+            maxNanos.accumulateAndGet(nanos, Math::max);
+        }
+    }
+
+    private static final class RequestStatements {
+
+        private final Map<String, Integer> executions = new HashMap<>();
+        private final List<PendingSlowStatement> slow = new ArrayList<>();
+    }
+
+    private record PendingSlowStatement(String shape, long nanos) {
+    }
+}
@@ -0,0 +1,128 @@
+package com.example.libreria.service;
+
+import com.example.libreria.dto.ReservationResponseDTO;
+import com.example.libreria.repository.ReservationRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.observation.annotation.Observed;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+// Exportación del historial de reservas fila por fila: del cursor JDBC a la respuesta, sin armar la lista completa
+@Service
+@Observed(name = "library.service")
+@RequiredArgsConstructor
+@Slf4j
+public class ReservationExportService {
+    
+    private static final String CSV_HEADER = "id,userId,userName,bookExternalId,bookTitle,rentalDays,startDate," +
+            "expectedReturnDate,actualReturnDate,dailyRate,totalFee,lateFee,status,createdAt";
+    
+    private final ReservationRepository reservationRepository;
+    private final ObjectMapper objectMapper;
+    
+    public enum Format {
+        NDJSON("application/x-ndjson", "ndjson"),
+        CSV("text/csv", "csv");
+        
+        private final String contentType;
+        private final String extension;
+        
+        Format(String contentType, String extension) {
+            this.contentType = contentType;
+            this.extension = extension;
+        }
+        
+        public String getContentType() {
+            return contentType;
+        }
+        
+        public String getExtension() {
+            return extension;
+        }
+        
+        public static Format parse(String value) {
+            try {
+                return Format.valueOf(value.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new RuntimeException("Formato de exportación no soportado: " + value);
+            }
+        }
+    }
+    
+    // Se valida antes de empezar a escribir: una vez enviados los encabezados ya no se puede responder 400
+    public void validateRange(LocalDate from, LocalDate to) {
+        if (from != null && to != null && from.isAfter(to)) {
+            throw new RuntimeException("La fecha desde no puede ser posterior a la fecha hasta");
+        }
+    }
+    
+    // Devuelve la cantidad de filas escritas; no cierra el stream recibido
+    @Transactional(readOnly = true)
+    public long export(Format format, LocalDate from, LocalDate to, OutputStream out) throws IOException {
+        validateRange(from, to);
+        long start = System.nanoTime();
+        long rows = 0;
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 64 * 1024);
+        if (format == Format.CSV) {
+            writer.write(CSV_HEADER);
+            writer.write('\n');
+        }
+        try (Stream<ReservationResponseDTO> reservations = reservationRepository.streamResponses(from, to)) {
+            Iterator<ReservationResponseDTO> iterator = reservations.iterator();
+            while (iterator.hasNext()) {
+                ReservationResponseDTO reservation = iterator.next();
+                if (format == Format.CSV) {
+                    writeCsvRow(writer, reservation);
+                } else {
+                    writer.write(objectMapper.writeValueAsString(reservation));
+                }
+                writer.write('\n');
+                rows++;
+            }
+        }
+        writer.flush();
+        log.info("Reservation export finished: format={}, from={}, to={}, rows={}, elapsed={}ms",
+                format, from, to, rows, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        return rows;
+    }
+    
+    private static void writeCsvRow(Writer writer, ReservationResponseDTO reservation) throws IOException {
+        Object[] values = {
+                reservation.getId(), reservation.getUserId(), reservation.getUserName(),
+                reservation.getBookExternalId(), reservation.getBookTitle(), reservation.getRentalDays(),
+                reservation.getStartDate(), reservation.getExpectedReturnDate(), reservation.getActualReturnDate(),
+                reservation.getDailyRate(), reservation.getTotalFee(), reservation.getLateFee(),
+                reservation.getStatus(), reservation.getCreatedAt()
+        };
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            writer.write(csvField(values[i]));
+        }
+    }
+    
+    // RFC 4180: entre comillas si contiene separador, comillas o saltos de línea; las comillas se duplican
+    static String csvField(Object value) {
+        String text = Objects.toString(value, "");
+        if (text.indexOf(',') < 0 && text.indexOf('"') < 0 && text.indexOf('\n') < 0 && text.indexOf('\r') < 0) {
+            return text;
+        }
+        return '"' + text.replace("\"", "\"\"") + '"';
+    }
+}
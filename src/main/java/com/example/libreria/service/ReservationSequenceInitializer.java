@@ -0,0 +1,38 @@
+package com.example.libreria.service;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+// Alinea reservations_seq con las reservas que ya existen. Una base creada cuando el id era IDENTITY
+// recibe la secuencia recién creada en 1 (ddl-auto update) y Hibernate repartiría ids ya usados.
+// Con el optimizador pooled cada valor de la secuencia cubre el bloque (valor - incremento, valor],
+// así que el próximo valor tiene que ser al menos MAX(id) + incremento. Nunca se retrocede la secuencia.
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ReservationSequenceInitializer {
+
+    private static final String SEQUENCE_SQL =
+            "SELECT BASE_VALUE, INCREMENT FROM INFORMATION_SCHEMA.SEQUENCES WHERE SEQUENCE_NAME = 'RESERVATIONS_SEQ'";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @PostConstruct
+    public void alignSequence() {
+        Map<String, Object> sequence = jdbcTemplate.queryForMap(SEQUENCE_SQL);
+        long nextValue = ((Number) sequence.get("BASE_VALUE")).longValue();
+        long increment = ((Number) sequence.get("INCREMENT")).longValue();
+        long maxId = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(id), 0) FROM reservations", Long.class);
+        if (maxId == 0 || nextValue >= maxId + increment) {
+            return;
+        }
+        long restartWith = maxId + increment;
+        jdbcTemplate.execute("ALTER SEQUENCE reservations_seq RESTART WITH " + restartWith);
+        log.info("Reservation id sequence moved past existing rows: maxId={}, restartWith={}", maxId, restartWith);
+    }
+}
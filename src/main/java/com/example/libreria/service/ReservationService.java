@@ -1,13 +1,22 @@
 package com.example.libreria.service;
 
+import com.example.libreria.config.RetryOnConflict;
+import com.example.libreria.dto.BookReturnDTO;
+import com.example.libreria.dto.ReservationBatchItemDTO;
+import com.example.libreria.dto.ReservationBatchRequestDTO;
+import com.example.libreria.dto.ReservationBatchResultDTO;
+import com.example.libreria.dto.ReservationFilterDTO;
+import com.example.libreria.dto.ReservationPageDTO;
 import com.example.libreria.dto.ReservationRequestDTO;
 import com.example.libreria.dto.ReservationResponseDTO;
+import com.example.libreria.dto.ReturnBatchRequestDTO;
 import com.example.libreria.dto.ReturnBookRequestDTO;
 import com.example.libreria.model.Book;
 import com.example.libreria.model.Reservation;
 import com.example.libreria.model.User;
 import com.example.libreria.repository.BookRepository;
 import com.example.libreria.repository.ReservationRepository;
+import io.micrometer.observation.annotation.Observed;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
@@ -15,22 +24,36 @@ import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
 import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
+@Observed(name = "library.service")
 @RequiredArgsConstructor
 @Slf4j
 public class ReservationService {
     
     private static final BigDecimal LATE_FEE_PERCENTAGE = new BigDecimal("0.15"); // 15% por día
+    private static final int MAX_PAGE_SIZE = 200;
     
     private final ReservationRepository reservationRepository;
     private final BookRepository bookRepository;
-    private final BookService bookService;
     private final UserService userService;
+    private final BookCatalogCache bookCatalogCache;
+    private final InventoryEngine inventoryEngine;
     
     @Transactional
     public ReservationResponseDTO createReservation(ReservationRequestDTO requestDTO) {
@@ -42,37 +65,105 @@ public class ReservationService {
             throw new RuntimeException("Usuario no encontrado con ID: " + requestDTO.getUserId());
         }
         
-        // Validar que el libro existe y está disponible
-        Book book = bookRepository.findByExternalId(requestDTO.getBookExternalId())
+        // Validar que el libro existe (datos de catálogo desde la cache, sin leer la fila)
+        BookCatalogCache.CatalogEntry catalog = bookCatalogCache.get(requestDTO.getBookExternalId())
                 .orElseThrow(() -> new RuntimeException(
                         "Libro no encontrado con ID externo: " + requestDTO.getBookExternalId()
                 ));
-        if (book.getAvailableQuantity() == null || book.getAvailableQuantity() <= 0) {
-            throw new RuntimeException("Libro no disponible para reserva");
-        }
-        // Crear la reserva
-        BigDecimal dailyRate = book.getPrice();
-        BigDecimal totalFee = calculateTotalFee(dailyRate, requestDTO.getRentalDays());
-
-        Reservation reservation = new Reservation();
-        reservation.setUser(user);
-        reservation.setBook(book);
-        reservation.setRentalDays(requestDTO.getRentalDays());
-        reservation.setStartDate(requestDTO.getStartDate());
-        reservation.setExpectedReturnDate(requestDTO.getStartDate().plusDays(requestDTO.getRentalDays()));
-        reservation.setDailyRate(dailyRate);
-        reservation.setTotalFee(totalFee);
-        reservation.setLateFee(BigDecimal.ZERO);
-        reservation.setStatus(Reservation.ReservationStatus.ACTIVE);
+        // Crear la reserva; referencia al libro sin SELECT: solo hace falta la clave foránea
+        Reservation reservation = newReservation(user, bookRepository.getReferenceById(catalog.externalId()),
+                catalog.price(), requestDTO.getRentalDays(), requestDTO.getStartDate());
 
         Reservation saved = reservationRepository.save(reservation);
-        // Reducir la cantidad disponible
-        book.setAvailableQuantity(book.getAvailableQuantity() - 1);
-        bookRepository.save(book);
+        // Reducir la cantidad disponible (UPDATE condicional o celda en memoria); va al final para que el
+        // bloqueo de la fila del libro dure lo menos posible. Si no hay ejemplares, el rollback descarta la reserva.
+        if (!inventoryEngine.tryReserve(catalog.externalId())) {
+            throw new RuntimeException("Libro no disponible para reserva");
+        }
 
-        return convertToDTO(saved);
+        return convertToDTO(saved, catalog.title());
     }
     
+    // Reservas de un grupo en una sola transacción: un SELECT para los usuarios, uno para los libros,
+    // el stock de cada libro se descuenta una vez por lote y los INSERT salen en batches de JDBC
+    @Transactional
+    public ReservationBatchResultDTO createReservations(ReservationBatchRequestDTO batchRequest) {
+        List<ReservationRequestDTO> requests = batchRequest.getReservations();
+        boolean allOrNothing = batchRequest.getMode() == ReservationBatchRequestDTO.Mode.ALL_OR_NOTHING;
+        
+        Map<Long, User> users = userService.getUserEntities(
+                requests.stream().map(ReservationRequestDTO::getUserId).distinct().toList());
+        Map<Long, Book> books = bookRepository.findByExternalIdIn(
+                requests.stream().map(ReservationRequestDTO::getBookExternalId).distinct().toList())
+                .stream()
+                .collect(Collectors.toMap(Book::getExternalId, Function.identity()));
+        
+        String[] errors = new String[requests.size()];
+        Map<Long, Integer> quantities = new LinkedHashMap<>();
+        for (int i = 0; i < requests.size(); i++) {
+            ReservationRequestDTO request = requests.get(i);
+            if (!users.containsKey(request.getUserId())) {
+                errors[i] = "Usuario no encontrado con ID: " + request.getUserId();
+            } else if (!books.containsKey(request.getBookExternalId())) {
+                errors[i] = "Libro no encontrado con ID externo: " + request.getBookExternalId();
+            } else {
+                quantities.merge(request.getBookExternalId(), 1, Integer::sum);
+            }
+        }
+        
+        // Con algún pedido inválido en modo todo-o-nada no se toca el stock
+        boolean rejected = allOrNothing && Arrays.stream(errors).anyMatch(Objects::nonNull);
+        Map<Long, Integer> remaining = new HashMap<>();
+        if (!rejected && !quantities.isEmpty()) {
+            remaining.putAll(inventoryEngine.reserve(quantities, !allOrNothing));
+        }
+        
+        // Los ejemplares concedidos se asignan en el orden del lote
+        Reservation[] reservations = new Reservation[requests.size()];
+        for (int i = 0; i < requests.size(); i++) {
+            if (errors[i] != null || rejected) {
+                continue;
+            }
+            ReservationRequestDTO request = requests.get(i);
+            if (remaining.getOrDefault(request.getBookExternalId(), 0) == 0) {
+                // En modo todo-o-nada el motor no concede nada si algún libro no alcanza
+                errors[i] = allOrNothing
+                        ? "Stock insuficiente para completar el lote"
+                        : "Libro no disponible para reserva";
+                continue;
+            }
+            remaining.merge(request.getBookExternalId(), -1, Integer::sum);
+            Book book = books.get(request.getBookExternalId());
+            reservations[i] = newReservation(users.get(request.getUserId()), book, book.getPrice(),
+                    request.getRentalDays(), request.getStartDate());
+        }
+        rejected = rejected || (allOrNothing && Arrays.stream(errors).anyMatch(Objects::nonNull));
+        if (!rejected) {
+            reservationRepository.saveAll(Arrays.stream(reservations).filter(Objects::nonNull).toList());
+        }
+        
+        ReservationBatchResultDTO result = new ReservationBatchResultDTO();
+        result.setMode(batchRequest.getMode());
+        result.setRequested(requests.size());
+        for (int i = 0; i < requests.size(); i++) {
+            ReservationBatchItemDTO item = new ReservationBatchItemDTO();
+            item.setIndex(i);
+            if (!rejected && reservations[i] != null) {
+                item.setSuccess(true);
+                item.setReservation(convertToDTO(reservations[i], reservations[i].getBook().getTitle()));
+            } else {
+                item.setError(errors[i] != null ? errors[i] : "Reserva cancelada: otra reserva del lote no se pudo crear");
+            }
+            result.getItems().add(item);
+        }
+        result.setSucceeded((int) result.getItems().stream().filter(ReservationBatchItemDTO::isSuccess).count());
+        result.setFailed(result.getRequested() - result.getSucceeded());
+        log.info("Reservation batch processed: mode={}, requested={}, succeeded={}, failed={}",
+                result.getMode(), result.getRequested(), result.getSucceeded(), result.getFailed());
+        return result;
+    }
+    
+    @RetryOnConflict
     @Transactional
     public ReservationResponseDTO returnBook(Long reservationId, ReturnBookRequestDTO returnRequest) {
 
@@ -80,70 +171,155 @@ public class ReservationService {
         Reservation reservation = reservationRepository.findById(reservationId)
                 .orElseThrow(() -> new RuntimeException("Reserva no encontrada con ID: " + reservationId));
         
-        if (reservation.getStatus() != Reservation.ReservationStatus.ACTIVE) {
+        if (isReturned(reservation)) {
             throw new RuntimeException("La reserva ya fue devuelta");
         }
         
-        LocalDate returnDate = returnRequest.getReturnDate();
-        reservation.setActualReturnDate(returnDate);
+        applyReturn(reservation, returnRequest.getReturnDate());
         
-        // Calcular tarifa por demora si hay retraso
-        LocalDate expectedReturnDate = reservation.getExpectedReturnDate();
-        if (returnDate.isAfter(expectedReturnDate)) {
-            long daysLate = ChronoUnit.DAYS.between(expectedReturnDate, returnDate);
-            BigDecimal lateFee = calculateLateFee(reservation.getBook().getPrice(), daysLate);
-            reservation.setLateFee(lateFee);
-            reservation.setStatus(Reservation.ReservationStatus.OVERDUE);
-        } else {
-            reservation.setLateFee(BigDecimal.ZERO);
-            reservation.setStatus(Reservation.ReservationStatus.RETURNED);
+        // Aumentar la cantidad disponible; si el stock se redujo mientras tanto, el ejemplar no vuelve a la venta
+        Long bookExternalId = reservation.getBook().getExternalId();
+        if (!inventoryEngine.tryRelease(bookExternalId)) {
+            log.warn("Book {} already at full stock, returned copy of reservation {} not added back",
+                    bookExternalId, reservationId);
         }
-        
-        // Aumentar la cantidad disponible
-        Book book = reservation.getBook();
-        book.setAvailableQuantity(book.getAvailableQuantity() + 1);
-        bookRepository.save(book);
 
         Reservation saved = reservationRepository.save(reservation);
         return convertToDTO(saved);
     }
     
+    // Devoluciones en lote (fin de cuatrimestre): un SELECT con join fetch para reservas, libros y usuarios,
+    // una sola pasada para las multas, y UPDATE agrupados en batches para reservas y stock.
+    // Cada devolución es independiente: las inválidas se informan y el resto se procesa.
+    @RetryOnConflict
+    @Transactional
+    public ReservationBatchResultDTO returnBooks(ReturnBatchRequestDTO batchRequest) {
+        List<BookReturnDTO> returns = batchRequest.getReturns();
+        Map<Long, Reservation> reservations = reservationRepository.findWithBookAndUserByIdIn(
+                        returns.stream().map(BookReturnDTO::getReservationId).distinct().toList())
+                .stream()
+                .collect(Collectors.toMap(Reservation::getId, Function.identity()));
+        
+        ReservationBatchResultDTO result = new ReservationBatchResultDTO();
+        result.setMode(ReservationBatchRequestDTO.Mode.BEST_EFFORT);
+        result.setRequested(returns.size());
+        Map<Long, Integer> copies = new HashMap<>();
+        List<Reservation> returned = new ArrayList<>();
+        for (int i = 0; i < returns.size(); i++) {
+            BookReturnDTO request = returns.get(i);
+            Reservation reservation = reservations.get(request.getReservationId());
+            ReservationBatchItemDTO item = new ReservationBatchItemDTO();
+            item.setIndex(i);
+            if (reservation == null) {
+                item.setError("Reserva no encontrada con ID: " + request.getReservationId());
+            } else if (isReturned(reservation)) {
+                // También cubre un ID repetido dentro del mismo lote
+                item.setError("La reserva ya fue devuelta");
+            } else {
+                applyReturn(reservation, request.getReturnDate());
+                copies.merge(reservation.getBook().getExternalId(), 1, Integer::sum);
+                returned.add(reservation);
+                item.setSuccess(true);
+            }
+            result.getItems().add(item);
+        }
+        
+        // Primero los UPDATE de reservas (agrupados por Hibernate); un conflicto de versión corta acá,
+        // antes de tocar el stock, y @RetryOnConflict reintenta el lote completo
+        reservationRepository.flush();
+        inventoryEngine.releaseAll(copies);
+        
+        for (ReservationBatchItemDTO item : result.getItems()) {
+            if (item.isSuccess()) {
+                item.setReservation(convertToDTO(reservations.get(returns.get(item.getIndex()).getReservationId())));
+            }
+        }
+        result.setSucceeded(returned.size());
+        result.setFailed(result.getRequested() - returned.size());
+        log.info("Return batch processed: requested={}, returned={}, failed={}, books={}",
+                result.getRequested(), result.getSucceeded(), result.getFailed(), copies.size());
+        return result;
+    }
+    
+    // Las consultas de lectura proyectan directo al DTO: un solo SELECT por llamada, sin N+1 sobre usuario y libro
     @Transactional(readOnly = true)
     public ReservationResponseDTO getReservationById(Long id) {
-        Reservation reservation = reservationRepository.findById(id)
+        return reservationRepository.findResponseById(id)
                 .orElseThrow(() -> new RuntimeException("Reserva no encontrada con ID: " + id));
-        return convertToDTO(reservation);
     }
     
+    // Listado paginado por cursor: pedir la página siguiente cuesta lo mismo que la primera
     @Transactional(readOnly = true)
-    public List<ReservationResponseDTO> getAllReservations() {
-        return reservationRepository.findAll().stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+    public ReservationPageDTO getReservations(ReservationFilterDTO filter, String cursor, int size) {
+        checkPageSize(size);
+        if (filter.getFrom() != null && filter.getTo() != null && filter.getFrom().isAfter(filter.getTo())) {
+            throw new RuntimeException("La fecha desde no puede ser posterior a la fecha hasta");
+        }
+        CursorKey<LocalDateTime> after = decodeCursor(cursor, LocalDateTime::parse);
+        // Un elemento de más indica si hay página siguiente sin un COUNT aparte
+        return toPage(reservationRepository.findPage(filter, after.sortKey(), after.id(), size + 1), size,
+                ReservationResponseDTO::getCreatedAt);
     }
     
     @Transactional(readOnly = true)
     public List<ReservationResponseDTO> getReservationsByUserId(Long userId) {
-        return reservationRepository.findByUserId(userId).stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+        return reservationRepository.findResponsesByUserId(userId);
     }
     
+    // Reservas sin devolver, vencidas o no (como antes del barrido, que cambia su estado a OVERDUE)
     @Transactional(readOnly = true)
     public List<ReservationResponseDTO> getActiveReservations() {
-        return reservationRepository.findByStatus(Reservation.ReservationStatus.ACTIVE).stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+        return reservationRepository.findOpenResponses();
     }
     
     @Transactional(readOnly = true)
     public List<ReservationResponseDTO> getOverdueReservations() {
-        return reservationRepository.findOverdueReservations().stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+        return reservationRepository.findOverdueResponses();
+    }
+    
+    // Vencidas de a páginas, empezando por las de devolución esperada más antigua
+    @Transactional(readOnly = true)
+    public ReservationPageDTO getOverdueReservations(String cursor, int size) {
+        checkPageSize(size);
+        CursorKey<LocalDate> after = decodeCursor(cursor, LocalDate::parse);
+        return toPage(reservationRepository.findOverduePage(after.sortKey(), after.id(), size + 1),
+                size, ReservationResponseDTO::getExpectedReturnDate);
     }
     
-    private BigDecimal calculateTotalFee(BigDecimal dailyRate, Integer rentalDays) {
+    // Fecha real, multa y estado de una devolución; la multa se calcula sobre el precio del libro
+    private void applyReturn(Reservation reservation, LocalDate returnDate) {
+        reservation.setActualReturnDate(returnDate);
+        
+        // Calcular tarifa por demora si hay retraso
+        LocalDate expectedReturnDate = reservation.getExpectedReturnDate();
+        if (returnDate.isAfter(expectedReturnDate)) {
+            long daysLate = ChronoUnit.DAYS.between(expectedReturnDate, returnDate);
+            BigDecimal lateFee = calculateLateFee(reservation.getBook().getPrice(), daysLate);
+            reservation.setLateFee(lateFee);
+            reservation.setLateFeeAccruedOn(returnDate);
+            reservation.setStatus(Reservation.ReservationStatus.OVERDUE);
+        } else {
+            reservation.setLateFee(BigDecimal.ZERO);
+            reservation.setStatus(Reservation.ReservationStatus.RETURNED);
+        }
+    }
+    
+    private Reservation newReservation(User user, Book book, BigDecimal dailyRate, Integer rentalDays,
+                                       LocalDate startDate) {
+        Reservation reservation = new Reservation();
+        reservation.setUser(user);
+        reservation.setBook(book);
+        reservation.setRentalDays(rentalDays);
+        reservation.setStartDate(startDate);
+        reservation.setExpectedReturnDate(startDate.plusDays(rentalDays));
+        reservation.setDailyRate(dailyRate);
+        reservation.setTotalFee(calculateTotalFee(dailyRate, rentalDays));
+        reservation.setLateFee(BigDecimal.ZERO);
+        reservation.setStatus(Reservation.ReservationStatus.ACTIVE);
+        return reservation;
+    }
+    
+    static BigDecimal calculateTotalFee(BigDecimal dailyRate, Integer rentalDays) {
         // TO DO: Implementar el cálculo del total de la reserva
         if (dailyRate == null || rentalDays == null) {
             return BigDecimal.ZERO;
@@ -153,7 +329,14 @@ public class ReservationService {
                 .setScale(2, RoundingMode.HALF_UP);
     }
     
-    private BigDecimal calculateLateFee(BigDecimal bookPrice, long daysLate) {
+    // Una reserva marcada OVERDUE por el barrido sigue en préstamo hasta que tiene fecha de devolución
+    private static boolean isReturned(Reservation reservation) {
+        return reservation.getStatus() == Reservation.ReservationStatus.RETURNED
+                || reservation.getActualReturnDate() != null;
+    }
+    
+    // También la usa el barrido de vencidas, para que la multa acumulada y la final se calculen igual
+    static BigDecimal calculateLateFee(BigDecimal bookPrice, long daysLate) {
         // 15% del precio del libro por cada día de demora
         // TO DO: Implementar el cálculo de la multa por demora
         if (bookPrice == null || daysLate <= 0) {
@@ -165,13 +348,61 @@ public class ReservationService {
                 .setScale(2, RoundingMode.HALF_UP);
     }
     
-    private ReservationResponseDTO convertToDTO(Reservation reservation) {
+    private static void checkPageSize(int size) {
+        if (size < 1 || size > MAX_PAGE_SIZE) {
+            throw new RuntimeException("El tamaño de página debe estar entre 1 y " + MAX_PAGE_SIZE);
+        }
+    }
+    
+    // rows trae hasta size + 1 elementos: si sobra uno, hay página siguiente y el cursor apunta al último entregado
+    private static ReservationPageDTO toPage(List<ReservationResponseDTO> rows, int size,
+                                             Function<ReservationResponseDTO, Object> sortKey) {
+        List<ReservationResponseDTO> items = new ArrayList<>(rows);
+        String nextCursor = null;
+        if (items.size() > size) {
+            items.subList(size, items.size()).clear();
+            ReservationResponseDTO last = items.get(size - 1);
+            nextCursor = encodeCursor(sortKey.apply(last), last.getId());
+        }
+        return new ReservationPageDTO(items, items.size(), nextCursor);
+    }
+    
+    // El cursor es opaco para el cliente: "claveDeOrden|id" del último elemento entregado, en Base64 URL
+    private static String encodeCursor(Object sortKey, Long id) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((sortKey + "|" + id).getBytes(StandardCharsets.UTF_8));
+    }
+    
+    private static <T> CursorKey<T> decodeCursor(String cursor, Function<String, T> sortKeyParser) {
+        if (cursor == null || cursor.isBlank()) {
+            return new CursorKey<>(null, null);
+        }
+        try {
+            String[] key = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split("\\|");
+            if (key.length != 2) {
+                throw new IllegalArgumentException(cursor);
+            }
+            return new CursorKey<>(sortKeyParser.apply(key[0]), Long.valueOf(key[1]));
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new RuntimeException("Cursor de paginación inválido");
+        }
+    }
+    
+    private record CursorKey<T>(T sortKey, Long id) {
+    }
+    
+    static ReservationResponseDTO convertToDTO(Reservation reservation) {
+        return convertToDTO(reservation, reservation.getBook().getTitle());
+    }
+    
+    // El título se recibe aparte para no inicializar el proxy del libro cuando ya se conoce
+    private static ReservationResponseDTO convertToDTO(Reservation reservation, String bookTitle) {
         ReservationResponseDTO dto = new ReservationResponseDTO();
         dto.setId(reservation.getId());
         dto.setUserId(reservation.getUser().getId());
         dto.setUserName(reservation.getUser().getName());
         dto.setBookExternalId(reservation.getBook().getExternalId());
-        dto.setBookTitle(reservation.getBook().getTitle());
+        dto.setBookTitle(bookTitle);
         dto.setRentalDays(reservation.getRentalDays());
         dto.setStartDate(reservation.getStartDate());
         dto.setExpectedReturnDate(reservation.getExpectedReturnDate());
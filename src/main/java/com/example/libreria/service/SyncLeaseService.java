@@ -0,0 +1,61 @@
+package com.example.libreria.service;
+
+import com.example.libreria.repository.SyncLeaseRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.UUID;
+
+// Lease en base de datos para que dos nodos (o dos disparos) nunca sincronicen a la vez
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class SyncLeaseService {
+
+    private final SyncLeaseRepository syncLeaseRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    private final String owner = ManagementFactory.getRuntimeMXBean().getName()
+            + ":" + UUID.randomUUID().toString().substring(0, 8);
+
+    public boolean tryAcquire(String name, Duration ttl) {
+        LocalDateTime now = now();
+        if (!syncLeaseRepository.existsById(name)) {
+            try {
+                transactionTemplate.executeWithoutResult(status -> syncLeaseRepository.insertLease(name, now));
+            } catch (DataIntegrityViolationException e) {
+                // Otra instancia creó la fila al mismo tiempo; se compite por ella más abajo
+                log.debug("Lease row {} created concurrently", name);
+            }
+        }
+        Integer updated = transactionTemplate.execute(status ->
+                syncLeaseRepository.acquire(name, owner, now, now.plus(ttl)));
+        boolean acquired = updated != null && updated > 0;
+        log.info("Lease {} {} by {}", name, acquired ? "acquired" : "held elsewhere, not acquired", owner);
+        return acquired;
+    }
+
+    public boolean renew(String name, Duration ttl) {
+        Integer updated = transactionTemplate.execute(status ->
+                syncLeaseRepository.extend(name, owner, now().plus(ttl)));
+        return updated != null && updated > 0;
+    }
+
+    public void release(String name) {
+        transactionTemplate.executeWithoutResult(status ->
+                syncLeaseRepository.extend(name, owner, now()));
+        log.info("Lease {} released by {}", name, owner);
+    }
+
+    // La base redondea los nanosegundos; se trunca para que las comparaciones sean exactas
+    private static LocalDateTime now() {
+        return LocalDateTime.now().truncatedTo(ChronoUnit.MILLIS);
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.libreria;
+
+import com.example.libreria.service.LibraryGauges;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Scrape real de /actuator/prometheus después de atender un pedido de la API
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "spring.datasource.url=jdbc:h2:mem:prometheus_endpoint",
+        "spring.jpa.show-sql=false",
+        "external.api.books.snapshot.load-on-startup=false"
+})
+// Los tests de Spring Boot desactivan la exportación de métricas salvo que se pida explícitamente
+@AutoConfigureObservability
+class PrometheusEndpointTest {
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Autowired
+    private LibraryGauges libraryGauges;
+
+    @Test
+    void testScrape_ExposesEndpointServiceRepositoryAndGaugeMetrics() {
+        ResponseEntity<String> user = restTemplate.getForEntity("/api/users/1", String.class);
+        assertThat(user.getStatusCode()).isEqualTo(HttpStatus.OK);
+        libraryGauges.refresh();
+
+        ResponseEntity<String> scrape = restTemplate.getForEntity("/actuator/prometheus", String.class);
+
+        assertThat(scrape.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(scrape.getBody())
+                .containsPattern("http_server_requests_seconds_bucket\\{[^}]*uri=\"/api/users/\\{id}\"")
+                .containsPattern("library_service_seconds_count\\{[^}]*class=\"com\\.example\\.libreria\\.service\\.UserService\""
+                        + "[^}]*method=\"getUserById\"")
+                .containsPattern("spring_data_repository_invocations_seconds_count\\{[^}]*repository=\"UserRepository\"")
+                .containsPattern("library_inventory_copies\\{[^}]*state=\"available\"")
+                .containsPattern("library_reservations_open\\{[^}]*status=\"overdue\"")
+                .contains("application=\"libreria\"");
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.libreria;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// /actuator/queries con el diagnóstico activo: las sentencias de un pedido quedan agrupadas y atribuidas a su endpoint
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "spring.datasource.url=jdbc:h2:mem:query_diagnostics",
+        "spring.jpa.show-sql=false",
+        "external.api.books.snapshot.load-on-startup=false",
+        "library.diagnostics.enabled=true",
+        // Umbrales mínimos para que un único pedido produzca ambos hallazgos
+        "library.diagnostics.slow-query-threshold=PT0S",
+        "library.diagnostics.n-plus-one-threshold=1",
+        "management.endpoints.web.exposure.include=queries",
+        // Sin sentencias de fondo entre el reinicio y la lectura del reporte
+        "library.metrics.gauge-refresh=PT1H"
+})
+class QueryDiagnosticsEndpointTest {
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void testReport_GroupsStatementsAndAttributesFindingsToEndpoint() throws Exception {
+        restTemplate.delete("/actuator/queries");
+        ResponseEntity<String> user = restTemplate.getForEntity("/api/users/1", String.class);
+        assertThat(user.getStatusCode()).isEqualTo(HttpStatus.OK);
+
+        ResponseEntity<String> response = restTemplate.getForEntity("/actuator/queries", String.class);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        JsonNode report = objectMapper.readTree(response.getBody());
+        assertThat(report.get("hibernate").get("statementsPrepared").asLong()).isPositive();
+        JsonNode userSelect = null;
+        for (JsonNode statement : report.get("statements")) {
+            if (statement.get("sql").asText().contains("from users")) {
+                userSelect = statement;
+            }
+        }
+        assertThat(userSelect).isNotNull();
+        assertThat(userSelect.get("executions").asLong()).isEqualTo(1);
+        assertThat(report.get("slowStatements").findValuesAsText("request")).contains("GET /api/users/{id}");
+        assertThat(report.get("suspectedNPlusOne").findValuesAsText("request")).contains("GET /api/users/{id}");
+
+        // Lo que va por JdbcTemplate también pasa por el proxy del DataSource
+        restTemplate.delete("/actuator/queries");
+        jdbcTemplate.queryForObject("SELECT COUNT(*) FROM reservations WHERE status = ?", Long.class, "OVERDUE");
+        JsonNode jdbc = objectMapper.readTree(restTemplate.getForObject("/actuator/queries", String.class));
+        assertThat(jdbc.get("statements").findValuesAsText("sql"))
+                .contains("SELECT COUNT(*) FROM reservations WHERE status = ?");
+
+        restTemplate.delete("/actuator/queries");
+        JsonNode cleared = objectMapper.readTree(restTemplate.getForObject("/actuator/queries", String.class));
+        assertThat(cleared.get("statements")).isEmpty();
+        assertThat(cleared.get("slowStatements")).isEmpty();
+    }
+}
@@ -0,0 +1,62 @@
+package com.example.libreria;
+
+import com.example.libreria.model.Book;
+import com.example.libreria.model.Reservation;
+import com.example.libreria.model.User;
+import com.example.libreria.repository.BookRepository;
+import com.example.libreria.repository.ReservationRepository;
+import com.example.libreria.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Arranque sobre una base que ya tiene reservas con ids de la época IDENTITY: la secuencia recién creada
+// empieza en 1 y las reservas nuevas no pueden reutilizar esos ids
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:reservation_sequence",
+        "spring.jpa.show-sql=false",
+        "spring.sql.init.data-locations=classpath:data.sql,classpath:legacy-reservations.sql",
+        "external.api.books.snapshot.load-on-startup=false"
+})
+class ReservationSequenceTest {
+
+    private static final long LEGACY_ROWS = 60;
+
+    @Autowired
+    private ReservationRepository reservationRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Test
+    void testNewReservations_GetIdsAfterExistingRows() {
+        User user = userRepository.findById(1L).orElseThrow();
+        Book book = bookRepository.findById(258027L).orElseThrow();
+        List<Reservation> reservations = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            Reservation reservation = new Reservation();
+            reservation.setUser(user);
+            reservation.setBook(book);
+            reservation.setRentalDays(7);
+            reservation.setStartDate(LocalDate.now());
+            reservation.setDailyRate(new BigDecimal("1.50"));
+            reservation.setTotalFee(new BigDecimal("10.50"));
+            reservations.add(reservation);
+        }
+
+        List<Reservation> saved = reservationRepository.saveAll(reservations);
+
+        assertThat(saved).allSatisfy(reservation -> assertThat(reservation.getId()).isGreaterThan(LEGACY_ROWS));
+        assertThat(reservationRepository.count()).isEqualTo(LEGACY_ROWS + 3);
+    }
+}
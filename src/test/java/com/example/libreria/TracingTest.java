@@ -0,0 +1,175 @@
+package com.example.libreria;
+
+import com.example.libreria.dto.ExternalBookDTO;
+import com.example.libreria.service.ExternalBookService;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import io.opentelemetry.sdk.testing.exporter.InMemorySpanExporter;
+import io.opentelemetry.sdk.trace.SdkTracerProvider;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.system.CapturedOutput;
+import org.springframework.boot.test.system.OutputCaptureExtension;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.context.annotation.Bean;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Spans de un pedido desde el controlador hasta JDBC y el RestTemplate, todos en la misma traza
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "spring.datasource.url=jdbc:h2:mem:tracing",
+        "spring.jpa.show-sql=false",
+        "external.api.books.snapshot.load-on-startup=false",
+        "management.tracing.sampling.probability=1.0",
+        // Sin spans de fondo mezclados con los del pedido
+        "library.metrics.gauge-refresh=PT1H"
+})
+// Los tests de Spring Boot desactivan el tracing salvo que se pida explícitamente
+@AutoConfigureObservability
+@ExtendWith(OutputCaptureExtension.class)
+class TracingTest {
+
+    private static final String BOOK_JSON = "{\"id\":258027,\"has_fulltext\":true,\"edition_count\":120,"
+            + "\"title\":\"The Lord of the Rings\",\"author_name\":[\"J. R. R. Tolkien\"],"
+            + "\"first_publish_year\":1954,\"price\":15.99}";
+
+    private static final HttpServer STUB;
+    private static final AtomicReference<String> traceparent = new AtomicReference<>();
+
+    static {
+        try {
+            STUB = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        STUB.createContext("/books/258027", exchange -> {
+            traceparent.set(exchange.getRequestHeaders().getFirst("traceparent"));
+            byte[] body = BOOK_JSON.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        STUB.start();
+    }
+
+    @DynamicPropertySource
+    static void externalApi(DynamicPropertyRegistry registry) {
+        registry.add("external.api.books.url",
+                () -> "http://127.0.0.1:" + STUB.getAddress().getPort() + "/books");
+    }
+
+    @AfterAll
+    static void stopStub() {
+        STUB.stop(0);
+    }
+
+    @TestConfiguration
+    static class InMemoryExporterConfig {
+
+        @Bean
+        InMemorySpanExporter inMemorySpanExporter() {
+            return InMemorySpanExporter.create();
+        }
+    }
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Autowired
+    private InMemorySpanExporter exporter;
+
+    @Autowired
+    private SdkTracerProvider tracerProvider;
+
+    @Autowired
+    private ObservationRegistry observationRegistry;
+
+    @Autowired
+    private ExternalBookService externalBookService;
+
+    @BeforeEach
+    void clearSpans() {
+        tracerProvider.forceFlush().join(5, TimeUnit.SECONDS);
+        exporter.reset();
+    }
+
+    @Test
+    void testRequest_SpansFromControllerToJdbcShareTrace() {
+        ResponseEntity<String> user = restTemplate.getForEntity("/api/users/1", String.class);
+        assertThat(user.getStatusCode()).isEqualTo(HttpStatus.OK);
+
+        // El span del servidor termina después de enviar la respuesta
+        SpanData server = awaitSpan("http get /api/users/{id}");
+        List<SpanData> trace = exporter.getFinishedSpanItems().stream()
+                .filter(span -> span.getTraceId().equals(server.getTraceId()))
+                .toList();
+
+        assertThat(trace).extracting(SpanData::getName)
+                .contains("user-controller#get-user-by-id", "user-service#get-user-by-id", "query");
+        SpanData query = trace.stream().filter(span -> span.getName().equals("query")).findFirst().orElseThrow();
+        assertThat(query.getAttributes().asMap().toString()).contains("from users");
+    }
+
+    @Test
+    void testRestTemplateCall_PropagatesTraceAndCorrelatesLogs(CapturedOutput output) {
+        Observation parent = Observation.createNotStarted("test.parent", observationRegistry);
+        ExternalBookDTO book = parent.observe(() -> externalBookService.fetchBookById(258027L));
+        assertThat(book.getTitle()).isEqualTo("The Lord of the Rings");
+
+        SpanData root = awaitSpan("test.parent");
+        List<SpanData> trace = exporter.getFinishedSpanItems().stream()
+                .filter(span -> span.getTraceId().equals(root.getTraceId()))
+                .toList();
+
+        assertThat(trace).extracting(SpanData::getName)
+                .contains("external-book-service#fetch-book-by-id", "http get");
+        // El servicio externo recibe el contexto W3C de la misma traza
+        assertThat(traceparent.get()).contains(root.getTraceId());
+        // Las líneas de log llevan el traceId del pedido
+        assertThat(output).containsPattern(root.getTraceId() + ".*Fetching book with id 258027");
+    }
+
+    private SpanData awaitSpan(String name) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (true) {
+            tracerProvider.forceFlush().join(5, TimeUnit.SECONDS);
+            for (SpanData span : exporter.getFinishedSpanItems()) {
+                if (span.getName().equals(name)) {
+                    return span;
+                }
+            }
+            if (System.nanoTime() > deadline) {
+                throw new AssertionError("Span " + name + " not exported; got "
+                        + exporter.getFinishedSpanItems().stream().map(SpanData::getName).toList());
+            }
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new AssertionError(e);
+            }
+        }
+    }
+}
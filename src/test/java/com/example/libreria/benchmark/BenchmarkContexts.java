@@ -0,0 +1,33 @@
+package com.example.libreria.benchmark;
+
+import com.example.libreria.LibreriaApplication;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Contexto de la aplicación sin servidor web, sobre una base H2 en memoria propia de cada benchmark
+final class BenchmarkContexts {
+    
+    private BenchmarkContexts() {
+    }
+    
+    // Las propiedades van como argumentos de línea de comandos, para que tengan prioridad sobre application.yaml
+    static ConfigurableApplicationContext start(String database, String... properties) {
+        List<String> args = new ArrayList<>(List.of(
+                // Sin OPTIMIZE_REUSE_RESULTS: H2 devolvería el resultado anterior de la misma consulta sin ejecutarla
+                "--spring.datasource.url=jdbc:h2:mem:" + database + ";DB_CLOSE_ON_EXIT=FALSE;OPTIMIZE_REUSE_RESULTS=FALSE",
+                "--spring.jpa.show-sql=false",
+                "--logging.level.root=WARN",
+                "--external.api.books.snapshot.load-on-startup=false",
+                "--library.overdue-sweeper.enabled=false"));
+        for (String property : properties) {
+            args.add("--" + property);
+        }
+        return new SpringApplicationBuilder(LibreriaApplication.class)
+                .web(WebApplicationType.NONE)
+                .run(args.toArray(String[]::new));
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.libreria.benchmark;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.List;
+import java.util.Random;
+
+// Datos sintéticos con semilla fija: el mismo tamaño y revisión generan siempre los mismos bytes,
+// así los resultados de distintas versiones se comparan sobre la misma entrada
+final class BenchmarkDatasets {
+    
+    static final long FIRST_BOOK_ID = 5_000_000L;
+    
+    private static final long SEED = 20240601L;
+    private static final List<String> AUTHORS = List.of("J. R. R. Tolkien", "Douglas Adams",
+            "Gabriel García Márquez", "Jane Austen", "Jorge Luis Borges", "Julio Cortázar", "Ursula K. Le Guin",
+            "Isabel Allende");
+    
+    private BenchmarkDatasets() {
+    }
+    
+    // Feed con el formato de la API externa. Entre revisiones cambia el precio de uno de cada diez libros.
+    static byte[] bookFeed(int books, int revision) {
+        Random random = new Random(SEED);
+        ByteArrayOutputStream out = new ByteArrayOutputStream(books * 200);
+        try (JsonGenerator json = new JsonFactory().createGenerator(out)) {
+            json.writeStartArray();
+            for (int i = 0; i < books; i++) {
+                long id = FIRST_BOOK_ID + i;
+                BigDecimal price = BigDecimal.valueOf(500 + random.nextInt(5500), 2);
+                if (i % 10 == 0) {
+                    price = price.add(BigDecimal.valueOf(revision)).setScale(2, RoundingMode.HALF_UP);
+                }
+                json.writeStartObject();
+                json.writeNumberField("id", id);
+                json.writeBooleanField("has_fulltext", random.nextBoolean());
+                json.writeNumberField("edition_count", 1 + random.nextInt(300));
+                json.writeStringField("title", "Benchmark book " + id);
+                json.writeArrayFieldStart("author_name");
+                json.writeString(AUTHORS.get(random.nextInt(AUTHORS.size())));
+                if (random.nextInt(4) == 0) {
+                    json.writeString(AUTHORS.get(random.nextInt(AUTHORS.size())));
+                }
+                json.writeEndArray();
+                json.writeNumberField("first_publish_year", 1800 + random.nextInt(225));
+                json.writeNumberField("price", price);
+                json.writeEndObject();
+            }
+            json.writeEndArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+    
+    // Misma secuencia en cada corrida para elegir libros, usuarios o fechas
+    static Random random(int stream) {
+        return new Random(SEED + stream);
+    }
+}
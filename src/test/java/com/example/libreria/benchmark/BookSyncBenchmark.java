@@ -0,0 +1,124 @@
+package com.example.libreria.benchmark;
+
+import com.example.libreria.dto.BookSyncResultDTO;
+import com.example.libreria.service.BookService;
+import com.sun.net.httpserver.HttpServer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.concurrent.TimeUnit;
+
+// syncBooksFromExternalApi completo (HTTP, parseo en streaming, upsert por bloques) contra un feed generado,
+// servido desde un servidor HTTP local para no depender de la red
+// Ejecutar con: mvn -Pjmh -DskipTests verify -Djmh.include=BookSyncBenchmark
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+public class BookSyncBenchmark {
+    
+    @Param({"100000"})
+    private int books;
+    
+    private ConfigurableApplicationContext context;
+    private HttpServer server;
+    private BookService bookService;
+    private JdbcTemplate jdbcTemplate;
+    private byte[][] feeds;
+    private volatile byte[] servedFeed;
+    private int revision;
+    
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        // Revisión 0 para la carga inicial; 1 y 2 difieren en el precio de uno de cada diez libros
+        feeds = new byte[][]{
+                BenchmarkDatasets.bookFeed(books, 0),
+                BenchmarkDatasets.bookFeed(books, 1),
+                BenchmarkDatasets.bookFeed(books, 2)
+        };
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/books", exchange -> {
+            byte[] body = servedFeed;
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+        context = BenchmarkContexts.start("book_sync_benchmark",
+                "external.api.books.url=http://127.0.0.1:" + server.getAddress().getPort() + "/books",
+                "external.api.books.snapshot.enabled=false");
+        bookService = context.getBean(BookService.class);
+        jdbcTemplate = context.getBean(JdbcTemplate.class);
+    }
+    
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+        server.stop(0);
+    }
+    
+    @State(Scope.Benchmark)
+    public static class EmptyCatalog {
+        
+        @Setup(Level.Invocation)
+        public void clear(BookSyncBenchmark benchmark) {
+            benchmark.jdbcTemplate.update("DELETE FROM book_authors");
+            benchmark.jdbcTemplate.update("DELETE FROM books");
+            benchmark.servedFeed = benchmark.feeds[0];
+        }
+    }
+    
+    @State(Scope.Benchmark)
+    public static class LoadedCatalog {
+        
+        @Setup(Level.Iteration)
+        public void load(BookSyncBenchmark benchmark) {
+            if (benchmark.jdbcTemplate.queryForObject("SELECT COUNT(*) FROM books", Long.class) < benchmark.books) {
+                benchmark.servedFeed = benchmark.feeds[0];
+                benchmark.revision = 0;
+                benchmark.bookService.syncBooksFromExternalApi(true);
+            }
+        }
+    }
+    
+    // Primera carga: todos los libros son INSERT
+    @Benchmark
+    public BookSyncResultDTO initialImport(EmptyCatalog catalog) {
+        return bookService.syncBooksFromExternalApi(true);
+    }
+    
+    // Feed sin cambios forzando la descarga: todos se descartan por el hash de contenido
+    @Benchmark
+    public BookSyncResultDTO unchangedResync(LoadedCatalog catalog) {
+        servedFeed = feeds[revision];
+        return bookService.syncBooksFromExternalApi(true);
+    }
+    
+    // Uno de cada diez libros cambió de precio desde la sincronización anterior
+    @Benchmark
+    public BookSyncResultDTO partialUpdateResync(LoadedCatalog catalog) {
+        revision = revision == 1 ? 2 : 1;
+        servedFeed = feeds[revision];
+        return bookService.syncBooksFromExternalApi(true);
+    }
+}
@@ -0,0 +1,104 @@
+package com.example.libreria.benchmark;
+
+import com.example.libreria.model.Book;
+import com.example.libreria.repository.BookRepository;
+import com.example.libreria.service.InventoryEngine;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Reserva + devolución contra el motor de inventario: UPDATE condicional por fila vs celdas en memoria con journal.
+// hotBooks=1 reproduce un título de alta demanda donde todos los hilos apuntan a la misma fila.
+// Ejecutar con: mvn -Pjmh -DskipTests verify -Djmh.include=InventoryEngineBenchmark
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(8)
+public class InventoryEngineBenchmark {
+
+    private static final long FIRST_BOOK_ID = 1_000_000L;
+    private static final int BOOKS = 64;
+
+    @Param({"database", "memory"})
+    private String engine;
+
+    @Param({"1", "64"})
+    private int hotBooks;
+
+    // fsync por movimiento en el journal; -p journalFsync=false mide el costo sin esperar al disco
+    @Param({"true"})
+    private boolean journalFsync;
+
+    private ConfigurableApplicationContext context;
+    private InventoryEngine inventoryEngine;
+    private Path journalDir;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        journalDir = Files.createTempDirectory("inventory-journal");
+        context = BenchmarkContexts.start("inventory_benchmark",
+                "library.inventory.engine=" + engine,
+                "library.inventory.journal-dir=" + journalDir,
+                "library.inventory.journal-fsync=" + journalFsync);
+        List<Book> books = new ArrayList<>();
+        for (int i = 0; i < BOOKS; i++) {
+            Book book = new Book();
+            book.setExternalId(FIRST_BOOK_ID + i);
+            book.setTitle("Benchmark " + i);
+            book.setPrice(new BigDecimal("10.00"));
+            // Con stock de sobra ninguna operación falla por falta de ejemplares
+            book.setStockQuantity(1_000_000);
+            book.setAvailableQuantity(500_000);
+            books.add(book);
+        }
+        context.getBean(BookRepository.class).saveAll(books);
+        inventoryEngine = context.getBean(InventoryEngine.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        context.close();
+        FileSystemUtils.deleteRecursively(journalDir);
+    }
+
+    @Benchmark
+    public boolean reserveAndRelease(Cursor cursor) {
+        long externalId = FIRST_BOOK_ID + cursor.next(hotBooks);
+        inventoryEngine.tryReserve(externalId);
+        return inventoryEngine.tryRelease(externalId);
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+
+        private int position = (int) Thread.currentThread().getId();
+
+        int next(int bound) {
+            return Math.floorMod(position++, bound);
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.libreria.benchmark;
+
+import com.example.libreria.dto.ReservationPageDTO;
+import com.example.libreria.dto.ReservationResponseDTO;
+import com.example.libreria.service.ReservationService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Detección de vencidas sobre un millón de reservas: 10.000 en préstamo, de las cuales 6.250 ya vencieron
+// (marcadas OVERDUE, como las deja el barrido) y otras 10.000 devueltas con demora, también OVERDUE.
+// index=none reproduce la tabla sin índices sobre status; status_created deja solo (status, created_at, id);
+// status_expected es el índice (status, actual_return_date, expected_return_date, id) declarado en Reservation.
+// Ejecutar con: mvn -Pjmh -DskipTests verify -Djmh.include=OverdueQueryBenchmark
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class OverdueQueryBenchmark {
+    
+    private static final int RESERVATIONS = 1_000_000;
+    private static final long FIRST_BOOK_ID = 9_000_000L;
+    private static final int BOOKS = 1_000;
+    private static final List<String> STATUS_INDEXES = List.of("status_created", "status_expected");
+    
+    @Param({"none", "status_created", "status_expected"})
+    private String index;
+    
+    private ConfigurableApplicationContext context;
+    private ReservationService reservationService;
+    
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContexts.start("overdue_benchmark");
+        JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+        // Los índices que no se miden se quitan antes de cargar, así la carga también es más rápida
+        for (String candidate : STATUS_INDEXES) {
+            if (!candidate.equals(index)) {
+                jdbcTemplate.execute("DROP INDEX IF EXISTS idx_reservations_" + candidate);
+            }
+        }
+        jdbcTemplate.update("INSERT INTO books (external_id, title, price, stock_quantity, available_quantity, version) " +
+                "SELECT ? + X, CONCAT('Benchmark ', X), 10.00, 100, 100, 0 FROM SYSTEM_RANGE(0, ?)",
+                FIRST_BOOK_ID, BOOKS - 1);
+        Long firstUserId = jdbcTemplate.queryForObject("SELECT MIN(id) FROM users", Long.class);
+        Long users = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM users", Long.class);
+        // Una de cada 100 sigue en préstamo, empezada en los últimos 40 días con 14 de alquiler;
+        // otra de cada 100 se devolvió con 3 días de demora y el resto a tiempo, en los últimos 10 años
+        jdbcTemplate.update("INSERT INTO reservations (id, user_id, book_external_id, rental_days, start_date, " +
+                "expected_return_date, actual_return_date, daily_rate, total_fee, late_fee, status, created_at, version) " +
+                "SELECT X, ? + MOD(X, ?), ? + MOD(X, ?), 14, START_DATE, DATEADD('DAY', 14, START_DATE), " +
+                "CASE WHEN ACTIVE THEN NULL WHEN MOD(X, 100) = 1 THEN DATEADD('DAY', 17, START_DATE) " +
+                "ELSE DATEADD('DAY', 14, START_DATE) END, 10.00, 140.00, 0.00, " +
+                "CASE WHEN ACTIVE AND DATEADD('DAY', 14, START_DATE) < CURRENT_DATE THEN 'OVERDUE' " +
+                "WHEN ACTIVE THEN 'ACTIVE' WHEN MOD(X, 100) = 1 THEN 'OVERDUE' ELSE 'RETURNED' END, " +
+                "CAST(START_DATE AS TIMESTAMP), 0 " +
+                "FROM (SELECT X, MOD(X, 100) = 0 AS ACTIVE, " +
+                "DATEADD('DAY', CASE WHEN MOD(X, 100) = 0 THEN -MOD(X, 40) ELSE -(40 + MOD(X, 3650)) END, CURRENT_DATE) " +
+                "AS START_DATE FROM SYSTEM_RANGE(1, ?))",
+                firstUserId, users, FIRST_BOOK_ID, BOOKS, RESERVATIONS);
+        jdbcTemplate.execute("ANALYZE");
+        reservationService = context.getBean(ReservationService.class);
+    }
+    
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+    
+    // GET /api/reservations/overdue: primera página de 50
+    @Benchmark
+    public ReservationPageDTO firstOverduePage() {
+        return reservationService.getOverdueReservations(null, 50);
+    }
+    
+    // Listado completo de vencidas, como lo devolvía el endpoint antes de paginar
+    @Benchmark
+    public List<ReservationResponseDTO> allOverdue() {
+        return reservationService.getOverdueReservations();
+    }
+}
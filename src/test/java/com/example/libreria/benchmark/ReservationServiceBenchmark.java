@@ -0,0 +1,99 @@
+package com.example.libreria.benchmark;
+
+import com.example.libreria.dto.ReservationRequestDTO;
+import com.example.libreria.dto.ReservationResponseDTO;
+import com.example.libreria.dto.ReturnBookRequestDTO;
+import com.example.libreria.model.Book;
+import com.example.libreria.repository.BookRepository;
+import com.example.libreria.service.ReservationService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Alta y devolución de reservas a través del servicio, con transacción, caché de catálogo y motor de inventario.
+// Cada operación reserva y devuelve el mismo ejemplar, así el stock no se agota entre iteraciones.
+// Ejecutar con: mvn -Pjmh -DskipTests verify -Djmh.include=ReservationServiceBenchmark
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ReservationServiceBenchmark {
+    
+    private static final int BOOKS = 1_000;
+    private static final LocalDate START_DATE = LocalDate.of(2025, 3, 1);
+    private static final int RENTAL_DAYS = 14;
+    
+    private ConfigurableApplicationContext context;
+    private ReservationService reservationService;
+    private List<Long> userIds;
+    
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContexts.start("reservation_service_benchmark");
+        List<Book> books = new ArrayList<>();
+        for (int i = 0; i < BOOKS; i++) {
+            Book book = new Book();
+            book.setExternalId(BenchmarkDatasets.FIRST_BOOK_ID + i);
+            book.setTitle("Benchmark book " + i);
+            book.setPrice(new BigDecimal("24.90"));
+            book.setStockQuantity(1_000);
+            book.setAvailableQuantity(1_000);
+            books.add(book);
+        }
+        context.getBean(BookRepository.class).saveAll(books);
+        // Los usuarios de data.sql
+        userIds = context.getBean(JdbcTemplate.class).queryForList("SELECT id FROM users ORDER BY id", Long.class);
+        reservationService = context.getBean(ReservationService.class);
+    }
+    
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+    
+    @State(Scope.Thread)
+    public static class Picks {
+        
+        private final Random random = BenchmarkDatasets.random(1);
+        
+        ReservationRequestDTO next(List<Long> userIds) {
+            return new ReservationRequestDTO(userIds.get(random.nextInt(userIds.size())),
+                    BenchmarkDatasets.FIRST_BOOK_ID + random.nextInt(BOOKS), RENTAL_DAYS, START_DATE);
+        }
+    }
+    
+    @Benchmark
+    public ReservationResponseDTO createAndReturnOnTime(Picks picks) {
+        ReservationResponseDTO reservation = reservationService.createReservation(picks.next(userIds));
+        return reservationService.returnBook(reservation.getId(),
+                new ReturnBookRequestDTO(reservation.getExpectedReturnDate()));
+    }
+    
+    // Devolución con demora: incluye el cálculo de la multa sobre el precio del libro
+    @Benchmark
+    public ReservationResponseDTO createAndReturnLate(Picks picks) {
+        ReservationResponseDTO reservation = reservationService.createReservation(picks.next(userIds));
+        return reservationService.returnBook(reservation.getId(),
+                new ReturnBookRequestDTO(reservation.getExpectedReturnDate().plusDays(5)));
+    }
+}
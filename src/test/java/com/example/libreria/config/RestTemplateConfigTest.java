@@ -0,0 +1,192 @@
+package com.example.libreria.config;
+
+import com.example.libreria.dto.ExternalBookDTO;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.AutoConfigurations;
+import org.springframework.boot.autoconfigure.web.client.RestTemplateAutoConfiguration;
+import org.springframework.boot.convert.ApplicationConversionService;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.zip.GZIPOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class RestTemplateConfigTest {
+
+    private static final String BOOK_JSON = "{\"id\":258027,\"has_fulltext\":true,\"edition_count\":120,"
+            + "\"title\":\"The Lord of the Rings\",\"author_name\":[\"J. R. R. Tolkien\"],"
+            + "\"first_publish_year\":1954,\"price\":15.99}";
+    private static final int REQUESTS = 200;
+
+    static {
+        // Sin TCP_NODELAY el stub sufre el retardo de ACK de Nagle en conexiones reutilizadas
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    private final ApplicationContextRunner contextRunner = new ApplicationContextRunner()
+            // Igual que SpringApplication, para convertir propiedades como PT5S a Duration
+            .withInitializer(context -> context.getBeanFactory()
+                    .setConversionService(ApplicationConversionService.getSharedInstance()))
+            .withConfiguration(AutoConfigurations.of(RestTemplateAutoConfiguration.class))
+            .withUserConfiguration(RestTemplateConfig.class);
+
+    private HttpServer server;
+    private final Set<Integer> clientPorts = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger gzipResponses = new AtomicInteger();
+
+    @BeforeEach
+    void startStub() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/books/258027", exchange -> {
+            // Cada conexión TCP nueva llega desde un puerto efímero distinto
+            clientPorts.add(exchange.getRemoteAddress().getPort());
+            exchange.getRequestBody().readAllBytes();
+            byte[] body = BOOK_JSON.getBytes(StandardCharsets.UTF_8);
+            String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+            if (acceptEncoding != null && acceptEncoding.contains("gzip")) {
+                body = gzip(body);
+                exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+                gzipResponses.incrementAndGet();
+            }
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.createContext("/slow", exchange -> {
+            try {
+                Thread.sleep(1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            exchange.sendResponseHeaders(204, -1);
+            exchange.close();
+        });
+        server.start();
+    }
+
+    @AfterEach
+    void stopStub() {
+        server.stop(0);
+    }
+
+    @Test
+    void testApacheClient_ReusesPooledConnectionsAndNegotiatesGzip() {
+        contextRunner.withPropertyValues("external.api.http.client=apache").run(context -> {
+            assertThat(context.getBean(RestTemplate.class).getRequestFactory())
+                    .isInstanceOf(HttpComponentsClientHttpRequestFactory.class);
+
+            fetchBooks(() -> context.getBean(RestTemplate.class));
+            int pooledConnections = clientPorts.size();
+
+            clientPorts.clear();
+            // Línea base: un cliente nuevo por pedido abre una conexión TCP cada vez; se cierra al terminar
+            for (int i = 0; i < REQUESTS; i++) {
+                HttpComponentsClientHttpRequestFactory factory =
+                        (HttpComponentsClientHttpRequestFactory) new RestTemplateConfig().clientHttpRequestFactory();
+                try {
+                    fetchBook(new RestTemplate(factory));
+                } finally {
+                    factory.destroy();
+                }
+            }
+            int freshConnections = clientPorts.size();
+
+            assertThat(pooledConnections).isEqualTo(1);
+            assertThat(freshConnections).isEqualTo(REQUESTS);
+            assertThat(gzipResponses.get()).isEqualTo(2 * REQUESTS);
+        });
+    }
+
+    @Test
+    void testJdkClient_ReusesConnectionAndNegotiatesGzip() {
+        contextRunner.withPropertyValues("external.api.http.client=jdk").run(context -> {
+            RestTemplate restTemplate = context.getBean(RestTemplate.class);
+
+            fetchBooks(() -> restTemplate);
+
+            assertThat(clientPorts).hasSize(1);
+            assertThat(gzipResponses.get()).isEqualTo(REQUESTS);
+        });
+    }
+
+    @Test
+    void testJdkClient_WithoutCompressionRequestsPlainBodies() {
+        contextRunner.withPropertyValues("external.api.http.client=jdk", "external.api.http.compression=false")
+                .run(context -> {
+                    RestTemplate restTemplate = context.getBean(RestTemplate.class);
+                    assertThat(restTemplate.getRequestFactory()).isInstanceOf(JdkClientHttpRequestFactory.class);
+
+                    fetchBooks(() -> restTemplate);
+
+                    assertThat(gzipResponses.get()).isZero();
+                });
+    }
+
+    @Test
+    void testBulkRestTemplate_ClientCutsResponsesPastRequestTimeout() {
+        contextRunner.withPropertyValues("external.api.http.client=apache",
+                "external.api.books.bulk.request-timeout=PT0.1S").run(context -> {
+            RestTemplate bulkRestTemplate = context.getBean("bulkRestTemplate", RestTemplate.class);
+            String url = "http://127.0.0.1:" + server.getAddress().getPort() + "/slow";
+
+            assertThatThrownBy(() -> bulkRestTemplate.getForObject(url, String.class))
+                    .isInstanceOf(ResourceAccessException.class)
+                    .hasRootCauseInstanceOf(SocketTimeoutException.class);
+        });
+    }
+
+    @Test
+    void testSimpleClient_StillAvailable() {
+        contextRunner.withPropertyValues("external.api.http.client=simple").run(context ->
+                assertThat(context.getBean(RestTemplate.class).getRequestFactory())
+                        .isInstanceOf(SimpleClientHttpRequestFactory.class));
+    }
+
+    @Test
+    void testUnknownClient_FailsStartup() {
+        contextRunner.withPropertyValues("external.api.http.client=netty").run(context ->
+                assertThat(context).hasFailed());
+    }
+
+    private void fetchBooks(Supplier<RestTemplate> restTemplates) {
+        for (int i = 0; i < REQUESTS; i++) {
+            fetchBook(restTemplates.get());
+        }
+    }
+
+    private void fetchBook(RestTemplate restTemplate) {
+        String url = "http://127.0.0.1:" + server.getAddress().getPort() + "/books/258027";
+        ExternalBookDTO book = restTemplate.getForObject(url, ExternalBookDTO.class);
+        assertThat(book).isNotNull();
+        assertThat(book.getTitle()).isEqualTo("The Lord of the Rings");
+    }
+
+    private static byte[] gzip(byte[] data) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (GZIPOutputStream out = new GZIPOutputStream(bytes)) {
+            out.write(data);
+        }
+        return bytes.toByteArray();
+    }
+}
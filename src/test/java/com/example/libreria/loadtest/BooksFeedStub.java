@@ -0,0 +1,80 @@
+package com.example.libreria.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Reemplazo local de la API externa de libros: sirve books-db.json completado con copias sintéticas
+// hasta llegar a la cantidad pedida, siempre con los mismos datos para una misma semilla
+final class BooksFeedStub implements AutoCloseable {
+
+    private static final long FIRST_SYNTHETIC_ID = 9_000_000L;
+
+    private final HttpServer server;
+    private final byte[] feed;
+    private final List<Long> bookIds = new ArrayList<>();
+    private final AtomicLong requests = new AtomicLong();
+
+    BooksFeedStub(Path seedFile, int books, long randomSeed) throws IOException {
+        ObjectMapper mapper = new ObjectMapper();
+        JsonNode seed = mapper.readTree(seedFile.toFile());
+        if (!seed.isArray() || seed.isEmpty()) {
+            throw new IllegalArgumentException("El archivo de libros debe ser un arreglo no vacío: " + seedFile);
+        }
+
+        Random random = new Random(randomSeed);
+        ArrayNode catalog = mapper.createArrayNode();
+        for (int i = 0; i < books; i++) {
+            ObjectNode book = ((ObjectNode) seed.get(i % seed.size())).deepCopy();
+            if (i >= seed.size()) {
+                long id = FIRST_SYNTHETIC_ID + i;
+                book.put("id", id);
+                book.put("title", book.get("title").asText() + " (vol. " + (i / seed.size() + 1) + ")");
+                book.put("price", BigDecimal.valueOf(500 + random.nextInt(5500), 2));
+            }
+            bookIds.add(book.get("id").asLong());
+            catalog.add(book);
+        }
+        feed = mapper.writeValueAsBytes(catalog);
+
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/books", exchange -> {
+            requests.incrementAndGet();
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, feed.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(feed);
+            }
+        });
+        server.start();
+    }
+
+    String url() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/books";
+    }
+
+    List<Long> bookIds() {
+        return bookIds;
+    }
+
+    long requests() {
+        return requests.get();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+}
@@ -0,0 +1,92 @@
+package com.example.libreria.loadtest;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+// Parámetros de una corrida, como argumentos --clave=valor; los que no se pasan toman el valor por defecto
+final class LoadTestOptions {
+
+    private static final Set<String> KEYS = Set.of("duration", "warmup", "concurrency", "books", "users", "mix",
+            "seed-file", "result", "random-seed");
+    private static final String DEFAULT_MIX = "reserve:30,return:25,list:20,book:15,user:8,sync:2";
+
+    final Duration duration;
+    final Duration warmup;
+    final int concurrency;
+    final int books;
+    final int users;
+    final Map<LoadTestRunner.Operation, Integer> mix;
+    final Path seedFile;
+    final Path result;
+    final long randomSeed;
+
+    private LoadTestOptions(Map<String, String> values) {
+        duration = Duration.parse(values.getOrDefault("duration", "PT60S"));
+        warmup = Duration.parse(values.getOrDefault("warmup", "PT10S"));
+        concurrency = Integer.parseInt(values.getOrDefault("concurrency", "16"));
+        books = Integer.parseInt(values.getOrDefault("books", "1000"));
+        users = Integer.parseInt(values.getOrDefault("users", "50"));
+        mix = parseMix(values.getOrDefault("mix", DEFAULT_MIX));
+        seedFile = Path.of(values.getOrDefault("seed-file", "books-db.json"));
+        String resultValue = values.get("result");
+        result = resultValue == null || resultValue.isBlank() ? null : Path.of(resultValue);
+        randomSeed = Long.parseLong(values.getOrDefault("random-seed", "20240601"));
+
+        if (concurrency < 1 || books < 1 || users < 1) {
+            throw new IllegalArgumentException("concurrency, books y users deben ser mayores a cero");
+        }
+        if (duration.isNegative() || duration.isZero() || warmup.isNegative()) {
+            throw new IllegalArgumentException("La duración debe ser positiva y el calentamiento no negativo");
+        }
+    }
+
+    static LoadTestOptions parse(String[] args) {
+        Map<String, String> values = new HashMap<>();
+        for (String arg : args) {
+            // Maven pasa como cadena vacía las propiedades sin valor
+            if (arg.isBlank()) {
+                continue;
+            }
+            int separator = arg.indexOf('=');
+            if (!arg.startsWith("--") || separator < 0) {
+                throw new IllegalArgumentException("Argumento inválido, se esperaba --clave=valor: " + arg);
+            }
+            String key = arg.substring(2, separator);
+            if (!KEYS.contains(key)) {
+                throw new IllegalArgumentException("Opción desconocida: " + key + ", se esperaba una de " + KEYS);
+            }
+            values.put(key, arg.substring(separator + 1));
+        }
+        return new LoadTestOptions(values);
+    }
+
+    // Pesos relativos por operación, p. ej. "reserve:30,return:25,list:20"
+    private static Map<LoadTestRunner.Operation, Integer> parseMix(String value) {
+        Map<LoadTestRunner.Operation, Integer> weights = new EnumMap<>(LoadTestRunner.Operation.class);
+        for (String entry : value.split(",")) {
+            String[] parts = entry.trim().split(":");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Entrada de mix inválida, se esperaba operacion:peso: " + entry);
+            }
+            int weight = Integer.parseInt(parts[1].trim());
+            if (weight < 0) {
+                throw new IllegalArgumentException("El peso de " + parts[0] + " no puede ser negativo");
+            }
+            weights.put(LoadTestRunner.Operation.valueOf(parts[0].trim().toUpperCase()), weight);
+        }
+        if (weights.values().stream().mapToInt(Integer::intValue).sum() == 0) {
+            throw new IllegalArgumentException("El mix debe tener al menos una operación con peso positivo");
+        }
+        return weights;
+    }
+
+    @Override
+    public String toString() {
+        return "duration=" + duration + ", warmup=" + warmup + ", concurrency=" + concurrency + ", books=" + books
+                + ", users=" + users + ", mix=" + mix + ", random-seed=" + randomSeed;
+    }
+}
@@ -0,0 +1,141 @@
+package com.example.libreria.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+// Latencias y resultados por endpoint durante la ventana de medición
+final class LoadTestReport {
+
+    private final Map<LoadTestRunner.Operation, EndpointStats> stats = new EnumMap<>(LoadTestRunner.Operation.class);
+
+    LoadTestReport() {
+        for (LoadTestRunner.Operation operation : LoadTestRunner.Operation.values()) {
+            stats.put(operation, new EndpointStats());
+        }
+    }
+
+    // outcome es el código HTTP o el nombre de la excepción si no hubo respuesta
+    void record(LoadTestRunner.Operation operation, long latencyNanos, String outcome, boolean error) {
+        stats.get(operation).record(latencyNanos, outcome, error);
+    }
+
+    void print(PrintStream out, Duration elapsed) {
+        double seconds = elapsed.toNanos() / 1e9;
+        out.printf("%n%-36s %9s %7s %7s %9s %9s %9s %9s %9s%n", "Endpoint", "Requests", "Errors", "Err %",
+                "Req/s", "p50 ms", "p95 ms", "p99 ms", "Max ms");
+        long totalRequests = 0;
+        long totalErrors = 0;
+        for (Map.Entry<LoadTestRunner.Operation, EndpointStats> entry : stats.entrySet()) {
+            Summary summary = entry.getValue().summarize();
+            if (summary.requests == 0) {
+                continue;
+            }
+            totalRequests += summary.requests;
+            totalErrors += summary.errors;
+            out.printf("%-36s %9d %7d %7.2f %9.1f %9.2f %9.2f %9.2f %9.2f%n", entry.getKey().getEndpoint(),
+                    summary.requests, summary.errors, summary.errorRate() * 100, summary.requests / seconds,
+                    millis(summary.p50), millis(summary.p95), millis(summary.p99), millis(summary.max));
+        }
+        out.printf("%-36s %9d %7d %7.2f %9.1f%n", "Total", totalRequests, totalErrors,
+                totalRequests == 0 ? 0.0 : totalErrors * 100.0 / totalRequests, totalRequests / seconds);
+
+        // Desglose de respuestas solo donde hubo errores, para distinguir rechazos de negocio de fallas
+        for (Map.Entry<LoadTestRunner.Operation, EndpointStats> entry : stats.entrySet()) {
+            Summary summary = entry.getValue().summarize();
+            if (summary.errors > 0) {
+                out.printf("  %s -> %s%n", entry.getKey().getEndpoint(), summary.outcomes);
+            }
+        }
+    }
+
+    // Mismo contenido que la tabla, en JSON para comparar corridas entre versiones
+    void writeJson(Path path, LoadTestOptions options, Duration elapsed) throws IOException {
+        double seconds = elapsed.toNanos() / 1e9;
+        Map<String, Object> endpoints = new LinkedHashMap<>();
+        for (Map.Entry<LoadTestRunner.Operation, EndpointStats> entry : stats.entrySet()) {
+            Summary summary = entry.getValue().summarize();
+            if (summary.requests == 0) {
+                continue;
+            }
+            Map<String, Object> values = new LinkedHashMap<>();
+            values.put("requests", summary.requests);
+            values.put("errors", summary.errors);
+            values.put("errorRate", summary.errorRate());
+            values.put("throughputPerSecond", summary.requests / seconds);
+            values.put("p50Millis", millis(summary.p50));
+            values.put("p95Millis", millis(summary.p95));
+            values.put("p99Millis", millis(summary.p99));
+            values.put("maxMillis", millis(summary.max));
+            values.put("outcomes", summary.outcomes);
+            endpoints.put(entry.getKey().getEndpoint(), values);
+        }
+        Map<String, Object> document = new LinkedHashMap<>();
+        document.put("options", options.toString());
+        document.put("measuredSeconds", seconds);
+        document.put("endpoints", endpoints);
+
+        Path parent = path.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(path.toFile(), document);
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+
+    private static final class EndpointStats {
+
+        private long[] latencies = new long[1024];
+        private int count;
+        private long errors;
+        private final Map<String, Long> outcomes = new TreeMap<>();
+
+        synchronized void record(long latencyNanos, String outcome, boolean error) {
+            if (count == latencies.length) {
+                latencies = Arrays.copyOf(latencies, count * 2);
+            }
+            latencies[count++] = latencyNanos;
+            if (error) {
+                errors++;
+            }
+            outcomes.merge(outcome, 1L, Long::sum);
+        }
+
+        synchronized Summary summarize() {
+            long[] sorted = Arrays.copyOf(latencies, count);
+            Arrays.sort(sorted);
+            return new Summary(count, errors, percentile(sorted, 0.50), percentile(sorted, 0.95),
+                    percentile(sorted, 0.99), count == 0 ? 0 : sorted[count - 1], new TreeMap<>(outcomes));
+        }
+
+        // Nearest-rank: el menor valor que cubre al menos la fracción pedida de las muestras
+        private static long percentile(long[] sorted, double fraction) {
+            if (sorted.length == 0) {
+                return 0;
+            }
+            int rank = (int) Math.ceil(fraction * sorted.length);
+            return sorted[Math.max(rank, 1) - 1];
+        }
+    }
+
+    private record Summary(long requests, long errors, long p50, long p95, long p99, long max,
+                           Map<String, Long> outcomes) {
+
+        double errorRate() {
+            return requests == 0 ? 0.0 : (double) errors / requests;
+        }
+    }
+}
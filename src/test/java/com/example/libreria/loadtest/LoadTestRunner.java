@@ -0,0 +1,276 @@
+package com.example.libreria.loadtest;
+
+import com.example.libreria.LibreriaApplication;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// Prueba de carga HTTP: levanta la aplicación en un puerto aleatorio contra un stub local del feed de libros
+// y mezcla reservas, devoluciones, listados y sincronizaciones desde varios hilos concurrentes.
+// Ejecutar con: mvn -Pload-test -DskipTests verify -Dloadtest.concurrency=32 -Dloadtest.books=10000
+public class LoadTestRunner {
+
+    enum Operation {
+        RESERVE("POST /api/reservations"),
+        RETURN("POST /api/reservations/{id}/return"),
+        LIST("GET /api/reservations"),
+        BOOK("GET /api/books/{externalId}"),
+        USER("GET /api/users/{id}"),
+        SYNC("POST /api/books/sync");
+
+        private final String endpoint;
+
+        Operation(String endpoint) {
+            this.endpoint = endpoint;
+        }
+
+        String getEndpoint() {
+            return endpoint;
+        }
+    }
+
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+    private static final Duration SYNC_TIMEOUT = Duration.ofMinutes(10);
+
+    private final LoadTestOptions options;
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final HttpClient client;
+    private final List<Long> userIds = new ArrayList<>();
+    private final ConcurrentLinkedQueue<OpenReservation> openReservations = new ConcurrentLinkedQueue<>();
+    private final Operation[] weightedOperations;
+    private List<Long> bookIds;
+    private String baseUrl;
+    private volatile LoadTestReport report;
+    private volatile String lastSyncJobId;
+
+    private LoadTestRunner(LoadTestOptions options) {
+        this.options = options;
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+        List<Operation> operations = new ArrayList<>();
+        options.mix.forEach((operation, weight) -> {
+            for (int i = 0; i < weight; i++) {
+                operations.add(operation);
+            }
+        });
+        this.weightedOperations = operations.toArray(Operation[]::new);
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadTestOptions options = LoadTestOptions.parse(args);
+        // Con devtools en el classpath, el reinicio volvería a invocar main con los argumentos de Spring
+        System.setProperty("spring.devtools.restart.enabled", "false");
+        System.out.println("Load test: " + options);
+        try (BooksFeedStub stub = new BooksFeedStub(options.seedFile, options.books, options.randomSeed)) {
+            ConfigurableApplicationContext context = new SpringApplicationBuilder(LibreriaApplication.class)
+                    // Como argumentos de línea de comandos, para que tengan prioridad sobre application.yaml
+                    .run("--server.port=0",
+                            "--spring.datasource.url=jdbc:h2:mem:load_test;DB_CLOSE_ON_EXIT=FALSE",
+                            "--spring.jpa.show-sql=false",
+                            "--logging.level.root=WARN",
+                            "--external.api.books.url=" + stub.url(),
+                            "--external.api.books.snapshot.enabled=false",
+                            "--external.api.books.snapshot.load-on-startup=false",
+                            "--library.overdue-sweeper.enabled=false");
+            try {
+                int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+                LoadTestRunner runner = new LoadTestRunner(options);
+                runner.baseUrl = "http://127.0.0.1:" + port;
+                runner.bookIds = stub.bookIds();
+                runner.prepare();
+                runner.run();
+            } finally {
+                context.close();
+            }
+        }
+        // Los hilos no daemon del cliente HTTP no deben retener la JVM lanzada por Maven
+        System.exit(0);
+    }
+
+    // Carga el catálogo desde el stub por la API y crea los usuarios que generarán el tráfico
+    private void prepare() throws IOException, InterruptedException {
+        Instant started = Instant.now();
+        HttpResponse<String> response = send(HttpRequest.newBuilder(uri("/api/books/sync?force=true"))
+                .POST(HttpRequest.BodyPublishers.noBody()));
+        String status = awaitSyncJob(mapper.readTree(response.body()).get("jobId").asText());
+        if (!"COMPLETED".equals(status)) {
+            throw new IllegalStateException("La sincronización inicial del catálogo terminó en estado " + status);
+        }
+        System.out.printf("Catalog synced: %d books in %d ms%n", bookIds.size(),
+                Duration.between(started, Instant.now()).toMillis());
+
+        for (int i = 0; i < options.users; i++) {
+            String body = mapper.writeValueAsString(Map.of(
+                    "name", "Usuario de carga " + i,
+                    "email", "load-test-" + i + "@example.com"));
+            HttpResponse<String> created = send(HttpRequest.newBuilder(uri("/api/users"))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(body)));
+            if (created.statusCode() != 201) {
+                throw new IllegalStateException("No se pudo crear el usuario de carga: " + created.body());
+            }
+            userIds.add(mapper.readTree(created.body()).get("id").asLong());
+        }
+    }
+
+    private void run() throws Exception {
+        // El calentamiento se descarta: se mide sobre un reporte nuevo a partir del final del warmup
+        report = new LoadTestReport();
+        Instant measureFrom = Instant.now().plus(options.warmup);
+        Instant end = measureFrom.plus(options.duration);
+
+        ExecutorService workers = Executors.newFixedThreadPool(options.concurrency);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < options.concurrency; i++) {
+            Random random = new Random(options.randomSeed + i);
+            futures.add(workers.submit(() -> work(random, end)));
+        }
+        Thread.sleep(Math.max(0, Duration.between(Instant.now(), measureFrom).toMillis()));
+        report = new LoadTestReport();
+        Instant measuring = Instant.now();
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        workers.shutdown();
+        Duration elapsed = Duration.between(measuring, Instant.now());
+        // Una sincronización lanzada por el tráfico puede seguir corriendo; se espera antes de cerrar el contexto
+        if (lastSyncJobId != null) {
+            awaitSyncJob(lastSyncJobId);
+        }
+
+        LoadTestReport result = report;
+        result.print(System.out, elapsed);
+        if (options.result != null) {
+            result.writeJson(options.result, options, elapsed);
+            System.out.println("Load test result is saved to " + options.result);
+        }
+    }
+
+    private void work(Random random, Instant end) {
+        while (Instant.now().isBefore(end)) {
+            Operation operation = weightedOperations[random.nextInt(weightedOperations.length)];
+            OpenReservation toReturn = null;
+            if (operation == Operation.RETURN) {
+                toReturn = openReservations.poll();
+                // Sin reservas abiertas todavía, se genera una para mantener el mix en régimen
+                if (toReturn == null) {
+                    operation = Operation.RESERVE;
+                }
+            }
+            HttpRequest request = buildRequest(operation, random, toReturn);
+            LoadTestReport target = report;
+            long startedAt = System.nanoTime();
+            try {
+                HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+                long latency = System.nanoTime() - startedAt;
+                int status = response.statusCode();
+                target.record(operation, latency, String.valueOf(status), status >= 400);
+                if (operation == Operation.RESERVE && status == 201) {
+                    JsonNode created = mapper.readTree(response.body());
+                    openReservations.add(new OpenReservation(created.get("id").asLong(),
+                            LocalDate.parse(created.get("expectedReturnDate").asText())));
+                } else if (operation == Operation.SYNC && status == 202) {
+                    lastSyncJobId = mapper.readTree(response.body()).get("jobId").asText();
+                } else if (operation == Operation.RETURN && (status == 409 || status >= 500)) {
+                    // Un conflicto o falla del servidor deja la reserva abierta: se reintenta más tarde
+                    openReservations.add(toReturn);
+                }
+            } catch (IOException e) {
+                target.record(operation, System.nanoTime() - startedAt, e.getClass().getSimpleName(), true);
+                if (toReturn != null) {
+                    openReservations.add(toReturn);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private String awaitSyncJob(String jobId) throws IOException, InterruptedException {
+        Instant deadline = Instant.now().plus(SYNC_TIMEOUT);
+        String status;
+        do {
+            Thread.sleep(200);
+            status = mapper.readTree(send(HttpRequest.newBuilder(uri("/api/books/sync/" + jobId)).GET()).body())
+                    .get("status").asText();
+        } while (("QUEUED".equals(status) || "RUNNING".equals(status)) && Instant.now().isBefore(deadline));
+        return status;
+    }
+
+    private HttpRequest buildRequest(Operation operation, Random random, OpenReservation toReturn) {
+        try {
+            return switch (operation) {
+                case RESERVE -> {
+                    // Inicios en las últimas tres semanas, así parte de las devoluciones llega con demora
+                    String body = mapper.writeValueAsString(Map.of(
+                            "userId", pick(userIds, random),
+                            "bookExternalId", pick(bookIds, random),
+                            "rentalDays", 7 + random.nextInt(8),
+                            "startDate", LocalDate.now().minusDays(random.nextInt(21)).toString()));
+                    yield json(HttpRequest.newBuilder(uri("/api/reservations")), body);
+                }
+                case RETURN -> {
+                    LocalDate returnDate = toReturn.expectedReturnDate().plusDays(random.nextInt(9) - 3);
+                    String body = mapper.writeValueAsString(Map.of("returnDate", returnDate.toString()));
+                    yield json(HttpRequest.newBuilder(uri("/api/reservations/" + toReturn.id() + "/return")), body);
+                }
+                case LIST -> HttpRequest.newBuilder(uri(random.nextBoolean()
+                                ? "/api/reservations?size=50"
+                                : "/api/reservations?size=50&userId=" + pick(userIds, random)))
+                        .timeout(REQUEST_TIMEOUT).GET().build();
+                case BOOK -> HttpRequest.newBuilder(uri("/api/books/" + pick(bookIds, random)))
+                        .timeout(REQUEST_TIMEOUT).GET().build();
+                case USER -> HttpRequest.newBuilder(uri("/api/users/" + pick(userIds, random)))
+                        .timeout(REQUEST_TIMEOUT).GET().build();
+                case SYNC -> HttpRequest.newBuilder(uri("/api/books/sync?force=true"))
+                        .timeout(REQUEST_TIMEOUT).POST(HttpRequest.BodyPublishers.noBody()).build();
+            };
+        } catch (IOException e) {
+            throw new IllegalStateException("No se pudo serializar el pedido " + operation, e);
+        }
+    }
+
+    private HttpRequest json(HttpRequest.Builder builder, String body) {
+        return builder.timeout(REQUEST_TIMEOUT)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+    }
+
+    private HttpResponse<String> send(HttpRequest.Builder builder) throws IOException, InterruptedException {
+        return client.send(builder.timeout(REQUEST_TIMEOUT).build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private URI uri(String path) {
+        return URI.create(baseUrl + path);
+    }
+
+    private static Long pick(List<Long> ids, Random random) {
+        return ids.get(random.nextInt(ids.size()));
+    }
+
+    private record OpenReservation(Long id, LocalDate expectedReturnDate) {
+    }
+}
@@ -0,0 +1,122 @@
+package com.example.libreria.service;
+
+import com.example.libreria.model.Book;
+import com.example.libreria.repository.BookRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class BookCatalogCacheTest {
+
+    @Mock
+    private BookRepository bookRepository;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    private MeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+                invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+    }
+
+    @Test
+    void testGet_LoadsOnceThenServesFromCache() {
+        BookCatalogCache cache = newCache(100);
+        when(bookRepository.findByExternalId(258027L)).thenReturn(Optional.of(book(258027L)));
+
+        BookCatalogCache.CatalogEntry first = cache.get(258027L).orElseThrow();
+        BookCatalogCache.CatalogEntry second = cache.get(258027L).orElseThrow();
+
+        assertSame(first, second);
+        assertEquals("Book 258027", first.title());
+        assertEquals(List.of("Author 258027"), first.authorName());
+        verify(bookRepository, times(1)).findByExternalId(258027L);
+        assertEquals(1.0, meterRegistry.get("cache.gets").tag("cache", "books.catalog").tag("result", "hit")
+                .functionCounter().count());
+        assertEquals(1.0, meterRegistry.get("cache.gets").tag("cache", "books.catalog").tag("result", "miss")
+                .functionCounter().count());
+    }
+
+    @Test
+    void testGet_MissingBookIsNotCached() {
+        BookCatalogCache cache = newCache(100);
+        when(bookRepository.findByExternalId(1L)).thenReturn(Optional.empty());
+
+        assertTrue(cache.get(1L).isEmpty());
+        assertTrue(cache.get(1L).isEmpty());
+
+        verify(bookRepository, times(2)).findByExternalId(1L);
+    }
+
+    @Test
+    void testInvalidate_ReloadsFromDatabase() {
+        BookCatalogCache cache = newCache(100);
+        Book book = book(258027L);
+        when(bookRepository.findByExternalId(258027L)).thenReturn(Optional.of(book));
+        cache.get(258027L);
+
+        book.setPrice(new BigDecimal("19.99"));
+        cache.invalidateAll(List.of(258027L, 140081L));
+
+        assertEquals(new BigDecimal("19.99"), cache.get(258027L).orElseThrow().price());
+        verify(bookRepository, times(2)).findByExternalId(258027L);
+    }
+
+    @Test
+    void testGet_EvictsBeyondMaximumSize() {
+        BookCatalogCache cache = newCache(10);
+        when(bookRepository.findByExternalId(anyLong()))
+                .thenAnswer(invocation -> Optional.of(book(invocation.getArgument(0))));
+
+        for (long id = 1; id <= 100; id++) {
+            cache.get(id);
+        }
+
+        // Caffeine desaloja de forma asíncrona; se espera a que el contador lo refleje
+        long deadline = System.currentTimeMillis() + 5000;
+        while (evictions() < 90 && System.currentTimeMillis() < deadline) {
+            Thread.onSpinWait();
+        }
+        assertTrue(evictions() >= 90, "evictions: " + evictions());
+    }
+
+    private double evictions() {
+        return meterRegistry.get("cache.evictions").tag("cache", "books.catalog").functionCounter().count();
+    }
+
+    private BookCatalogCache newCache(long maximumSize) {
+        return new BookCatalogCache(bookRepository, transactionTemplate, meterRegistry, maximumSize, Duration.ofHours(1));
+    }
+
+    private static Book book(long externalId) {
+        Book book = new Book();
+        book.setExternalId(externalId);
+        book.setTitle("Book " + externalId);
+        book.setAuthorName(List.of("Author " + externalId));
+        book.setPrice(new BigDecimal("15.99"));
+        book.setStockQuantity(10);
+        book.setAvailableQuantity(10);
+        return book;
+    }
+}
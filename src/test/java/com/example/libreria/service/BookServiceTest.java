@@ -1,23 +1,39 @@
 package com.example.libreria.service;
 
 import com.example.libreria.dto.BookResponseDTO;
+import com.example.libreria.dto.BookSyncResultDTO;
 import com.example.libreria.dto.ExternalBookDTO;
 import com.example.libreria.model.Book;
 import com.example.libreria.repository.BookRepository;
+import com.example.libreria.repository.BookStockView;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.retry.support.RetryTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -29,6 +45,22 @@ class BookServiceTest {
     @Mock
     private ExternalBookService externalBookService;
     
+    @Mock
+    private TransactionTemplate transactionTemplate;
+    
+    @Mock
+    private BookCatalogCache bookCatalogCache;
+    
+    @Mock
+    private InventoryEngine inventoryEngine;
+    
+    @Spy
+    private RetryTemplate optimisticLockRetryTemplate = RetryTemplate.builder()
+            .maxAttempts(3)
+            .noBackoff()
+            .retryOn(OptimisticLockingFailureException.class)
+            .build();
+    
     @InjectMocks
     private BookService bookService;
     
@@ -52,24 +84,132 @@ class BookServiceTest {
     
     @Test
     void testSyncBooksFromExternalApi_NewBook() {
-        when(externalBookService.fetchAllBooks()).thenReturn(Arrays.asList(externalBookDTO));
-        when(bookRepository.findByExternalId(258027L)).thenReturn(Optional.empty());
-        when(bookRepository.save(any(Book.class))).thenReturn(testBook);
+        feed(Arrays.asList(externalBookDTO));
+        when(bookRepository.findByExternalIdIn(anyCollection())).thenReturn(Collections.emptyList());
+        runTransactionsInline();
         
-        bookService.syncBooksFromExternalApi();
+        BookSyncResultDTO result = bookService.syncBooksFromExternalApi();
         
-        verify(bookRepository, times(1)).save(any(Book.class));
+        assertEquals(1, result.getFetched());
+        assertEquals(1, result.getInserted());
+        assertEquals(0, result.getUpdated());
+        verify(bookRepository, never()).findByExternalId(any());
+        verify(bookRepository, times(2)).saveAll(anyList());
     }
     
     @Test
     void testSyncBooksFromExternalApi_ExistingBook() {
-        when(externalBookService.fetchAllBooks()).thenReturn(Arrays.asList(externalBookDTO));
-        when(bookRepository.findByExternalId(258027L)).thenReturn(Optional.of(testBook));
-        when(bookRepository.save(any(Book.class))).thenReturn(testBook);
+        feed(Arrays.asList(externalBookDTO));
+        when(bookRepository.findByExternalIdIn(anyCollection())).thenReturn(Arrays.asList(testBook));
+        runTransactionsInline();
         
-        bookService.syncBooksFromExternalApi();
+        BookSyncResultDTO result = bookService.syncBooksFromExternalApi();
         
-        verify(bookRepository, times(1)).save(any(Book.class));
+        assertEquals(1, result.getFetched());
+        assertEquals(0, result.getInserted());
+        assertEquals(1, result.getUpdated());
+        verify(bookRepository, never()).findByExternalId(any());
+    }
+    
+    @Test
+    void testSyncBooksFromExternalApi_UnchangedBookSkipped() {
+        testBook.setContentHash(BookService.fingerprint(externalBookDTO));
+        feed(Arrays.asList(externalBookDTO));
+        when(bookRepository.findByExternalIdIn(anyCollection())).thenReturn(Arrays.asList(testBook));
+        runTransactionsInline();
+        
+        BookSyncResultDTO result = bookService.syncBooksFromExternalApi();
+        
+        assertEquals(1, result.getSkipped());
+        assertEquals(0, result.getUpdated());
+        verify(bookRepository, times(2)).saveAll(Collections.emptyList());
+    }
+    
+    @Test
+    void testSyncBooksFromExternalApi_FeedNotModified() {
+        when(externalBookService.streamAllBooks(anyInt(), anyBoolean(), any())).thenReturn(false);
+        
+        BookSyncResultDTO result = bookService.syncBooksFromExternalApi();
+        
+        assertTrue(result.isNotModified());
+        assertEquals(0, result.getFetched());
+        verifyNoInteractions(bookRepository, transactionTemplate);
+    }
+    
+    @Test
+    void testFingerprint_IgnoresPriceScale() {
+        ExternalBookDTO same = new ExternalBookDTO(258027L, null, null, "The Lord of the Rings", null, null,
+                new BigDecimal("15.990"));
+        ExternalBookDTO changed = new ExternalBookDTO(258027L, null, null, "The Lord of the Rings", null, null,
+                new BigDecimal("16.99"));
+        
+        assertEquals(BookService.fingerprint(externalBookDTO), BookService.fingerprint(same));
+        assertNotEquals(BookService.fingerprint(externalBookDTO), BookService.fingerprint(changed));
+    }
+    
+    @Test
+    void testSyncBooksFromExternalApi_CommitsPerChunk() {
+        ReflectionTestUtils.setField(bookService, "syncChunkSize", 2);
+        List<ExternalBookDTO> feed = Arrays.asList(
+                new ExternalBookDTO(1L, true, 1, "A", null, 2000, BigDecimal.ONE),
+                new ExternalBookDTO(2L, true, 1, "B", null, 2000, BigDecimal.ONE),
+                new ExternalBookDTO(3L, true, 1, "C", null, 2000, BigDecimal.ONE));
+        feed(feed);
+        when(bookRepository.findByExternalIdIn(anyCollection())).thenReturn(Collections.emptyList());
+        runTransactionsInline();
+        
+        BookSyncResultDTO result = bookService.syncBooksFromExternalApi();
+        
+        assertEquals(3, result.getInserted());
+        assertEquals(2, result.getChunks());
+        verify(externalBookService).streamAllBooks(eq(2), eq(true), any());
+        verify(transactionTemplate, times(2)).execute(any());
+        verify(bookRepository, times(2)).findByExternalIdIn(anyCollection());
+    }
+    
+    // Simula el feed en streaming entregando bloques del tamaño solicitado
+    @SuppressWarnings("unchecked")
+    private void feed(List<ExternalBookDTO> books) {
+        when(externalBookService.streamAllBooks(anyInt(), anyBoolean(), any())).thenAnswer(invocation -> {
+            int chunkSize = invocation.getArgument(0);
+            Consumer<List<ExternalBookDTO>> consumer = invocation.getArgument(2);
+            for (int from = 0; from < books.size(); from += chunkSize) {
+                consumer.accept(books.subList(from, Math.min(from + chunkSize, books.size())));
+            }
+            return true;
+        });
+    }
+    
+    private void runTransactionsInline() {
+        doAnswer(invocation -> ((TransactionCallback<?>) invocation.getArgument(0)).doInTransaction(null))
+                .when(transactionTemplate).execute(any());
+    }
+    
+    @Test
+    void testSyncBooksFromExternalApi_RetriesChunkOnVersionConflict() {
+        feed(List.of(externalBookDTO));
+        // Cada intento vuelve a leer la fila en su propia transacción
+        when(bookRepository.findByExternalIdIn(anyCollection())).thenAnswer(invocation -> {
+            Book existing = new Book();
+            existing.setExternalId(258027L);
+            existing.setTitle("Título anterior");
+            existing.setStockQuantity(10);
+            existing.setAvailableQuantity(10);
+            return List.of(existing);
+        });
+        // El primer commit choca con una reserva concurrente sobre el mismo libro
+        doAnswer(invocation -> {
+            ((TransactionCallback<?>) invocation.getArgument(0)).doInTransaction(null);
+            throw new ObjectOptimisticLockingFailureException(Book.class, 258027L);
+        }).doAnswer(invocation -> ((TransactionCallback<?>) invocation.getArgument(0)).doInTransaction(null))
+                .when(transactionTemplate).execute(any());
+        
+        BookSyncResultDTO result = bookService.syncBooksFromExternalApi();
+        
+        assertEquals(1, result.getUpdated());
+        assertEquals(1, result.getFetched());
+        assertEquals(1, result.getChunks());
+        verify(bookRepository, times(2)).findByExternalIdIn(anyCollection());
     }
     
     @Test
@@ -86,20 +226,43 @@ class BookServiceTest {
         assertEquals(2, result.size());
     }
     
+    @Test
+    void testGetAllBooks_StockFromInventoryEngine() {
+        Book book2 = new Book();
+        book2.setExternalId(140081L);
+        book2.setTitle("The Hitchhiker's Guide to the Galaxy");
+        book2.setStockQuantity(15);
+        book2.setAvailableQuantity(12);
+        
+        when(bookRepository.findAll()).thenReturn(Arrays.asList(testBook, book2));
+        when(inventoryEngine.peekStock(258027L)).thenReturn(Optional.of(stock(10, 2)));
+        when(inventoryEngine.peekStock(140081L)).thenReturn(Optional.empty());
+        
+        List<BookResponseDTO> result = bookService.getAllBooks();
+        
+        assertEquals(2, result.get(0).getAvailableQuantity());
+        assertEquals(12, result.get(1).getAvailableQuantity());
+        assertEquals(15, result.get(1).getStockQuantity());
+    }
+    
     @Test
     void testGetBookByExternalId_Success() {
-        when(bookRepository.findByExternalId(258027L)).thenReturn(Optional.of(testBook));
+        when(bookCatalogCache.get(258027L)).thenReturn(Optional.of(BookCatalogCache.CatalogEntry.of(testBook)));
+        when(inventoryEngine.getStock(258027L)).thenReturn(Optional.of(stock(10, 5)));
         
         BookResponseDTO result = bookService.getBookByExternalId(258027L);
         
         assertNotNull(result);
         assertEquals(testBook.getExternalId(), result.getExternalId());
         assertEquals(testBook.getTitle(), result.getTitle());
+        assertEquals(10, result.getStockQuantity());
+        assertEquals(5, result.getAvailableQuantity());
+        verify(bookRepository, never()).findByExternalId(any());
     }
     
     @Test
     void testGetBookByExternalId_NotFound() {
-        when(bookRepository.findByExternalId(258027L)).thenReturn(Optional.empty());
+        when(bookCatalogCache.get(258027L)).thenReturn(Optional.empty());
         
         assertThrows(RuntimeException.class, () -> {
             bookService.getBookByExternalId(258027L);
@@ -115,6 +278,8 @@ class BookServiceTest {
         
         assertNotNull(result);
         verify(bookRepository, times(1)).save(any(Book.class));
+        verify(bookCatalogCache).invalidate(258027L);
+        verify(inventoryEngine).stockChanged(258027L);
     }
     
     @Test
@@ -131,23 +296,44 @@ class BookServiceTest {
     
     @Test
     void testDecreaseAvailableQuantity_Success() {
-        when(bookRepository.findByExternalId(258027L)).thenReturn(Optional.of(testBook));
-        when(bookRepository.save(any(Book.class))).thenReturn(testBook);
+        when(inventoryEngine.tryReserve(258027L)).thenReturn(true);
         
         bookService.decreaseAvailableQuantity(258027L);
         
-        verify(bookRepository, times(1)).save(any(Book.class));
+        verify(inventoryEngine, times(1)).tryReserve(258027L);
+        verify(bookRepository, never()).save(any(Book.class));
     }
     
     @Test
     void testDecreaseAvailableQuantity_NoStock() {
-        testBook.setAvailableQuantity(0);
-        
-        when(bookRepository.findByExternalId(258027L)).thenReturn(Optional.of(testBook));
+        when(inventoryEngine.tryReserve(258027L)).thenReturn(false);
         
         assertThrows(RuntimeException.class, () -> {
             bookService.decreaseAvailableQuantity(258027L);
         });
     }
+    
+    @Test
+    void testIncreaseAvailableQuantity_AtFullStock() {
+        when(inventoryEngine.tryRelease(258027L)).thenReturn(false);
+        
+        RuntimeException ex = assertThrows(RuntimeException.class, () -> {
+            bookService.increaseAvailableQuantity(258027L);
+        });
+        assertEquals("La cantidad disponible no puede exceder el stock", ex.getMessage());
+    }
+    
+    private static BookStockView stock(int stockQuantity, int availableQuantity) {
+        return new BookStockView() {
+            @Override
+            public Integer getStockQuantity() {
+                return stockQuantity;
+            }
+            
+            @Override
+            public Integer getAvailableQuantity() {
+                return availableQuantity;
+            }
+        };
+    }
 }
-
@@ -0,0 +1,162 @@
+package com.example.libreria.service;
+
+import com.example.libreria.dto.BookSyncResultDTO;
+import com.example.libreria.dto.ExternalBookDTO;
+import com.example.libreria.model.Book;
+import com.example.libreria.repository.BookRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.retry.support.RetryTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class BookSnapshotServiceTest {
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @TempDir
+    private Path tempDir;
+
+    private BookService bookService;
+    private BookSnapshotService bookSnapshotService;
+
+    @BeforeEach
+    void setUp() {
+        bookRepository.deleteAll();
+        bookService = new BookService(bookRepository, mock(ExternalBookService.class), transactionTemplate,
+                mock(BookCatalogCache.class), mock(InventoryEngine.class), new RetryTemplate());
+        ReflectionTestUtils.setField(bookService, "syncChunkSize", 100);
+        bookSnapshotService = new BookSnapshotService(bookRepository, bookService, transactionTemplate, new ObjectMapper());
+    }
+
+    @Test
+    void testWriteAndLoad_CompressedRoundTrip() throws IOException {
+        Path snapshot = tempDir.resolve("books.json.gz");
+        ReflectionTestUtils.setField(bookSnapshotService, "snapshotPath", snapshot);
+        bookService.importChunk(catalog(1200), new BookSyncResultDTO());
+
+        assertEquals(1200, bookSnapshotService.writeSnapshot());
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(snapshot))) {
+            assertEquals('[', in.read());
+        }
+        assertEquals(List.of(snapshot), listFiles());
+
+        bookRepository.deleteAll();
+        BookSyncResultDTO result = bookSnapshotService.loadSnapshot(snapshot);
+
+        assertEquals(1200, result.getInserted());
+        assertEquals(12, result.getChunks());
+        assertEquals(1200, bookRepository.count());
+        Book book = transactionTemplate.execute(status -> {
+            Book loaded = bookRepository.findByExternalId(777L).orElseThrow();
+            loaded.getAuthorName().size();
+            return loaded;
+        });
+        assertEquals("Book 777", book.getTitle());
+        assertEquals(List.of("Author 777", "Coauthor"), book.getAuthorName());
+        assertEquals(0, new BigDecimal("7.77").compareTo(book.getPrice()));
+    }
+
+    @Test
+    void testWriteAndLoad_PlainJsonIsMemoryMapped() throws IOException {
+        Path snapshot = tempDir.resolve("books.json");
+        ReflectionTestUtils.setField(bookSnapshotService, "snapshotPath", snapshot);
+        bookService.importChunk(catalog(50), new BookSyncResultDTO());
+        bookSnapshotService.writeSnapshot();
+        assertTrue(Files.readString(snapshot).startsWith("[{\"id\":1,"));
+
+        bookRepository.deleteAll();
+        bookSnapshotService.loadSnapshot(snapshot);
+
+        assertEquals(50, bookRepository.count());
+    }
+
+    @Test
+    void testLoadOnStartup_FallsBackToSeedWhenNoSnapshot() {
+        ReflectionTestUtils.setField(bookSnapshotService, "snapshotPath", tempDir.resolve("missing.json.gz"));
+        ReflectionTestUtils.setField(bookSnapshotService, "seedPath", "books-db.json");
+
+        bookSnapshotService.loadOnStartup();
+
+        assertEquals(4, bookRepository.count());
+        assertTrue(bookRepository.existsByExternalId(258027L));
+    }
+
+    @Test
+    void testLoadOnStartup_SkippedWhenBooksAlreadyLoaded() throws IOException {
+        Path snapshot = tempDir.resolve("books.json");
+        Files.writeString(snapshot, "[{\"id\":1,\"title\":\"Book 1\",\"price\":1.00}]");
+        ReflectionTestUtils.setField(bookSnapshotService, "snapshotPath", snapshot);
+        bookService.importChunk(catalog(3), new BookSyncResultDTO());
+
+        bookSnapshotService.loadOnStartup();
+
+        assertEquals("Book 1", bookRepository.findByExternalId(1L).orElseThrow().getTitle());
+        assertEquals(3, bookRepository.count());
+    }
+
+    @Test
+    void testLoadOnStartup_CorruptSnapshotDoesNotFailStartup() throws IOException {
+        Path snapshot = tempDir.resolve("books.json");
+        Files.writeString(snapshot, "{\"not\": \"an array\"}");
+        ReflectionTestUtils.setField(bookSnapshotService, "snapshotPath", snapshot);
+
+        assertDoesNotThrow(() -> bookSnapshotService.loadOnStartup());
+        assertEquals(0, bookRepository.count());
+    }
+
+    @Test
+    void testOnSyncCompleted_NotModifiedKeepsExistingSnapshot() throws IOException {
+        Path snapshot = tempDir.resolve("books.json");
+        Files.writeString(snapshot, "[]");
+        ReflectionTestUtils.setField(bookSnapshotService, "snapshotPath", snapshot);
+        bookService.importChunk(catalog(3), new BookSyncResultDTO());
+        BookSyncResultDTO notModified = new BookSyncResultDTO();
+        notModified.setNotModified(true);
+
+        bookSnapshotService.onSyncCompleted(notModified);
+        assertEquals("[]", Files.readString(snapshot));
+
+        bookSnapshotService.onSyncCompleted(new BookSyncResultDTO());
+        assertNotEquals("[]", Files.readString(snapshot));
+    }
+
+    private List<Path> listFiles() throws IOException {
+        try (var files = Files.list(tempDir)) {
+            return files.toList();
+        }
+    }
+
+    private List<ExternalBookDTO> catalog(int count) {
+        List<ExternalBookDTO> books = new ArrayList<>();
+        for (long id = 1; id <= count; id++) {
+            books.add(new ExternalBookDTO(id, id % 2 == 0, (int) id, "Book " + id,
+                    List.of("Author " + id, "Coauthor"), 2000, new BigDecimal(id).movePointLeft(2)));
+        }
+        return books;
+    }
+}
@@ -0,0 +1,213 @@
+package com.example.libreria.service;
+
+import com.example.libreria.dto.BookSyncJobDTO;
+import com.example.libreria.dto.BookSyncResultDTO;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class BookSyncJobServiceTest {
+
+    @Mock
+    private BookService bookService;
+
+    @Mock
+    private SyncLeaseService syncLeaseService;
+
+    @Mock
+    private BookSnapshotService bookSnapshotService;
+
+    private MeterRegistry meterRegistry;
+    private BookSyncJobService bookSyncJobService;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        bookSyncJobService = new BookSyncJobService(bookService, syncLeaseService, bookSnapshotService, meterRegistry);
+        bookSyncJobService.registerMetrics();
+        lenient().when(syncLeaseService.tryAcquire(anyString(), any())).thenReturn(true);
+        lenient().when(syncLeaseService.renew(anyString(), any())).thenReturn(true);
+    }
+
+    @AfterEach
+    void tearDown() {
+        bookSyncJobService.shutdown();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testStartSync_CoalescesConcurrentTriggers() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(bookService.syncBooksFromExternalApi(anyBoolean(), any())).thenAnswer(invocation -> {
+            Consumer<BookSyncResultDTO> listener = invocation.getArgument(1);
+            listener.accept(new BookSyncResultDTO(100, 60, 40, 0, false, 1, 10));
+            started.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return new BookSyncResultDTO(200, 120, 80, 0, false, 2, 20);
+        });
+
+        BookSyncJobDTO first = bookSyncJobService.startSync(false);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        BookSyncJobDTO second = bookSyncJobService.startSync(false);
+
+        assertEquals(first.getJobId(), second.getJobId());
+        BookSyncJobDTO running = bookSyncJobService.getJob(first.getJobId());
+        assertEquals(BookSyncJobDTO.JobStatus.RUNNING, running.getStatus());
+        assertEquals(100, running.getFetched());
+
+        release.countDown();
+        BookSyncJobDTO finished = awaitFinished(first.getJobId());
+        assertEquals(BookSyncJobDTO.JobStatus.COMPLETED, finished.getStatus());
+        assertEquals(200, finished.getFetched());
+        assertEquals(120, finished.getInserted());
+        assertNotNull(finished.getFinishedAt());
+        verify(bookService, times(1)).syncBooksFromExternalApi(anyBoolean(), any());
+        // Después del bloque y antes de copiar el snapshot
+        verify(syncLeaseService, times(2)).renew(anyString(), any());
+        verify(syncLeaseService, timeout(1000)).release(anyString());
+        verify(bookSnapshotService).onSyncCompleted(any());
+    }
+
+    @Test
+    void testStartSync_ForcedRequestQueuesBehindRunningUnforcedJob() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(bookService.syncBooksFromExternalApi(eq(false), any())).thenAnswer(invocation -> {
+            started.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return new BookSyncResultDTO();
+        });
+        when(bookService.syncBooksFromExternalApi(eq(true), any())).thenReturn(new BookSyncResultDTO());
+
+        BookSyncJobDTO running = bookSyncJobService.startSync(false);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        BookSyncJobDTO forced = bookSyncJobService.startSync(true);
+        BookSyncJobDTO coalesced = bookSyncJobService.startSync(false);
+
+        assertNotEquals(running.getJobId(), forced.getJobId());
+        assertTrue(forced.isForce());
+        assertEquals(BookSyncJobDTO.JobStatus.QUEUED, forced.getStatus());
+        assertEquals(forced.getJobId(), coalesced.getJobId());
+
+        release.countDown();
+        assertEquals(BookSyncJobDTO.JobStatus.COMPLETED, awaitFinished(running.getJobId()).getStatus());
+        assertEquals(BookSyncJobDTO.JobStatus.COMPLETED, awaitFinished(forced.getJobId()).getStatus());
+        verify(bookService, times(1)).syncBooksFromExternalApi(eq(false), any());
+        verify(bookService, times(1)).syncBooksFromExternalApi(eq(true), any());
+    }
+
+    @Test
+    void testStartSync_SkippedWhenLeaseHeldElsewhere() throws Exception {
+        when(syncLeaseService.tryAcquire(anyString(), any())).thenReturn(false);
+
+        BookSyncJobDTO job = bookSyncJobService.startSync(false);
+        BookSyncJobDTO finished = awaitFinished(job.getJobId());
+
+        assertEquals(BookSyncJobDTO.JobStatus.SKIPPED, finished.getStatus());
+        verifyNoInteractions(bookService);
+        verify(syncLeaseService, never()).release(anyString());
+    }
+
+    @Test
+    void testMetrics_StalenessAndLastDurationAfterSuccess() throws Exception {
+        assertTrue(Double.isNaN(meterRegistry.get("library.books.sync.staleness").gauge().value()));
+        when(bookService.syncBooksFromExternalApi(anyBoolean(), any())).thenReturn(new BookSyncResultDTO());
+
+        awaitFinished(bookSyncJobService.startSync(false).getJobId());
+
+        verify(syncLeaseService, timeout(1000)).release(anyString());
+        awaitMeter("completed");
+        assertFalse(Double.isNaN(meterRegistry.get("library.books.sync.staleness").gauge().value()));
+        assertFalse(Double.isNaN(meterRegistry.get("library.books.sync.last.duration").gauge().value()));
+    }
+
+    @Test
+    void testStartSync_NewJobAfterPreviousFinished() throws Exception {
+        when(bookService.syncBooksFromExternalApi(anyBoolean(), any())).thenReturn(new BookSyncResultDTO());
+
+        BookSyncJobDTO first = bookSyncJobService.startSync(false);
+        awaitFinished(first.getJobId());
+        BookSyncJobDTO second = bookSyncJobService.startSync(true);
+
+        assertNotEquals(first.getJobId(), second.getJobId());
+        assertTrue(second.isForce());
+    }
+
+    @Test
+    void testStartSync_FailureIsReported() throws Exception {
+        when(bookService.syncBooksFromExternalApi(anyBoolean(), any()))
+                .thenThrow(new RuntimeException("Error al obtener libros de la API externa"));
+
+        BookSyncJobDTO job = bookSyncJobService.startSync(false);
+        BookSyncJobDTO finished = awaitFinished(job.getJobId());
+
+        assertEquals(BookSyncJobDTO.JobStatus.FAILED, finished.getStatus());
+        assertEquals("Error al obtener libros de la API externa", finished.getError());
+        verifyNoInteractions(bookSnapshotService);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testStartSync_AbortsWhenLeaseIsLost() throws Exception {
+        when(syncLeaseService.renew(anyString(), any())).thenReturn(false);
+        when(bookService.syncBooksFromExternalApi(anyBoolean(), any())).thenAnswer(invocation -> {
+            Consumer<BookSyncResultDTO> listener = invocation.getArgument(1);
+            listener.accept(new BookSyncResultDTO(100, 100, 0, 0, false, 1, 10));
+            listener.accept(new BookSyncResultDTO(200, 200, 0, 0, false, 2, 20));
+            return new BookSyncResultDTO(200, 200, 0, 0, false, 2, 20);
+        });
+
+        BookSyncJobDTO finished = awaitFinished(bookSyncJobService.startSync(false).getJobId());
+
+        assertEquals(BookSyncJobDTO.JobStatus.FAILED, finished.getStatus());
+        assertEquals(100, finished.getFetched());
+        verify(syncLeaseService, times(1)).renew(anyString(), any());
+        verifyNoInteractions(bookSnapshotService);
+    }
+
+    @Test
+    void testGetJob_NotFound() {
+        assertThrows(RuntimeException.class, () -> bookSyncJobService.getJob("missing"));
+    }
+
+    private void awaitMeter(String outcome) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (meterRegistry.find("library.books.sync").tag("outcome", outcome).timer() == null) {
+            if (System.currentTimeMillis() > deadline) {
+                fail("No se registró la métrica de sincronización");
+            }
+            Thread.sleep(10);
+        }
+    }
+
+    private BookSyncJobDTO awaitFinished(String jobId) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (System.currentTimeMillis() < deadline) {
+            BookSyncJobDTO job = bookSyncJobService.getJob(jobId);
+            if (job.getFinishedAt() != null) {
+                return job;
+            }
+            Thread.sleep(10);
+        }
+        fail("El trabajo de sincronización no terminó a tiempo");
+        return null;
+    }
+}
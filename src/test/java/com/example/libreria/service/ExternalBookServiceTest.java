@@ -0,0 +1,341 @@
+package com.example.libreria.service;
+
+import com.example.libreria.dto.ExternalBookBatchResultDTO;
+import com.example.libreria.dto.ExternalBookDTO;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadConfig;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.retry.Retry;
+import io.github.resilience4j.retry.RetryConfig;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.client.ExpectedCount;
+import org.springframework.test.web.client.MockRestServiceServer;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
+
+import java.net.SocketTimeoutException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.header;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.headerDoesNotExist;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.method;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.requestTo;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withServerError;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withStatus;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withSuccess;
+
+class ExternalBookServiceTest {
+
+    private static final String URL = "http://books.test/books";
+
+    private MockRestServiceServer server;
+    private ExternalBookService externalBookService;
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        // Sin reintentos por defecto para que cada expectativa corresponda a un único pedido
+        setUpService(CircuitBreaker.ofDefaults("test"),
+                Retry.of("test", RetryConfig.custom().maxAttempts(1).build()),
+                Bulkhead.ofDefaults("test"));
+    }
+
+    private void setUpService(CircuitBreaker circuitBreaker, Retry retry, Bulkhead bulkhead) {
+        RestTemplate restTemplate = new RestTemplate();
+        server = MockRestServiceServer.bindTo(restTemplate).ignoreExpectOrder(true).build();
+        meterRegistry = new SimpleMeterRegistry();
+        externalBookService = new ExternalBookService(restTemplate, restTemplate, new ObjectMapper(),
+                circuitBreaker, retry, bulkhead, meterRegistry, 4);
+        ReflectionTestUtils.setField(externalBookService, "externalApiUrl", URL);
+    }
+
+    @Test
+    void testStreamAllBooks_DeliversFixedSizeChunks() {
+        server.expect(requestTo(URL))
+                .andExpect(method(HttpMethod.GET))
+                .andRespond(withSuccess(feedJson(5), MediaType.APPLICATION_JSON));
+
+        List<Integer> chunkSizes = new ArrayList<>();
+        List<ExternalBookDTO> received = new ArrayList<>();
+        boolean modified = externalBookService.streamAllBooks(2, chunk -> {
+            chunkSizes.add(chunk.size());
+            received.addAll(chunk);
+        });
+
+        assertTrue(modified);
+        assertEquals(5, received.size());
+        assertEquals(List.of(2, 2, 1), chunkSizes);
+        assertEquals(1L, received.get(0).getId());
+        assertEquals("Book 5", received.get(4).getTitle());
+        assertEquals(List.of("Author 3"), received.get(2).getAuthorName());
+        server.verify();
+    }
+
+    @Test
+    void testStreamAllBooks_EmptyArray() {
+        server.expect(requestTo(URL)).andRespond(withSuccess("[]", MediaType.APPLICATION_JSON));
+
+        List<List<ExternalBookDTO>> chunks = new ArrayList<>();
+        boolean modified = externalBookService.streamAllBooks(10, chunks::add);
+
+        assertTrue(modified);
+        assertTrue(chunks.isEmpty());
+    }
+
+    @Test
+    void testStreamAllBooks_ConditionalFetchNotModified() {
+        server.expect(requestTo(URL))
+                .andRespond(withSuccess(feedJson(1), MediaType.APPLICATION_JSON)
+                        .header(HttpHeaders.ETAG, "\"v1\"")
+                        .header(HttpHeaders.LAST_MODIFIED, "Wed, 01 Oct 2025 10:00:00 GMT"));
+        server.expect(requestTo(URL))
+                .andExpect(header(HttpHeaders.IF_NONE_MATCH, "\"v1\""))
+                .andExpect(header(HttpHeaders.IF_MODIFIED_SINCE, "Wed, 01 Oct 2025 10:00:00 GMT"))
+                .andRespond(withStatus(HttpStatus.NOT_MODIFIED));
+
+        assertTrue(externalBookService.streamAllBooks(10, chunk -> { }));
+        List<List<ExternalBookDTO>> chunks = new ArrayList<>();
+        assertFalse(externalBookService.streamAllBooks(10, chunks::add));
+        assertTrue(chunks.isEmpty());
+        server.verify();
+    }
+
+    @Test
+    void testStreamAllBooks_UnconditionalFetchOmitsValidators() {
+        server.expect(requestTo(URL))
+                .andRespond(withSuccess(feedJson(1), MediaType.APPLICATION_JSON).header(HttpHeaders.ETAG, "\"v1\""));
+        server.expect(requestTo(URL))
+                .andExpect(headerDoesNotExist(HttpHeaders.IF_NONE_MATCH))
+                .andRespond(withSuccess(feedJson(1), MediaType.APPLICATION_JSON));
+
+        assertTrue(externalBookService.streamAllBooks(10, chunk -> { }));
+        assertTrue(externalBookService.streamAllBooks(10, false, chunk -> { }));
+        server.verify();
+    }
+
+    @Test
+    void testStreamAllBooks_ValidatorsNotStoredWhenProcessingFails() {
+        server.expect(requestTo(URL))
+                .andRespond(withSuccess(feedJson(1), MediaType.APPLICATION_JSON).header(HttpHeaders.ETAG, "\"v1\""));
+        server.expect(requestTo(URL))
+                .andExpect(headerDoesNotExist(HttpHeaders.IF_NONE_MATCH))
+                .andRespond(withSuccess(feedJson(1), MediaType.APPLICATION_JSON));
+
+        assertThrows(IllegalStateException.class, () -> externalBookService.streamAllBooks(10, chunk -> {
+            throw new IllegalStateException("fallo al escribir");
+        }));
+        assertTrue(externalBookService.streamAllBooks(10, chunk -> { }));
+        server.verify();
+    }
+
+    @Test
+    void testStreamAllBooks_NotAnArray() {
+        server.expect(requestTo(URL)).andRespond(withSuccess("{\"id\": 1}", MediaType.APPLICATION_JSON));
+
+        assertThrows(RuntimeException.class, () -> externalBookService.streamAllBooks(10, chunk -> { }));
+    }
+
+    @Test
+    void testStreamAllBooks_ServerError() {
+        server.expect(requestTo(URL)).andRespond(withServerError());
+
+        assertThrows(RuntimeException.class, () -> externalBookService.streamAllBooks(10, chunk -> { }));
+    }
+
+    @Test
+    void testStreamAllBooks_RetriesConnectionButNotBody() {
+        setUpService(CircuitBreaker.ofDefaults("test"), fastRetry(3), Bulkhead.ofDefaults("test"));
+        server.expect(ExpectedCount.once(), requestTo(URL)).andRespond(withServerError());
+        server.expect(ExpectedCount.once(), requestTo(URL))
+                .andRespond(withSuccess("[{\"id\":1,\"title\":\"Book 1\"},{\"id\":2,\"ti",
+                        MediaType.APPLICATION_JSON));
+
+        List<Long> received = new ArrayList<>();
+        assertThrows(RuntimeException.class, () -> externalBookService.streamAllBooks(1,
+                chunk -> chunk.forEach(book -> received.add(book.getId()))));
+
+        // El 500 se reintentó; el feed cortado a mitad de lectura no, y el primer libro se entregó una sola vez
+        assertEquals(List.of(1L), received);
+        assertEquals(1, streamErrorCount("http"));
+        server.verify();
+    }
+
+    @Test
+    void testStreamAllBooks_ConsumerFailureIsNotAnApiFailure() {
+        CircuitBreaker circuitBreaker = CircuitBreaker.of("test", CircuitBreakerConfig.custom()
+                .slidingWindowSize(1)
+                .minimumNumberOfCalls(1)
+                .recordExceptions(RestClientException.class)
+                .build());
+        Bulkhead bulkhead = Bulkhead.of("test", BulkheadConfig.custom().maxConcurrentCalls(1).build());
+        setUpService(circuitBreaker, fastRetry(3), bulkhead);
+        server.expect(ExpectedCount.once(), requestTo(URL))
+                .andRespond(withSuccess(feedJson(4), MediaType.APPLICATION_JSON));
+
+        List<Integer> chunkSizes = new ArrayList<>();
+        IllegalStateException exception = assertThrows(IllegalStateException.class,
+                () -> externalBookService.streamAllBooks(2, chunk -> {
+                    // El bulkhead se liberó al recibir los encabezados, no al terminar la importación
+                    assertEquals(1, bulkhead.getMetrics().getAvailableConcurrentCalls());
+                    chunkSizes.add(chunk.size());
+                    throw new IllegalStateException("fallo al escribir");
+                }));
+
+        assertEquals("fallo al escribir", exception.getMessage());
+        assertEquals(List.of(2), chunkSizes);
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+        assertEquals(0, circuitBreaker.getMetrics().getNumberOfFailedCalls());
+        assertEquals(0, streamErrorCount("other"));
+        server.verify();
+    }
+
+    @Test
+    void testFetchBooksByIds_ReportsPartialFailures() {
+        server.expect(requestTo(URL + "/1")).andRespond(withSuccess(bookJson(1), MediaType.APPLICATION_JSON));
+        server.expect(requestTo(URL + "/2")).andRespond(withServerError());
+        server.expect(requestTo(URL + "/3")).andRespond(withSuccess(bookJson(3), MediaType.APPLICATION_JSON));
+
+        List<Long> streamed = new ArrayList<>();
+        ExternalBookBatchResultDTO result = externalBookService.fetchBooksByIds(
+                List.of(1L, 2L, 3L, 3L), book -> streamed.add(book.getId()));
+
+        assertEquals(3, result.getRequested());
+        assertEquals(2, result.getBooks().size());
+        assertTrue(streamed.containsAll(List.of(1L, 3L)));
+        assertEquals(Set.of(2L), result.getFailures().keySet());
+        server.verify();
+    }
+
+    @Test
+    void testFetchBooksByIds_ReportsClientTimeouts() {
+        // Lo que lanza el cliente HTTP cuando la respuesta supera bulk.request-timeout
+        server.expect(requestTo(URL + "/1")).andRespond(request -> {
+            throw new SocketTimeoutException("Read timed out");
+        });
+
+        ExternalBookBatchResultDTO result = externalBookService.fetchBooksByIds(List.of(1L));
+
+        assertTrue(result.getBooks().isEmpty());
+        assertEquals("Tiempo de espera agotado al consultar la API externa", result.getFailures().get(1L));
+    }
+
+    @Test
+    void testFetchBookById_RetriesTransientServerErrors() {
+        setUpService(CircuitBreaker.ofDefaults("test"), fastRetry(3), Bulkhead.ofDefaults("test"));
+        server.expect(ExpectedCount.twice(), requestTo(URL + "/1")).andRespond(withServerError());
+        server.expect(requestTo(URL + "/1")).andRespond(withSuccess(bookJson(1), MediaType.APPLICATION_JSON));
+
+        ExternalBookDTO book = externalBookService.fetchBookById(1L);
+
+        assertEquals("Book 1", book.getTitle());
+        server.verify();
+    }
+
+    @Test
+    void testFetchBookById_ClientErrorIsNotRetried() {
+        setUpService(CircuitBreaker.ofDefaults("test"), fastRetry(3), Bulkhead.ofDefaults("test"));
+        server.expect(ExpectedCount.once(), requestTo(URL + "/404")).andRespond(withStatus(HttpStatus.NOT_FOUND));
+
+        assertThrows(RuntimeException.class, () -> externalBookService.fetchBookById(404L));
+        server.verify();
+    }
+
+    @Test
+    void testFetchBookById_OpenCircuitFailsFast() {
+        CircuitBreaker circuitBreaker = CircuitBreaker.of("test", CircuitBreakerConfig.custom()
+                .slidingWindowSize(2)
+                .minimumNumberOfCalls(2)
+                .waitDurationInOpenState(Duration.ofMinutes(1))
+                .build());
+        setUpService(circuitBreaker, Retry.of("test", RetryConfig.custom().maxAttempts(1).build()),
+                Bulkhead.ofDefaults("test"));
+        server.expect(ExpectedCount.twice(), requestTo(URL + "/1")).andRespond(withServerError());
+
+        assertThrows(RuntimeException.class, () -> externalBookService.fetchBookById(1L));
+        assertThrows(RuntimeException.class, () -> externalBookService.fetchBookById(1L));
+        RuntimeException exception = assertThrows(RuntimeException.class,
+                () -> externalBookService.fetchBookById(1L));
+
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+        assertEquals("La API externa de libros no está disponible temporalmente", exception.getMessage());
+        assertEquals(2.0, errorCount("http"));
+        assertEquals(1.0, errorCount("circuit_open"));
+        // El tercer pedido no llegó a la API
+        server.verify();
+    }
+
+    @Test
+    void testFetchBookById_FullBulkheadRejectsCall() {
+        Bulkhead bulkhead = Bulkhead.of("test", BulkheadConfig.custom()
+                .maxConcurrentCalls(1)
+                .maxWaitDuration(Duration.ZERO)
+                .build());
+        setUpService(CircuitBreaker.ofDefaults("test"),
+                Retry.of("test", RetryConfig.custom().maxAttempts(1).build()), bulkhead);
+        assertTrue(bulkhead.tryAcquirePermission());
+
+        RuntimeException exception = assertThrows(RuntimeException.class,
+                () -> externalBookService.fetchBookById(1L));
+
+        assertEquals("Demasiadas llamadas concurrentes a la API externa de libros", exception.getMessage());
+        assertEquals(1.0, errorCount("bulkhead_full"));
+        bulkhead.onComplete();
+        server.verify();
+    }
+
+    private double streamErrorCount(String reason) {
+        Counter counter = meterRegistry.find("library.external.books.errors")
+                .tags("operation", "stream", "reason", reason)
+                .counter();
+        return counter == null ? 0.0 : counter.count();
+    }
+
+    private double errorCount(String reason) {
+        Counter counter = meterRegistry.find("library.external.books.errors")
+                .tags("operation", "fetch_by_id", "reason", reason)
+                .counter();
+        return counter == null ? 0.0 : counter.count();
+    }
+
+    private Retry fastRetry(int maxAttempts) {
+        return Retry.of("test", RetryConfig.custom()
+                .maxAttempts(maxAttempts)
+                .waitDuration(Duration.ofMillis(1))
+                .retryOnException(e -> e instanceof RestClientException && !(e instanceof HttpClientErrorException))
+                .build());
+    }
+
+    private String bookJson(long id) {
+        return "{\"id\":" + id + ",\"title\":\"Book " + id + "\",\"price\":10.50}";
+    }
+
+    private String feedJson(int count) {
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 1; i <= count; i++) {
+            if (i > 1) {
+                json.append(',');
+            }
+            json.append("{\"id\":").append(i)
+                    .append(",\"has_fulltext\":true,\"edition_count\":").append(i)
+                    .append(",\"title\":\"Book ").append(i)
+                    .append("\",\"author_name\":[\"Author ").append(i)
+                    .append("\"],\"first_publish_year\":2000,\"price\":10.50}");
+        }
+        return json.append(']').toString();
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.libreria.service;
+
+import com.example.libreria.model.Reservation;
+import com.example.libreria.repository.BookRepository;
+import com.example.libreria.repository.InventoryTotalsView;
+import com.example.libreria.repository.ReservationRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class LibraryGaugesTest {
+
+    @Mock
+    private BookRepository bookRepository;
+
+    @Mock
+    private ReservationRepository reservationRepository;
+
+    private MeterRegistry meterRegistry;
+    private LibraryGauges libraryGauges;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        libraryGauges = new LibraryGauges(bookRepository, reservationRepository, meterRegistry);
+        libraryGauges.registerMetrics();
+    }
+
+    @Test
+    void testRefresh_PublishesInventoryAndOpenReservations() {
+        when(bookRepository.sumInventory()).thenReturn(totals(120L, 95L));
+        when(reservationRepository.countByStatusAndActualReturnDateIsNull(Reservation.ReservationStatus.ACTIVE))
+                .thenReturn(20L);
+        when(reservationRepository.countByStatusAndActualReturnDateIsNull(Reservation.ReservationStatus.OVERDUE))
+                .thenReturn(5L);
+
+        libraryGauges.refresh();
+
+        assertEquals(120.0, gauge("library.inventory.copies", "state", "stock"));
+        assertEquals(95.0, gauge("library.inventory.copies", "state", "available"));
+        assertEquals(20.0, gauge("library.reservations.open", "status", "active"));
+        assertEquals(5.0, gauge("library.reservations.open", "status", "overdue"));
+    }
+
+    @Test
+    void testRefresh_KeepsLastValuesWhenQueryFails() {
+        when(bookRepository.sumInventory()).thenReturn(totals(120L, 95L))
+                .thenThrow(new RuntimeException("Base no disponible"));
+        when(reservationRepository.countByStatusAndActualReturnDateIsNull(any())).thenReturn(3L);
+
+        libraryGauges.refresh();
+        libraryGauges.refresh();
+
+        assertEquals(120.0, gauge("library.inventory.copies", "state", "stock"));
+        assertEquals(95.0, gauge("library.inventory.copies", "state", "available"));
+        assertEquals(3.0, gauge("library.reservations.open", "status", "overdue"));
+    }
+
+    private double gauge(String name, String tagKey, String tagValue) {
+        return meterRegistry.get(name).tag(tagKey, tagValue).gauge().value();
+    }
+
+    private InventoryTotalsView totals(Long stock, Long available) {
+        return new InventoryTotalsView() {
+            @Override
+            public Long getStockQuantity() {
+                return stock;
+            }
+
+            @Override
+            public Long getAvailableQuantity() {
+                return available;
+            }
+        };
+    }
+}
@@ -0,0 +1,234 @@
+package com.example.libreria.service;
+
+import com.example.libreria.model.Book;
+import com.example.libreria.repository.BookRepository;
+import com.example.libreria.repository.InventoryCheckpointRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class MemoryInventoryEngineTest {
+
+    private static final long BOOK_ID = 258027L;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private InventoryCheckpointRepository checkpointRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @TempDir
+    private Path journalDir;
+
+    private final List<MemoryInventoryEngine> engines = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        checkpointRepository.deleteAll();
+        bookRepository.deleteAll();
+        Book book = new Book();
+        book.setExternalId(BOOK_ID);
+        book.setTitle("The Lord of the Rings");
+        book.setPrice(new BigDecimal("15.99"));
+        book.setStockQuantity(5);
+        book.setAvailableQuantity(5);
+        bookRepository.save(book);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        for (MemoryInventoryEngine engine : engines) {
+            engine.shutdown();
+        }
+    }
+
+    @Test
+    void testTryReserveAndRelease_StayWithinStock() {
+        MemoryInventoryEngine engine = newEngine();
+
+        for (int i = 0; i < 5; i++) {
+            assertTrue(engine.tryReserve(BOOK_ID));
+        }
+        assertFalse(engine.tryReserve(BOOK_ID));
+        assertEquals(0, engine.getStock(BOOK_ID).orElseThrow().getAvailableQuantity());
+        // Nada llega a la base hasta el próximo volcado
+        assertEquals(5, availableInDatabase());
+
+        for (int i = 0; i < 5; i++) {
+            assertTrue(engine.tryRelease(BOOK_ID));
+        }
+        assertFalse(engine.tryRelease(BOOK_ID));
+        assertTrue(engine.getStock(999L).isEmpty());
+        assertThrows(RuntimeException.class, () -> engine.tryReserve(999L));
+    }
+
+    @Test
+    void testPeekStock_OnlyLoadedCellsAheadOfTheRow() {
+        MemoryInventoryEngine engine = newEngine();
+        assertTrue(engine.peekStock(BOOK_ID).isEmpty());
+
+        engine.tryReserve(BOOK_ID);
+
+        assertEquals(4, engine.peekStock(BOOK_ID).orElseThrow().getAvailableQuantity());
+        assertEquals(5, availableInDatabase());
+    }
+
+    @Test
+    void testReserve_PartialAndAllOrNothing() {
+        MemoryInventoryEngine engine = newEngine();
+
+        assertEquals(Map.of(), engine.reserve(Map.of(BOOK_ID, 6), false));
+        assertEquals(5, engine.getStock(BOOK_ID).orElseThrow().getAvailableQuantity());
+        assertEquals(Map.of(BOOK_ID, 5), engine.reserve(Map.of(BOOK_ID, 6), true));
+        assertEquals(0, engine.getStock(BOOK_ID).orElseThrow().getAvailableQuantity());
+
+        engine.flush();
+        assertEquals(0, availableInDatabase());
+        assertEquals(1L, checkpoint());
+
+        // Nunca por encima del stock, aunque se devuelvan más de los reservados
+        engine.releaseAll(Map.of(BOOK_ID, 7));
+        assertEquals(5, engine.getStock(BOOK_ID).orElseThrow().getAvailableQuantity());
+    }
+
+    @Test
+    void testFlush_WritesDeltasAndCheckpoint() throws IOException {
+        MemoryInventoryEngine engine = newEngine();
+        engine.tryReserve(BOOK_ID);
+        engine.tryReserve(BOOK_ID);
+        engine.tryReserve(BOOK_ID);
+        engine.tryRelease(BOOK_ID);
+
+        engine.flush();
+
+        assertEquals(3, availableInDatabase());
+        assertEquals(4L, checkpoint());
+        // Solo queda el segmento nuevo, vacío
+        assertEquals(List.of(0L), segmentSizes());
+    }
+
+    @Test
+    void testRecover_ReplaysMovementsNotYetFlushed() {
+        MemoryInventoryEngine crashed = newEngine();
+        crashed.tryReserve(BOOK_ID);
+        crashed.flush();
+        crashed.tryReserve(BOOK_ID);
+        crashed.tryReserve(BOOK_ID);
+        // Caída: sin volcado final; los dos últimos movimientos solo están en el journal
+
+        MemoryInventoryEngine restarted = newEngine();
+
+        assertEquals(2, availableInDatabase());
+        assertEquals(3L, checkpoint());
+        assertEquals(2, restarted.getStock(BOOK_ID).orElseThrow().getAvailableQuantity());
+        assertTrue(restarted.tryReserve(BOOK_ID));
+        restarted.flush();
+        assertEquals(1, availableInDatabase());
+        assertEquals(4L, checkpoint());
+    }
+
+    @Test
+    void testRecover_IgnoresTornRecord() throws IOException {
+        MemoryInventoryEngine crashed = newEngine();
+        crashed.tryReserve(BOOK_ID);
+        Path segment = segments().get(0);
+        // Registro a medio escribir al momento de la caída
+        Files.write(segment, new byte[]{1, 2, 3, 4, 5, 6, 7}, StandardOpenOption.APPEND);
+
+        newEngine();
+
+        assertEquals(4, availableInDatabase());
+        assertEquals(1L, checkpoint());
+    }
+
+    @Test
+    void testTryReserve_RolledBackTransactionGivesCopyBack() {
+        MemoryInventoryEngine engine = newEngine();
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+
+        transactionTemplate.executeWithoutResult(status -> {
+            assertTrue(engine.tryReserve(BOOK_ID));
+            status.setRollbackOnly();
+        });
+
+        assertEquals(5, engine.getStock(BOOK_ID).orElseThrow().getAvailableQuantity());
+        engine.flush();
+        assertEquals(5, availableInDatabase());
+    }
+
+    @Test
+    void testStockChanged_FlushesAndReloadsFromDatabase() {
+        MemoryInventoryEngine engine = newEngine();
+        engine.tryReserve(BOOK_ID);
+
+        engine.stockChanged(BOOK_ID);
+        assertEquals(4, availableInDatabase());
+        jdbcTemplate.update("UPDATE books SET stock_quantity = 10, available_quantity = 9 WHERE external_id = ?", BOOK_ID);
+        engine.stockChanged(BOOK_ID);
+
+        assertEquals(10, engine.getStock(BOOK_ID).orElseThrow().getStockQuantity());
+        assertEquals(9, engine.getStock(BOOK_ID).orElseThrow().getAvailableQuantity());
+    }
+
+    private MemoryInventoryEngine newEngine() {
+        MemoryInventoryEngine engine = new MemoryInventoryEngine(bookRepository, checkpointRepository, jdbcTemplate,
+                transactionManager, journalDir, false, Duration.ofHours(1));
+        try {
+            engine.recover();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        engines.add(engine);
+        return engine;
+    }
+
+    private int availableInDatabase() {
+        return bookRepository.findStockByExternalId(BOOK_ID).orElseThrow().getAvailableQuantity();
+    }
+
+    private Long checkpoint() {
+        return checkpointRepository.findById(MemoryInventoryEngine.CHECKPOINT_NAME).orElseThrow().getSequence();
+    }
+
+    private List<Path> segments() throws IOException {
+        try (var files = Files.list(journalDir)) {
+            return files.sorted().toList();
+        }
+    }
+
+    private List<Long> segmentSizes() throws IOException {
+        List<Long> sizes = new ArrayList<>();
+        for (Path segment : segments()) {
+            sizes.add(Files.size(segment));
+        }
+        return sizes;
+    }
+}
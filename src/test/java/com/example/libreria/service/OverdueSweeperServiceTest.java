@@ -0,0 +1,136 @@
+package com.example.libreria.service;
+
+import com.example.libreria.model.Book;
+import com.example.libreria.model.Reservation;
+import com.example.libreria.model.User;
+import com.example.libreria.repository.BookRepository;
+import com.example.libreria.repository.ReservationRepository;
+import com.example.libreria.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class OverdueSweeperServiceTest {
+
+    private static final LocalDate TODAY = LocalDate.of(2025, 6, 10);
+
+    @Autowired
+    private ReservationRepository reservationRepository;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private OverdueSweeperService sweeper;
+    private User user;
+    private Book book;
+
+    @BeforeEach
+    void setUp() {
+        reservationRepository.deleteAll();
+        bookRepository.deleteAll();
+        userRepository.deleteAll();
+        // Lotes de 2 para recorrer varias páginas con pocas filas
+        sweeper = new OverdueSweeperService(reservationRepository, jdbcTemplate,
+                new TransactionTemplate(transactionManager), 2);
+
+        user = new User();
+        user.setName("Juan Pérez");
+        user.setEmail("sweeper@example.com");
+        userRepository.save(user);
+        book = new Book();
+        book.setExternalId(258027L);
+        book.setTitle("The Lord of the Rings");
+        book.setPrice(new BigDecimal("16.00"));
+        book.setStockQuantity(10);
+        book.setAvailableQuantity(10);
+        bookRepository.save(book);
+    }
+
+    @Test
+    void testSweep_MarksOverdueAndAccruesFeeOncePerDay() {
+        Long late = save(TODAY.minusDays(3), Reservation.ReservationStatus.ACTIVE, null).getId();
+        Long later = save(TODAY.minusDays(1), Reservation.ReservationStatus.ACTIVE, null).getId();
+        Long alsoLate = save(TODAY.minusDays(3), Reservation.ReservationStatus.ACTIVE, null).getId();
+        Long dueToday = save(TODAY, Reservation.ReservationStatus.ACTIVE, null).getId();
+        Long returned = save(TODAY.minusDays(5), Reservation.ReservationStatus.RETURNED, TODAY.minusDays(6)).getId();
+
+        OverdueSweeperService.SweepResult first = sweeper.sweep(TODAY);
+
+        assertEquals(3, first.markedOverdue());
+        assertEquals(0, first.feesAccrued());
+        // 16.00 * 15% * 3 días
+        assertOverdue(late, "7.20", TODAY);
+        assertOverdue(alsoLate, "7.20", TODAY);
+        assertOverdue(later, "2.40", TODAY);
+        assertEquals(Reservation.ReservationStatus.ACTIVE, reservationRepository.findById(dueToday).orElseThrow().getStatus());
+        assertEquals(Reservation.ReservationStatus.RETURNED, reservationRepository.findById(returned).orElseThrow().getStatus());
+
+        // Repetir el mismo día (o retomar tras una caída) no vuelve a tocar nada
+        Long version = reservationRepository.findById(late).orElseThrow().getVersion();
+        assertEquals(new OverdueSweeperService.SweepResult(0, 0, 0), sweeper.sweep(TODAY));
+        assertEquals(version, reservationRepository.findById(late).orElseThrow().getVersion());
+
+        // Al día siguiente solo se recalculan las multas, y vence la que vencía hoy
+        OverdueSweeperService.SweepResult next = sweeper.sweep(TODAY.plusDays(1));
+        assertEquals(1, next.markedOverdue());
+        assertEquals(3, next.feesAccrued());
+        assertOverdue(late, "9.60", TODAY.plusDays(1));
+        assertOverdue(dueToday, "2.40", TODAY.plusDays(1));
+    }
+
+    @Test
+    void testSweep_LeavesReservationsReturnedLateAlone() {
+        Reservation returnedLate = save(TODAY.minusDays(10), Reservation.ReservationStatus.OVERDUE, TODAY.minusDays(8));
+        returnedLate.setLateFee(new BigDecimal("4.80"));
+        reservationRepository.save(returnedLate);
+
+        assertEquals(new OverdueSweeperService.SweepResult(0, 0, 0), sweeper.sweep(TODAY));
+        Reservation reloaded = reservationRepository.findById(returnedLate.getId()).orElseThrow();
+        assertEquals(0, new BigDecimal("4.80").compareTo(reloaded.getLateFee()));
+        assertNull(reloaded.getLateFeeAccruedOn());
+    }
+
+    private Reservation save(LocalDate expectedReturnDate, Reservation.ReservationStatus status, LocalDate actualReturnDate) {
+        Reservation reservation = new Reservation();
+        reservation.setUser(user);
+        reservation.setBook(book);
+        reservation.setRentalDays(7);
+        reservation.setStartDate(expectedReturnDate.minusDays(7));
+        reservation.setExpectedReturnDate(expectedReturnDate);
+        reservation.setActualReturnDate(actualReturnDate);
+        reservation.setDailyRate(new BigDecimal("16.00"));
+        reservation.setTotalFee(new BigDecimal("112.00"));
+        reservation.setStatus(status);
+        return reservationRepository.save(reservation);
+    }
+
+    private void assertOverdue(Long id, String lateFee, LocalDate accruedOn) {
+        Reservation reservation = reservationRepository.findById(id).orElseThrow();
+        assertEquals(Reservation.ReservationStatus.OVERDUE, reservation.getStatus());
+        assertNull(reservation.getActualReturnDate());
+        assertEquals(0, new BigDecimal(lateFee).compareTo(reservation.getLateFee()));
+        assertEquals(accruedOn, reservation.getLateFeeAccruedOn());
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.libreria.service;
+
+import com.example.libreria.dto.QueryDiagnosticsDTO;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QueryStatementRecorderTest {
+
+    private static final String SELECT_BOOK = "select b1_0.id,b1_0.title from books b1_0 where b1_0.external_id=?";
+    private static final long MILLI = 1_000_000L;
+
+    private QueryStatementRecorder recorder;
+
+    @BeforeEach
+    void setUp() {
+        recorder = new QueryStatementRecorder(Duration.ofMillis(50), 3, 2, 2);
+    }
+
+    @Test
+    void testShapeOf_CollapsesWhitespaceAndInLists() {
+        assertEquals("select * from books b where b.id in (?) and b.price>?",
+                QueryStatementRecorder.shapeOf("select *\n    from books b\n where b.id in (?, ?,?) and b.price>?"));
+        assertEquals(QueryStatementRecorder.shapeOf("select * from books where id in (?,?)"),
+                QueryStatementRecorder.shapeOf("select * from books where id in (?,?,?,?,?)"));
+    }
+
+    @Test
+    void testExecuted_AggregatesLatencyPerShape() {
+        execute(SELECT_BOOK, 2 * MILLI);
+        execute(SELECT_BOOK, 4 * MILLI);
+        execute("update books set available_quantity=? where id=?", MILLI);
+
+        List<QueryDiagnosticsDTO.StatementStats> statements = recorder.topStatements(10);
+
+        assertEquals(2, statements.size());
+        QueryDiagnosticsDTO.StatementStats select = statements.get(0);
+        assertEquals(SELECT_BOOK, select.sql());
+        assertEquals(2, select.executions());
+        assertEquals(6.0, select.totalMillis());
+        assertEquals(3.0, select.avgMillis());
+        assertEquals(4.0, select.maxMillis());
+        assertFalse(select.slow());
+    }
+
+    @Test
+    void testEndRequest_FlagsRepeatedSelectsAndSlowStatementsWithEndpoint() {
+        recorder.beginRequest();
+        for (int i = 0; i < 3; i++) {
+            execute(SELECT_BOOK, MILLI);
+        }
+        // Las escrituras repetidas (p. ej. un lote) no son N+1
+        for (int i = 0; i < 3; i++) {
+            execute("insert into book_authors (book_id,author_name) values (?,?)", MILLI);
+        }
+        execute("select count(*) from reservations r1_0", 80 * MILLI);
+        recorder.endRequest("GET /api/reservations");
+
+        List<QueryDiagnosticsDTO.RepeatedStatement> suspects = recorder.nPlusOneSuspects();
+        assertEquals(1, suspects.size());
+        assertEquals("GET /api/reservations", suspects.get(0).request());
+        assertEquals(SELECT_BOOK, suspects.get(0).sql());
+        assertEquals(3, suspects.get(0).executions());
+
+        List<QueryDiagnosticsDTO.SlowStatement> slow = recorder.slowStatements();
+        assertEquals(1, slow.size());
+        assertEquals("GET /api/reservations", slow.get(0).request());
+        assertEquals(80.0, slow.get(0).millis());
+    }
+
+    @Test
+    void testRepetitionsAcrossRequestsAreNotNPlusOne() {
+        for (int i = 0; i < 3; i++) {
+            recorder.beginRequest();
+            execute(SELECT_BOOK, MILLI);
+            recorder.endRequest("GET /api/books/{externalId}");
+        }
+
+        assertTrue(recorder.nPlusOneSuspects().isEmpty());
+        assertEquals(3, recorder.topStatements(10).get(0).executions());
+    }
+
+    @Test
+    void testBoundsShapesAndFindings() {
+        execute("select 1", MILLI);
+        execute("select 2", MILLI);
+        execute("select 3", MILLI);
+        for (int i = 0; i < 3; i++) {
+            execute("select 1", 60 * MILLI);
+        }
+
+        assertEquals(2, recorder.topStatements(10).size());
+        assertEquals(1, recorder.untrackedExecutions());
+        // Solo los hallazgos más recientes
+        assertEquals(2, recorder.slowStatements().size());
+
+        recorder.reset();
+
+        assertTrue(recorder.topStatements(10).isEmpty());
+        assertTrue(recorder.slowStatements().isEmpty());
+        assertEquals(0, recorder.untrackedExecutions());
+    }
+
+    private void execute(String sql, long nanos) {
+        recorder.record(sql, nanos);
+    }
+}
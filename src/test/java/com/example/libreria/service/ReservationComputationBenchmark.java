@@ -0,0 +1,109 @@
+package com.example.libreria.service;
+
+import com.example.libreria.dto.ReservationResponseDTO;
+import com.example.libreria.model.Book;
+import com.example.libreria.model.Reservation;
+import com.example.libreria.model.User;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Cálculos de tarifas y conversión a DTO/JSON de ReservationService, sin base de datos. Está en el paquete del
+// servicio porque esos métodos son de paquete; los benchmarks con contexto completo están en benchmark.
+// Ejecutar con: mvn -Pjmh -DskipTests verify -Djmh.include=ReservationComputationBenchmark
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ReservationComputationBenchmark {
+    
+    private static final int SAMPLES = 1_024;
+    
+    private final ObjectMapper objectMapper = JsonMapper.builder()
+            .findAndAddModules()
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .build();
+    
+    private BigDecimal[] prices;
+    private int[] days;
+    private Reservation[] reservations;
+    private int position;
+    
+    @Setup
+    public void setUp() {
+        Random random = new Random(20240601L);
+        prices = new BigDecimal[SAMPLES];
+        days = new int[SAMPLES];
+        reservations = new Reservation[SAMPLES];
+        User user = new User();
+        user.setId(1L);
+        user.setName("Juan Pérez");
+        for (int i = 0; i < SAMPLES; i++) {
+            prices[i] = BigDecimal.valueOf(500 + random.nextInt(5500), 2);
+            days[i] = 1 + random.nextInt(30);
+            Book book = new Book();
+            book.setExternalId(5_000_000L + i);
+            book.setTitle("Benchmark book " + i);
+            book.setPrice(prices[i]);
+            Reservation reservation = new Reservation();
+            reservation.setId((long) i);
+            reservation.setUser(user);
+            reservation.setBook(book);
+            reservation.setRentalDays(days[i]);
+            reservation.setStartDate(LocalDate.of(2025, 3, 1));
+            reservation.setExpectedReturnDate(reservation.getStartDate().plusDays(days[i]));
+            reservation.setDailyRate(prices[i]);
+            reservation.setTotalFee(ReservationService.calculateTotalFee(prices[i], days[i]));
+            reservation.setLateFee(BigDecimal.ZERO);
+            reservation.setStatus(Reservation.ReservationStatus.ACTIVE);
+            reservations[i] = reservation;
+        }
+    }
+    
+    private int next() {
+        position = (position + 1) & (SAMPLES - 1);
+        return position;
+    }
+    
+    @Benchmark
+    public BigDecimal totalFee() {
+        int i = next();
+        return ReservationService.calculateTotalFee(prices[i], days[i]);
+    }
+    
+    @Benchmark
+    public BigDecimal lateFee() {
+        int i = next();
+        return ReservationService.calculateLateFee(prices[i], days[i]);
+    }
+    
+    // Entidad a DTO, como en las respuestas de alta y devolución
+    @Benchmark
+    public ReservationResponseDTO entityToDto() {
+        return ReservationService.convertToDTO(reservations[next()]);
+    }
+    
+    // Entidad a DTO y DTO a JSON: lo que cuesta armar el cuerpo de una respuesta
+    @Benchmark
+    public String entityToJson() throws JsonProcessingException {
+        return objectMapper.writeValueAsString(ReservationService.convertToDTO(reservations[next()]));
+    }
+}
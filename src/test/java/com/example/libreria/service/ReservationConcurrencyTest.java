@@ -0,0 +1,308 @@
+package com.example.libreria.service;
+
+import com.example.libreria.dto.BookReturnDTO;
+import com.example.libreria.dto.ReservationBatchRequestDTO;
+import com.example.libreria.dto.ReservationBatchResultDTO;
+import com.example.libreria.dto.ReservationRequestDTO;
+import com.example.libreria.dto.ReturnBatchRequestDTO;
+import com.example.libreria.dto.ReturnBookRequestDTO;
+import com.example.libreria.model.Book;
+import com.example.libreria.model.Reservation;
+import com.example.libreria.model.User;
+import com.example.libreria.repository.BookRepository;
+import com.example.libreria.repository.BookStockView;
+import com.example.libreria.repository.ReservationRepository;
+import com.example.libreria.repository.UserRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Prueba de estrés contra H2 real: muchos hilos reservan el mismo libro a la vez
+@SpringBootTest(properties = {
+        // Base propia: el contexto principal de los tests ya cargó data.sql en libreria_db
+        "spring.datasource.url=jdbc:h2:mem:reservation_stress",
+        "spring.jpa.show-sql=false",
+        "external.api.books.snapshot.load-on-startup=false",
+        // Con 32 hilos sobre una misma fila los conflictos se encadenan; se da margen para que todos terminen
+        "library.optimistic-lock.max-attempts=50"
+})
+@Slf4j
+class ReservationConcurrencyTest {
+
+    private static final long BOOK_ID = 990001L;
+    private static final int STOCK = 50;
+    private static final int THREADS = 32;
+    private static final int ATTEMPTS = 400;
+
+    @Autowired
+    private ReservationService reservationService;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ReservationRepository reservationRepository;
+
+    @Autowired
+    private BookService bookService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private Long userId;
+
+    @BeforeEach
+    void setUp() {
+        User user = new User();
+        user.setName("Stress Test");
+        user.setEmail("stress-" + UUID.randomUUID() + "@example.com");
+        userId = userRepository.save(user).getId();
+
+        Book book = new Book();
+        book.setExternalId(BOOK_ID);
+        book.setTitle("Concurrency in Practice");
+        book.setAuthorName(List.of("Brian Goetz"));
+        book.setPrice(new BigDecimal("10.00"));
+        book.setStockQuantity(STOCK);
+        book.setAvailableQuantity(STOCK);
+        bookRepository.save(book);
+    }
+
+    @AfterEach
+    void tearDown() {
+        // Las reservas se eliminan en cascada con el usuario
+        userRepository.deleteById(userId);
+        bookRepository.deleteById(BOOK_ID);
+    }
+
+    @Test
+    void testCreateReservation_ConcurrentRequestsNeverOversell() throws InterruptedException {
+        AtomicInteger reserved = new AtomicInteger();
+        AtomicInteger soldOut = new AtomicInteger();
+        Queue<Throwable> unexpected = new ConcurrentLinkedQueue<>();
+        CountDownLatch startGate = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+
+        for (int i = 0; i < ATTEMPTS; i++) {
+            pool.execute(() -> {
+                try {
+                    startGate.await();
+                    reservationService.createReservation(
+                            new ReservationRequestDTO(userId, BOOK_ID, 3, LocalDate.now()));
+                    reserved.incrementAndGet();
+                } catch (RuntimeException e) {
+                    if ("Libro no disponible para reserva".equals(e.getMessage())) {
+                        soldOut.incrementAndGet();
+                    } else {
+                        unexpected.add(e);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        }
+
+        long start = System.nanoTime();
+        startGate.countDown();
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(60, TimeUnit.SECONDS));
+        long elapsedNanos = System.nanoTime() - start;
+
+        log.info("Reservations: {} attempts on {} threads in {} ms ({} req/s), reserved={}, sold out={}",
+                ATTEMPTS, THREADS, TimeUnit.NANOSECONDS.toMillis(elapsedNanos),
+                Math.round(ATTEMPTS / (elapsedNanos / 1e9)), reserved.get(), soldOut.get());
+        assertTrue(unexpected.isEmpty(), () -> "Errores inesperados: " + unexpected);
+        assertEquals(STOCK, reserved.get());
+        assertEquals(ATTEMPTS - STOCK, soldOut.get());
+        assertEquals(0, bookRepository.findStockByExternalId(BOOK_ID).orElseThrow().getAvailableQuantity());
+        assertEquals(STOCK, reservationRepository.findByUserId(userId).size());
+    }
+
+    @Test
+    void testReturnBook_ConcurrentReturnsAndStockUpdatesDoNotLoseUpdates() throws InterruptedException {
+        int reservations = 30;
+        List<Long> reservationIds = new ArrayList<>();
+        for (int i = 0; i < reservations; i++) {
+            reservationIds.add(reservationService.createReservation(
+                    new ReservationRequestDTO(userId, BOOK_ID, 3, LocalDate.now())).getId());
+        }
+        double conflictsBefore = conflicts();
+        Queue<Throwable> unexpected = new ConcurrentLinkedQueue<>();
+        CountDownLatch startGate = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+
+        // Cada devolución hace lectura-modificación-escritura del libro; sin versión se perderían incrementos
+        for (Long reservationId : reservationIds) {
+            pool.execute(() -> runAfter(startGate, unexpected, () -> reservationService.returnBook(
+                    reservationId, new ReturnBookRequestDTO(LocalDate.now()))));
+        }
+        for (int i = 0; i < 10; i++) {
+            int stock = STOCK + i + 1;
+            pool.execute(() -> runAfter(startGate, unexpected, () -> bookService.updateStock(BOOK_ID, stock)));
+        }
+
+        startGate.countDown();
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(60, TimeUnit.SECONDS));
+
+        log.info("Returns: {} returns and 10 stock updates, {} optimistic conflicts retried",
+                reservations, Math.round(conflicts() - conflictsBefore));
+        assertTrue(unexpected.isEmpty(), () -> "Errores inesperados: " + unexpected);
+        BookStockView stock = bookRepository.findStockByExternalId(BOOK_ID).orElseThrow();
+        // Sin reservas activas, todo el stock vuelve a estar disponible, cualquiera sea el último updateStock
+        assertEquals(stock.getStockQuantity(), stock.getAvailableQuantity());
+        assertTrue(reservationRepository.findByUserId(userId).stream()
+                .allMatch(reservation -> reservation.getStatus() == Reservation.ReservationStatus.RETURNED));
+    }
+
+    @Test
+    void testReturnBook_SameReservationReturnedTwiceConcurrently() throws InterruptedException {
+        Long reservationId = reservationService.createReservation(
+                new ReservationRequestDTO(userId, BOOK_ID, 3, LocalDate.now())).getId();
+        AtomicInteger returned = new AtomicInteger();
+        Queue<Throwable> failures = new ConcurrentLinkedQueue<>();
+        CountDownLatch startGate = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+
+        for (int i = 0; i < 2; i++) {
+            pool.execute(() -> runAfter(startGate, failures, () -> {
+                reservationService.returnBook(reservationId, new ReturnBookRequestDTO(LocalDate.now()));
+                returned.incrementAndGet();
+            }));
+        }
+
+        startGate.countDown();
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(30, TimeUnit.SECONDS));
+
+        assertEquals(1, returned.get());
+        assertEquals(1, failures.size());
+        assertEquals("La reserva ya fue devuelta", failures.peek().getMessage());
+        assertEquals(STOCK, bookRepository.findStockByExternalId(BOOK_ID).orElseThrow().getAvailableQuantity());
+    }
+
+    @Test
+    void testCreateReservations_ClassCheckoutModes() {
+        List<ReservationRequestDTO> classCheckout = batch(30);
+
+        ReservationBatchResultDTO first = reservationService.createReservations(
+                new ReservationBatchRequestDTO(classCheckout, ReservationBatchRequestDTO.Mode.ALL_OR_NOTHING));
+        // Quedan 20 ejemplares: un segundo lote de 30 todo-o-nada no crea ninguna reserva
+        ReservationBatchResultDTO second = reservationService.createReservations(
+                new ReservationBatchRequestDTO(classCheckout, ReservationBatchRequestDTO.Mode.ALL_OR_NOTHING));
+        int afterRejected = bookRepository.findStockByExternalId(BOOK_ID).orElseThrow().getAvailableQuantity();
+        ReservationBatchResultDTO third = reservationService.createReservations(
+                new ReservationBatchRequestDTO(classCheckout, ReservationBatchRequestDTO.Mode.BEST_EFFORT));
+
+        assertEquals(30, first.getSucceeded());
+        assertEquals(0, second.getSucceeded());
+        assertEquals(20, afterRejected);
+        assertEquals(20, third.getSucceeded());
+        assertEquals(10, third.getFailed());
+        assertTrue(third.getItems().subList(0, 20).stream().allMatch(item -> item.isSuccess()));
+        assertEquals(0, bookRepository.findStockByExternalId(BOOK_ID).orElseThrow().getAvailableQuantity());
+        assertEquals(STOCK, reservationRepository.findByUserId(userId).size());
+    }
+
+    @Test
+    void testCreateReservations_ConcurrentBatchesNeverOversell() throws InterruptedException {
+        AtomicInteger reserved = new AtomicInteger();
+        Queue<Throwable> unexpected = new ConcurrentLinkedQueue<>();
+        CountDownLatch startGate = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+
+        for (int i = 0; i < 8; i++) {
+            pool.execute(() -> runAfter(startGate, unexpected, () -> reserved.addAndGet(reservationService
+                    .createReservations(new ReservationBatchRequestDTO(batch(10),
+                            ReservationBatchRequestDTO.Mode.BEST_EFFORT))
+                    .getSucceeded())));
+        }
+
+        startGate.countDown();
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(60, TimeUnit.SECONDS));
+
+        assertTrue(unexpected.isEmpty(), () -> "Errores inesperados: " + unexpected);
+        assertEquals(STOCK, reserved.get());
+        assertEquals(0, bookRepository.findStockByExternalId(BOOK_ID).orElseThrow().getAvailableQuantity());
+        assertEquals(STOCK, reservationRepository.findByUserId(userId).size());
+    }
+
+    @Test
+    void testReturnBooks_EndOfTermBurst() {
+        ReservationBatchResultDTO created = reservationService.createReservations(
+                new ReservationBatchRequestDTO(batch(40), ReservationBatchRequestDTO.Mode.ALL_OR_NOTHING));
+        List<BookReturnDTO> returns = new ArrayList<>();
+        for (int i = 0; i < created.getItems().size(); i++) {
+            // La mitad vuelve con 2 días de demora (alquiler de 3 días)
+            int daysAfterStart = i % 2 == 0 ? 3 : 5;
+            returns.add(new BookReturnDTO(created.getItems().get(i).getReservation().getId(),
+                    LocalDate.now().plusDays(daysAfterStart)));
+        }
+        // Un ID que ya viene en el lote no se devuelve dos veces
+        returns.add(returns.get(0));
+
+        ReservationBatchResultDTO result = reservationService.returnBooks(new ReturnBatchRequestDTO(returns));
+
+        assertEquals(40, result.getSucceeded());
+        assertEquals(1, result.getFailed());
+        assertEquals(STOCK, bookRepository.findStockByExternalId(BOOK_ID).orElseThrow().getAvailableQuantity());
+        List<Reservation> stored = reservationRepository.findByUserId(userId);
+        assertEquals(20, stored.stream()
+                .filter(reservation -> reservation.getStatus() == Reservation.ReservationStatus.OVERDUE)
+                // 15% de 10.00 por 2 días
+                .filter(reservation -> new BigDecimal("3.00").compareTo(reservation.getLateFee()) == 0)
+                .count());
+        assertEquals(20, stored.stream()
+                .filter(reservation -> reservation.getStatus() == Reservation.ReservationStatus.RETURNED)
+                .count());
+    }
+
+    private List<ReservationRequestDTO> batch(int size) {
+        List<ReservationRequestDTO> requests = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            requests.add(new ReservationRequestDTO(userId, BOOK_ID, 3, LocalDate.now()));
+        }
+        return requests;
+    }
+
+    private double conflicts() {
+        return meterRegistry.find("library.optimistic.conflicts").counters().stream()
+                .mapToDouble(Counter::count)
+                .sum();
+    }
+
+    private static void runAfter(CountDownLatch startGate, Queue<Throwable> errors, Runnable action) {
+        try {
+            startGate.await();
+            action.run();
+        } catch (RuntimeException e) {
+            errors.add(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.example.libreria.service;
+
+import com.example.libreria.model.Book;
+import com.example.libreria.model.Reservation;
+import com.example.libreria.model.User;
+import com.example.libreria.repository.BookRepository;
+import com.example.libreria.repository.ReservationRepository;
+import com.example.libreria.repository.UserRepository;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+class ReservationExportServiceTest {
+
+    private static final LocalDate FIRST_START = LocalDate.of(2025, 1, 1);
+
+    @Autowired
+    private ReservationRepository reservationRepository;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private final ObjectMapper objectMapper = JsonMapper.builder()
+            .findAndAddModules()
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .build();
+
+    private ReservationExportService exportService;
+
+    @BeforeEach
+    void setUp() {
+        reservationRepository.deleteAll();
+        bookRepository.deleteAll();
+        userRepository.deleteAll();
+        exportService = new ReservationExportService(reservationRepository, objectMapper);
+
+        User user = new User();
+        user.setName("Pérez, Juan");
+        user.setEmail("export.finanzas@example.com");
+        userRepository.save(user);
+        Book book = new Book();
+        book.setExternalId(140081L);
+        book.setTitle("The \"Hitchhiker's\" Guide");
+        book.setPrice(new BigDecimal("20.99"));
+        book.setStockQuantity(10);
+        book.setAvailableQuantity(10);
+        bookRepository.save(book);
+        List<Reservation> reservations = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            Reservation reservation = new Reservation();
+            reservation.setUser(user);
+            reservation.setBook(book);
+            reservation.setRentalDays(7);
+            reservation.setStartDate(FIRST_START.plusDays(i));
+            reservation.setDailyRate(new BigDecimal("20.99"));
+            reservation.setTotalFee(new BigDecimal("146.93"));
+            reservations.add(reservation);
+        }
+        reservationRepository.saveAll(reservations);
+        reservationRepository.flush();
+    }
+
+    @Test
+    void testExportNdjson_OneObjectPerLineWithinRange() throws IOException {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        long rows = exportService.export(ReservationExportService.Format.NDJSON,
+                FIRST_START.plusDays(2), FIRST_START.plusDays(5), out);
+
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(4, rows);
+        assertEquals(4, lines.length);
+        JsonNode first = objectMapper.readTree(lines[0]);
+        assertEquals("2025-01-03", first.get("startDate").asText());
+        assertEquals("Pérez, Juan", first.get("userName").asText());
+        assertEquals("2025-01-06", objectMapper.readTree(lines[3]).get("startDate").asText());
+        // Una sola consulta y ninguna entidad en el contexto de persistencia, sin importar la cantidad de filas
+        assertEquals(1, statistics.getPrepareStatementCount());
+        assertEquals(0, statistics.getEntityLoadCount());
+    }
+
+    @Test
+    void testExportCsv_HeaderAndEscapedFields() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        long rows = exportService.export(ReservationExportService.Format.CSV, null, null, out);
+
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(10, rows);
+        assertEquals(11, lines.length);
+        assertTrue(lines[0].startsWith("id,userId,userName,bookExternalId,bookTitle,"));
+        assertTrue(lines[1].contains(",\"Pérez, Juan\",140081,\"The \"\"Hitchhiker's\"\" Guide\",7,2025-01-01,"));
+        assertTrue(lines[1].contains(",ACTIVE,"));
+    }
+
+    @Test
+    void testExport_RejectsInvalidFormatAndRange() {
+        assertEquals(ReservationExportService.Format.CSV, ReservationExportService.Format.parse("csv"));
+        assertThrows(RuntimeException.class, () -> ReservationExportService.Format.parse("xml"));
+        assertThrows(RuntimeException.class, () -> exportService.export(ReservationExportService.Format.CSV,
+                FIRST_START.plusDays(1), FIRST_START, new ByteArrayOutputStream()));
+    }
+}
@@ -0,0 +1,197 @@
+package com.example.libreria.service;
+
+import com.example.libreria.dto.ReservationFilterDTO;
+import com.example.libreria.dto.ReservationPageDTO;
+import com.example.libreria.dto.ReservationResponseDTO;
+import com.example.libreria.model.Book;
+import com.example.libreria.model.Reservation;
+import com.example.libreria.model.User;
+import com.example.libreria.repository.BookRepository;
+import com.example.libreria.repository.ReservationRepository;
+import com.example.libreria.repository.UserRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+// Cada listado debe ser un único SELECT, sin importar cuántas reservas, usuarios y libros involucre
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class ReservationListingQueryTest {
+
+    private static final int USERS = 5;
+    private static final int BOOKS = 8;
+
+    @Autowired
+    private ReservationRepository reservationRepository;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private ReservationService reservationService;
+    private OverdueSweeperService overdueSweeperService;
+    private Statistics statistics;
+    private Long firstUserId;
+
+    @BeforeEach
+    void setUp() {
+        reservationRepository.deleteAll();
+        bookRepository.deleteAll();
+        userRepository.deleteAll();
+        reservationService = new ReservationService(reservationRepository, bookRepository, mock(UserService.class),
+                mock(BookCatalogCache.class), mock(InventoryEngine.class));
+        overdueSweeperService = new OverdueSweeperService(reservationRepository, jdbcTemplate,
+                new TransactionTemplate(transactionManager), 500);
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < USERS; i++) {
+            User user = new User();
+            user.setName("User " + i);
+            user.setEmail("user" + i + "@example.com");
+            users.add(userRepository.save(user));
+        }
+        firstUserId = users.get(0).getId();
+        List<Book> books = new ArrayList<>();
+        for (int i = 0; i < BOOKS; i++) {
+            Book book = new Book();
+            book.setExternalId(1000L + i);
+            book.setTitle("Book " + i);
+            book.setPrice(new BigDecimal("10.00"));
+            book.setStockQuantity(10);
+            book.setAvailableQuantity(10);
+            books.add(bookRepository.save(book));
+        }
+        List<Reservation> reservations = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            Reservation reservation = new Reservation();
+            reservation.setUser(users.get(i % USERS));
+            reservation.setBook(books.get(i % BOOKS));
+            reservation.setRentalDays(7);
+            // Las primeras 10 ya vencieron
+            reservation.setStartDate(LocalDate.now().minusDays(i < 10 ? 30 : 1));
+            reservation.setExpectedReturnDate(reservation.getStartDate().plusDays(7));
+            reservation.setDailyRate(new BigDecimal("10.00"));
+            reservation.setTotalFee(new BigDecimal("70.00"));
+            reservation.setStatus(i % 4 == 3 ? Reservation.ReservationStatus.RETURNED : Reservation.ReservationStatus.ACTIVE);
+            reservations.add(reservation);
+        }
+        reservationRepository.saveAll(reservations);
+    }
+
+    @Test
+    void testListings_IssueOneStatementEach() {
+        List<ReservationResponseDTO> all = assertSingleStatement(
+                () -> reservationService.getReservations(new ReservationFilterDTO(), null, 50)).getItems();
+        assertEquals(40, all.size());
+        assertTrue(all.stream().anyMatch(dto -> dto.getBookTitle().equals("Book 3")
+                && dto.getUserName().equals("User 3")));
+
+        assertEquals(8, assertSingleStatement(() -> reservationService.getReservationsByUserId(firstUserId)).size());
+        assertEquals(30, assertSingleStatement(reservationService::getActiveReservations).size());
+        // El estado de vencida lo materializa el barrido; las listas solo lo leen
+        overdueSweeperService.sweep(LocalDate.now());
+        List<ReservationResponseDTO> overdue = assertSingleStatement(reservationService::getOverdueReservations);
+        assertTrue(overdue.stream().allMatch(dto -> dto.getExpectedReturnDate().isBefore(LocalDate.now())));
+        assertFalse(overdue.isEmpty());
+        // Las vencidas siguen en préstamo: el listado de activas las incluye
+        assertEquals(30, assertSingleStatement(reservationService::getActiveReservations).size());
+
+        Long id = all.get(0).getId();
+        assertEquals(id, assertSingleStatement(() -> reservationService.getReservationById(id)).getId());
+    }
+
+    @Test
+    void testGetReservations_KeysetPagesCoverFilteredSetOnce() {
+        ReservationFilterDTO active = new ReservationFilterDTO();
+        active.setStatus(Reservation.ReservationStatus.ACTIVE);
+        List<ReservationResponseDTO> walked = new ArrayList<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            String current = cursor;
+            ReservationPageDTO page = assertSingleStatement(() -> reservationService.getReservations(active, current, 7));
+            walked.addAll(page.getItems());
+            cursor = page.getNextCursor();
+            pages++;
+        } while (cursor != null);
+
+        assertEquals(5, pages);
+        assertEquals(30, walked.size());
+        assertEquals(30, walked.stream().map(ReservationResponseDTO::getId).distinct().count());
+        for (int i = 1; i < walked.size(); i++) {
+            ReservationResponseDTO previous = walked.get(i - 1);
+            ReservationResponseDTO current = walked.get(i);
+            int byCreatedAt = previous.getCreatedAt().compareTo(current.getCreatedAt());
+            assertTrue(byCreatedAt > 0 || (byCreatedAt == 0 && previous.getId() > current.getId()));
+        }
+
+        // Usuario + rango de fechas: solo las 2 reservas vencidas del primer usuario (i = 0 y 5)
+        ReservationFilterDTO overdueOfFirstUser = new ReservationFilterDTO(null, firstUserId, null,
+                LocalDate.now().minusDays(31), LocalDate.now().minusDays(29));
+        ReservationPageDTO page = reservationService.getReservations(overdueOfFirstUser, null, 50);
+        assertEquals(2, page.getSize());
+        assertNull(page.getNextCursor());
+        assertTrue(page.getItems().stream().allMatch(dto -> dto.getUserId().equals(firstUserId)));
+    }
+
+    @Test
+    void testGetOverdueReservations_PagesFromMostOverdue() {
+        overdueSweeperService.sweep(LocalDate.now());
+        List<ReservationResponseDTO> walked = new ArrayList<>();
+        String cursor = null;
+        do {
+            String current = cursor;
+            ReservationPageDTO page = assertSingleStatement(() -> reservationService.getOverdueReservations(current, 3));
+            walked.addAll(page.getItems());
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+
+        // Las 10 primeras vencieron, salvo las 2 ya devueltas (i = 3 y 7)
+        assertEquals(8, walked.size());
+        assertEquals(8, walked.stream().map(ReservationResponseDTO::getId).distinct().count());
+        assertTrue(walked.stream().allMatch(dto -> dto.getStatus() == Reservation.ReservationStatus.OVERDUE
+                && dto.getActualReturnDate() == null && dto.getExpectedReturnDate().isBefore(LocalDate.now())));
+        for (int i = 1; i < walked.size(); i++) {
+            int byDate = walked.get(i - 1).getExpectedReturnDate().compareTo(walked.get(i).getExpectedReturnDate());
+            assertTrue(byDate < 0 || (byDate == 0 && walked.get(i - 1).getId() < walked.get(i).getId()));
+        }
+    }
+
+    private <T> T assertSingleStatement(Supplier<T> listing) {
+        statistics.clear();
+        T result = listing.get();
+        assertEquals(1, statistics.getPrepareStatementCount(), "sentencias SQL ejecutadas");
+        assertEquals(0, statistics.getEntityLoadCount(), "entidades cargadas");
+        return result;
+    }
+}
@@ -1,7 +1,13 @@
 package com.example.libreria.service;
 
+import com.example.libreria.dto.BookReturnDTO;
+import com.example.libreria.dto.ReservationBatchRequestDTO;
+import com.example.libreria.dto.ReservationBatchResultDTO;
+import com.example.libreria.dto.ReservationFilterDTO;
+import com.example.libreria.dto.ReservationPageDTO;
 import com.example.libreria.dto.ReservationRequestDTO;
 import com.example.libreria.dto.ReservationResponseDTO;
+import com.example.libreria.dto.ReturnBatchRequestDTO;
 import com.example.libreria.dto.ReturnBookRequestDTO;
 import com.example.libreria.model.Book;
 import com.example.libreria.model.Reservation;
@@ -20,10 +26,12 @@ import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.Mockito.*;
 
@@ -37,10 +45,13 @@ class ReservationServiceTest {
     private BookRepository bookRepository;
     
     @Mock
-    private BookService bookService;
+    private UserService userService;
     
     @Mock
-    private UserService userService;
+    private BookCatalogCache bookCatalogCache;
+    
+    @Mock
+    private InventoryEngine inventoryEngine;
     
     @InjectMocks
     private ReservationService reservationService;
@@ -87,7 +98,10 @@ class ReservationServiceTest {
         );
 
         when(userService.getUserEntity(testUser.getId())).thenReturn(testUser);
-        when(bookRepository.findByExternalId(testBook.getExternalId())).thenReturn(Optional.of(testBook));
+        when(bookCatalogCache.get(testBook.getExternalId()))
+                .thenReturn(Optional.of(BookCatalogCache.CatalogEntry.of(testBook)));
+        when(bookRepository.getReferenceById(testBook.getExternalId())).thenReturn(testBook);
+        when(inventoryEngine.tryReserve(testBook.getExternalId())).thenReturn(true);
         when(reservationRepository.save(any(Reservation.class))).thenAnswer(invocation -> {
             Reservation r = invocation.getArgument(0);
             r.setId(1L);
@@ -102,10 +116,13 @@ class ReservationServiceTest {
         assertEquals(testBook.getPrice(), result.getDailyRate());
         assertEquals(new BigDecimal("111.93"), result.getTotalFee());
         assertEquals(Reservation.ReservationStatus.ACTIVE, result.getStatus());
-        assertEquals(Integer.valueOf(4), testBook.getAvailableQuantity());
+        assertEquals(testBook.getTitle(), result.getBookTitle());
 
         verify(reservationRepository, times(1)).save(any(Reservation.class));
-        verify(bookRepository, times(1)).save(testBook);
+        // El stock lo descuenta el motor de inventario, nunca leyendo y guardando la entidad
+        verify(inventoryEngine, times(1)).tryReserve(testBook.getExternalId());
+        verify(bookRepository, never()).findByExternalId(any());
+        verify(bookRepository, never()).save(any());
     }
     
     @Test
@@ -121,24 +138,107 @@ class ReservationServiceTest {
         );
 
         when(userService.getUserEntity(testUser.getId())).thenReturn(testUser);
-        when(bookRepository.findByExternalId(testBook.getExternalId())).thenReturn(Optional.of(testBook));
+        when(bookCatalogCache.get(testBook.getExternalId()))
+                .thenReturn(Optional.of(BookCatalogCache.CatalogEntry.of(testBook)));
+        when(inventoryEngine.tryReserve(testBook.getExternalId())).thenReturn(false);
 
         RuntimeException ex = assertThrows(RuntimeException.class,
                 () -> reservationService.createReservation(requestDTO));
 
+        // La reserva insertada se descarta con el rollback de la transacción
         assertEquals("Libro no disponible para reserva", ex.getMessage());
-        verify(reservationRepository, never()).save(any());
         verify(bookRepository, never()).save(any());
     }
     
+    @Test
+    void testCreateReservation_BookNotFound() {
+        ReservationRequestDTO requestDTO = new ReservationRequestDTO(testUser.getId(), 999L, 7, LocalDate.now());
+
+        when(userService.getUserEntity(testUser.getId())).thenReturn(testUser);
+        when(bookCatalogCache.get(999L)).thenReturn(Optional.empty());
+
+        assertThrows(RuntimeException.class, () -> reservationService.createReservation(requestDTO));
+        verify(reservationRepository, never()).save(any());
+        verify(inventoryEngine, never()).tryReserve(any());
+    }
+    
+    @Test
+    void testCreateReservations_BestEffortGrantsWhatIsAvailable() {
+        ReservationBatchRequestDTO batchRequest = new ReservationBatchRequestDTO(List.of(
+                new ReservationRequestDTO(testUser.getId(), testBook.getExternalId(), 7, LocalDate.now()),
+                new ReservationRequestDTO(99L, testBook.getExternalId(), 7, LocalDate.now()),
+                new ReservationRequestDTO(testUser.getId(), testBook.getExternalId(), 7, LocalDate.now()),
+                new ReservationRequestDTO(testUser.getId(), testBook.getExternalId(), 7, LocalDate.now())
+        ), ReservationBatchRequestDTO.Mode.BEST_EFFORT);
+
+        when(userService.getUserEntities(any())).thenReturn(Map.of(testUser.getId(), testUser));
+        when(bookRepository.findByExternalIdIn(any())).thenReturn(List.of(testBook));
+        // Se piden 3 ejemplares y quedan 2
+        when(inventoryEngine.reserve(Map.of(testBook.getExternalId(), 3), true))
+                .thenReturn(Map.of(testBook.getExternalId(), 2));
+
+        ReservationBatchResultDTO result = reservationService.createReservations(batchRequest);
+
+        assertEquals(4, result.getRequested());
+        assertEquals(2, result.getSucceeded());
+        assertEquals(2, result.getFailed());
+        assertTrue(result.getItems().get(0).isSuccess());
+        assertEquals("Usuario no encontrado con ID: 99", result.getItems().get(1).getError());
+        assertTrue(result.getItems().get(2).isSuccess());
+        assertEquals("Libro no disponible para reserva", result.getItems().get(3).getError());
+        assertEquals(new BigDecimal("111.93"), result.getItems().get(0).getReservation().getTotalFee());
+        // Un solo saveAll con las reservas concedidas: Hibernate agrupa los INSERT
+        verify(reservationRepository).saveAll(argThat(reservations -> ((List<?>) reservations).size() == 2));
+        verify(reservationRepository, never()).save(any());
+        verify(inventoryEngine, never()).tryReserve(any());
+    }
+    
+    @Test
+    void testCreateReservations_AllOrNothingRejectsWholeBatch() {
+        ReservationBatchRequestDTO batchRequest = new ReservationBatchRequestDTO(List.of(
+                new ReservationRequestDTO(testUser.getId(), testBook.getExternalId(), 7, LocalDate.now()),
+                new ReservationRequestDTO(testUser.getId(), 999L, 7, LocalDate.now())
+        ), ReservationBatchRequestDTO.Mode.ALL_OR_NOTHING);
+
+        when(userService.getUserEntities(any())).thenReturn(Map.of(testUser.getId(), testUser));
+        when(bookRepository.findByExternalIdIn(any())).thenReturn(List.of(testBook));
+
+        ReservationBatchResultDTO result = reservationService.createReservations(batchRequest);
+
+        assertEquals(0, result.getSucceeded());
+        assertEquals(2, result.getFailed());
+        assertEquals("Reserva cancelada: otra reserva del lote no se pudo crear", result.getItems().get(0).getError());
+        assertEquals("Libro no encontrado con ID externo: 999", result.getItems().get(1).getError());
+        // Con un pedido inválido no se toca el stock ni se inserta nada
+        verify(inventoryEngine, never()).reserve(any(), anyBoolean());
+        verify(reservationRepository, never()).saveAll(any());
+    }
+    
+    @Test
+    void testCreateReservations_AllOrNothingWithoutEnoughStock() {
+        ReservationBatchRequestDTO batchRequest = new ReservationBatchRequestDTO(List.of(
+                new ReservationRequestDTO(testUser.getId(), testBook.getExternalId(), 7, LocalDate.now()),
+                new ReservationRequestDTO(testUser.getId(), testBook.getExternalId(), 7, LocalDate.now())
+        ), ReservationBatchRequestDTO.Mode.ALL_OR_NOTHING);
+
+        when(userService.getUserEntities(any())).thenReturn(Map.of(testUser.getId(), testUser));
+        when(bookRepository.findByExternalIdIn(any())).thenReturn(List.of(testBook));
+        when(inventoryEngine.reserve(Map.of(testBook.getExternalId(), 2), false)).thenReturn(Map.of());
+
+        ReservationBatchResultDTO result = reservationService.createReservations(batchRequest);
+
+        assertEquals(0, result.getSucceeded());
+        assertEquals("Stock insuficiente para completar el lote", result.getItems().get(1).getError());
+        verify(reservationRepository, never()).saveAll(any());
+    }
+    
     @Test
     void testReturnBook_OnTime() {
         // TO DO: Implementar el test de devolución de libro en tiempo
         when(reservationRepository.findById(1L)).thenReturn(Optional.of(testReservation));
         when(reservationRepository.save(any(Reservation.class)))
                 .thenAnswer(invocation -> invocation.getArgument(0));
-        when(bookRepository.save(any(Book.class)))
-                .thenAnswer(invocation -> invocation.getArgument(0));
+        when(inventoryEngine.tryRelease(testBook.getExternalId())).thenReturn(true);
 
         LocalDate returnDate = testReservation.getExpectedReturnDate();
         ReturnBookRequestDTO returnRequest = new ReturnBookRequestDTO(returnDate);
@@ -149,10 +249,10 @@ class ReservationServiceTest {
         assertEquals(returnDate, result.getActualReturnDate());
         assertEquals(BigDecimal.ZERO, result.getLateFee());
         assertEquals(Reservation.ReservationStatus.RETURNED, result.getStatus());
-        assertEquals(Integer.valueOf(6), testBook.getAvailableQuantity());
 
         verify(reservationRepository).save(any(Reservation.class));
-        verify(bookRepository).save(testBook);
+        verify(inventoryEngine).tryRelease(testBook.getExternalId());
+        verify(bookRepository, never()).save(any());
     }
     
     @Test
@@ -161,8 +261,7 @@ class ReservationServiceTest {
         when(reservationRepository.findById(1L)).thenReturn(Optional.of(testReservation));
         when(reservationRepository.save(any(Reservation.class)))
                 .thenAnswer(invocation -> invocation.getArgument(0));
-        when(bookRepository.save(any(Book.class)))
-                .thenAnswer(invocation -> invocation.getArgument(0));
+        when(inventoryEngine.tryRelease(testBook.getExternalId())).thenReturn(true);
 
         LocalDate returnDate = testReservation.getExpectedReturnDate().plusDays(3);
         ReturnBookRequestDTO returnRequest = new ReturnBookRequestDTO(returnDate);
@@ -173,15 +272,53 @@ class ReservationServiceTest {
         assertEquals(returnDate, result.getActualReturnDate());
         assertEquals(new BigDecimal("7.20"), result.getLateFee());
         assertEquals(Reservation.ReservationStatus.OVERDUE, result.getStatus());
-        assertEquals(Integer.valueOf(6), testBook.getAvailableQuantity());
 
         verify(reservationRepository).save(any(Reservation.class));
-        verify(bookRepository).save(testBook);
+        verify(inventoryEngine).tryRelease(testBook.getExternalId());
+        verify(bookRepository, never()).save(any());
+    }
+    
+    @Test
+    void testReturnBooks_SinglePassOverMixedBatch() {
+        Reservation overdue = new Reservation();
+        overdue.setId(2L);
+        overdue.setUser(testUser);
+        overdue.setBook(testBook);
+        overdue.setRentalDays(7);
+        overdue.setStartDate(LocalDate.now().minusDays(10));
+        overdue.setExpectedReturnDate(LocalDate.now().minusDays(3));
+        overdue.setStatus(Reservation.ReservationStatus.ACTIVE);
+        LocalDate today = LocalDate.now();
+        ReturnBatchRequestDTO batchRequest = new ReturnBatchRequestDTO(List.of(
+                new BookReturnDTO(1L, testReservation.getExpectedReturnDate()),
+                new BookReturnDTO(2L, today),
+                new BookReturnDTO(1L, today),
+                new BookReturnDTO(99L, today)
+        ));
+
+        when(reservationRepository.findWithBookAndUserByIdIn(List.of(1L, 2L, 99L)))
+                .thenReturn(List.of(testReservation, overdue));
+
+        ReservationBatchResultDTO result = reservationService.returnBooks(batchRequest);
+
+        assertEquals(2, result.getSucceeded());
+        assertEquals(2, result.getFailed());
+        assertEquals(Reservation.ReservationStatus.RETURNED, result.getItems().get(0).getReservation().getStatus());
+        assertEquals(Reservation.ReservationStatus.OVERDUE, result.getItems().get(1).getReservation().getStatus());
+        assertEquals(new BigDecimal("7.20"), overdue.getLateFee());
+        assertEquals("La reserva ya fue devuelta", result.getItems().get(2).getError());
+        assertEquals("Reserva no encontrada con ID: 99", result.getItems().get(3).getError());
+        // Un solo incremento de stock por libro; las reservas se escriben con el flush, sin save por entidad
+        verify(inventoryEngine).releaseAll(Map.of(testBook.getExternalId(), 2));
+        verify(inventoryEngine, never()).tryRelease(any());
+        verify(reservationRepository).flush();
+        verify(reservationRepository, never()).save(any());
+        verify(reservationRepository, never()).findById(any());
     }
     
     @Test
     void testGetReservationById_Success() {
-        when(reservationRepository.findById(1L)).thenReturn(Optional.of(testReservation));
+        when(reservationRepository.findResponseById(1L)).thenReturn(Optional.of(response(testReservation)));
         
         ReservationResponseDTO result = reservationService.getReservationById(1L);
         
@@ -190,30 +327,69 @@ class ReservationServiceTest {
     }
     
     @Test
-    void testGetAllReservations() {
-        Reservation reservation2 = new Reservation();
-        reservation2.setId(2L);
-        reservation2.setUser(testUser);
-        reservation2.setBook(testBook);
-        reservation2.setStartDate(LocalDate.now());
-        reservation2.setRentalDays(5);
-        reservation2.setExpectedReturnDate(LocalDate.now().plusDays(5));
-        reservation2.setDailyRate(testBook.getPrice());
-        reservation2.setTotalFee(new BigDecimal("79.95"));
-        reservation2.setStatus(Reservation.ReservationStatus.ACTIVE);
-        reservation2.setCreatedAt(LocalDateTime.now());
-
-        when(reservationRepository.findAll()).thenReturn(Arrays.asList(testReservation, reservation2));
-
-        List<ReservationResponseDTO> result = reservationService.getAllReservations();
-
-        assertNotNull(result);
-        assertEquals(2, result.size());
+    void testReturnBook_SweptOverdueStillOut() {
+        // Marcada por el barrido de vencidas, con la multa acumulada hasta ayer
+        testReservation.setStatus(Reservation.ReservationStatus.OVERDUE);
+        testReservation.setLateFee(new BigDecimal("4.80"));
+        testReservation.setLateFeeAccruedOn(testReservation.getExpectedReturnDate().plusDays(2));
+        when(reservationRepository.findById(1L)).thenReturn(Optional.of(testReservation));
+        when(reservationRepository.save(any(Reservation.class)))
+                .thenAnswer(invocation -> invocation.getArgument(0));
+        when(inventoryEngine.tryRelease(testBook.getExternalId())).thenReturn(true);
+        
+        LocalDate returnDate = testReservation.getExpectedReturnDate().plusDays(3);
+        ReservationResponseDTO result = reservationService.returnBook(1L, new ReturnBookRequestDTO(returnDate));
+        
+        assertEquals(returnDate, result.getActualReturnDate());
+        assertEquals(new BigDecimal("7.20"), result.getLateFee());
+        assertEquals(Reservation.ReservationStatus.OVERDUE, result.getStatus());
+        assertEquals(returnDate, testReservation.getLateFeeAccruedOn());
+        
+        // Ya devuelta con demora: no se puede devolver otra vez
+        assertThrows(RuntimeException.class,
+                () -> reservationService.returnBook(1L, new ReturnBookRequestDTO(returnDate)));
+        verify(inventoryEngine, times(1)).tryRelease(testBook.getExternalId());
+    }
+    
+    @Test
+    void testGetReservations_NextCursorResumesAfterLastItem() {
+        ReservationFilterDTO filter = new ReservationFilterDTO();
+        testReservation.setCreatedAt(LocalDateTime.of(2025, 3, 1, 10, 0, 0, 123_000));
+        Reservation older = new Reservation();
+        older.setId(2L);
+        older.setUser(testUser);
+        older.setBook(testBook);
+        older.setCreatedAt(testReservation.getCreatedAt().minusMinutes(1));
+        when(reservationRepository.findPage(filter, null, null, 2))
+                .thenReturn(Arrays.asList(response(testReservation), response(older)));
+        
+        ReservationPageDTO first = reservationService.getReservations(filter, null, 1);
+        
+        assertEquals(1, first.getSize());
+        assertEquals(1L, first.getItems().get(0).getId());
+        assertNotNull(first.getNextCursor());
+        
+        when(reservationRepository.findPage(filter, testReservation.getCreatedAt(), 1L, 2))
+                .thenReturn(List.of(response(older)));
+        ReservationPageDTO second = reservationService.getReservations(filter, first.getNextCursor(), 1);
+        
+        assertEquals(2L, second.getItems().get(0).getId());
+        assertNull(second.getNextCursor());
+    }
+    
+    @Test
+    void testGetReservations_RejectsInvalidCursorAndSize() {
+        ReservationFilterDTO filter = new ReservationFilterDTO();
+        
+        assertThrows(RuntimeException.class, () -> reservationService.getReservations(filter, "no-es-un-cursor", 10));
+        assertThrows(RuntimeException.class, () -> reservationService.getReservations(filter, null, 0));
+        assertThrows(RuntimeException.class, () -> reservationService.getReservations(filter, null, 201));
+        verify(reservationRepository, never()).findPage(any(), any(), any(), anyInt());
     }
     
     @Test
     void testGetReservationsByUserId() {
-        when(reservationRepository.findByUserId(1L)).thenReturn(Arrays.asList(testReservation));
+        when(reservationRepository.findResponsesByUserId(1L)).thenReturn(Arrays.asList(response(testReservation)));
         
         List<ReservationResponseDTO> result = reservationService.getReservationsByUserId(1L);
         
@@ -223,13 +399,20 @@ class ReservationServiceTest {
     
     @Test
     void testGetActiveReservations() {
-        when(reservationRepository.findByStatus(Reservation.ReservationStatus.ACTIVE))
-                .thenReturn(Arrays.asList(testReservation));
+        when(reservationRepository.findOpenResponses())
+                .thenReturn(Arrays.asList(response(testReservation)));
         
         List<ReservationResponseDTO> result = reservationService.getActiveReservations();
         
         assertNotNull(result);
         assertEquals(1, result.size());
     }
+    
+    private static ReservationResponseDTO response(Reservation reservation) {
+        return new ReservationResponseDTO(reservation.getId(), reservation.getUser().getId(),
+                reservation.getUser().getName(), reservation.getBook().getExternalId(), reservation.getBook().getTitle(),
+                reservation.getRentalDays(), reservation.getStartDate(), reservation.getExpectedReturnDate(),
+                reservation.getActualReturnDate(), reservation.getDailyRate(), reservation.getTotalFee(),
+                reservation.getLateFee(), reservation.getStatus(), reservation.getCreatedAt());
+    }
 }
-
@@ -0,0 +1,56 @@
+package com.example.libreria.service;
+
+import com.example.libreria.repository.SyncLeaseRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class SyncLeaseServiceTest {
+
+    @Autowired
+    private SyncLeaseRepository syncLeaseRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private SyncLeaseService nodeA;
+    private SyncLeaseService nodeB;
+
+    @BeforeEach
+    void setUp() {
+        // Dos instancias simulan dos nodos con distinto owner sobre la misma base
+        nodeA = new SyncLeaseService(syncLeaseRepository, transactionTemplate);
+        nodeB = new SyncLeaseService(syncLeaseRepository, transactionTemplate);
+    }
+
+    @Test
+    void testTryAcquire_SingleFlight() {
+        assertTrue(nodeA.tryAcquire("test-single-flight", Duration.ofMinutes(5)));
+        assertFalse(nodeB.tryAcquire("test-single-flight", Duration.ofMinutes(5)));
+        assertTrue(nodeA.renew("test-single-flight", Duration.ofMinutes(5)));
+        assertFalse(nodeB.renew("test-single-flight", Duration.ofMinutes(5)));
+
+        nodeA.release("test-single-flight");
+
+        assertTrue(nodeB.tryAcquire("test-single-flight", Duration.ofMinutes(5)));
+    }
+
+    @Test
+    void testTryAcquire_ExpiredLeaseCanBeTakenOver() throws InterruptedException {
+        assertTrue(nodeA.tryAcquire("test-expired", Duration.ofMillis(1)));
+        Thread.sleep(5);
+
+        assertTrue(nodeB.tryAcquire("test-expired", Duration.ofMinutes(5)));
+        assertFalse(nodeA.tryAcquire("test-expired", Duration.ofMinutes(5)));
+    }
+}
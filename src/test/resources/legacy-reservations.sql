@@ -0,0 +1,8 @@
+-- Reservas de una base creada cuando el id de reservations era IDENTITY: ids 1..60 ya ocupados
+INSERT INTO books (external_id, title, price, stock_quantity, available_quantity, version)
+VALUES (258027, 'The Lord of the Rings', 15.99, 100, 40, 0);
+
+INSERT INTO reservations (id, user_id, book_external_id, rental_days, start_date, expected_return_date,
+                          daily_rate, total_fee, late_fee, status, created_at, version)
+SELECT X, 1, 258027, 7, CURRENT_DATE, DATEADD('DAY', 7, CURRENT_DATE), 1.50, 10.50, 0, 'ACTIVE', CURRENT_TIMESTAMP, 0
+FROM SYSTEM_RANGE(1, 60);